@@ -1,16 +1,20 @@
 package in.vidyalai.claude.sdk;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import org.jspecify.annotations.Nullable;
 
+import in.vidyalai.claude.sdk.internal.OptionsFingerprint;
 import in.vidyalai.claude.sdk.types.config.AgentDefinition;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
 import in.vidyalai.claude.sdk.types.config.SandboxSettings;
 import in.vidyalai.claude.sdk.types.config.SdkBeta;
 import in.vidyalai.claude.sdk.types.config.SettingSource;
@@ -81,6 +85,8 @@ public final class ClaudeAgentOptions {
     // Max message queue size
     @Nullable
     private final Integer maxMsgQSize;
+    // What to do when the message queue is full
+    private final MessageOverflowPolicy messageOverflowPolicy;
 
     // Model configuration
     @Nullable
@@ -110,6 +116,12 @@ public final class ClaudeAgentOptions {
     // Callback for stderr output from CLI
     @Nullable
     private final Consumer<String> stderrCallback;
+    // Bytes of stderr kept per connection; null uses the default
+    @Nullable
+    private final Integer stderrBufferSize;
+    // Max stderr lines per second passed to the callback; null means no limit
+    @Nullable
+    private final Integer stderrCallbackRate;
 
     // Hook configurations
     @Nullable
@@ -150,6 +162,35 @@ public final class ClaudeAgentOptions {
     // using `ClaudeSDKClient.rewind_files()`.
     private final boolean enableFileCheckpointing;
 
+    // Pool of pre-started CLI processes to draw connections from
+    @Nullable
+    private final CliProcessPool processPool;
+
+    // Write to the CLI from a dedicated thread that coalesces concurrent writes
+    private final boolean coalescingWrites;
+
+    // Message types delivered to the caller; null delivers all
+    @Nullable
+    private final Set<String> receiveTypes;
+
+    // Decode message content on first access
+    private final boolean lazyContent;
+
+    // Deliver non-control messages as undecoded JSON bytes
+    private final boolean rawMessages;
+
+    // Time allowed for the CLI process to exit on close; null uses the default
+    @Nullable
+    private final Duration closeTimeout;
+
+    // Threads for background tasks; null uses SdkRuntime.shared()
+    @Nullable
+    private final SdkRuntime runtime;
+
+    // Computed on first use; see fingerprint()
+    @Nullable
+    private volatile String fingerprint;
+
     private ClaudeAgentOptions(Builder builder) {
         this.tools = builder.tools;
         // Default to empty lists (matching Python SDK's field(default_factory=list))
@@ -167,6 +208,9 @@ public final class ClaudeAgentOptions {
         this.maxBufferSize = builder.maxBufferSize;
         this.maxThinkingTokens = builder.maxThinkingTokens;
         this.maxMsgQSize = builder.maxMsgQSize;
+        this.messageOverflowPolicy = ((builder.messageOverflowPolicy != null)
+                ? builder.messageOverflowPolicy
+                : MessageOverflowPolicy.BLOCK);
         this.model = builder.model;
         this.fallbackModel = builder.fallbackModel;
         // Default to empty lists (matching Python SDK)
@@ -181,6 +225,8 @@ public final class ClaudeAgentOptions {
         this.extraArgs = ((builder.extraArgs != null) ? Map.copyOf(builder.extraArgs) : Map.of());
         this.canUseTool = builder.canUseTool;
         this.stderrCallback = builder.stderrCallback;
+        this.stderrBufferSize = builder.stderrBufferSize;
+        this.stderrCallbackRate = builder.stderrCallbackRate;
         this.hooks = ((builder.hooks != null) ? Map.copyOf(builder.hooks) : null);
         this.user = builder.user;
         this.includePartialMessages = builder.includePartialMessages;
@@ -191,6 +237,13 @@ public final class ClaudeAgentOptions {
         this.plugins = ((builder.plugins != null) ? List.copyOf(builder.plugins) : List.of());
         this.outputFormat = builder.outputFormat;
         this.enableFileCheckpointing = builder.enableFileCheckpointing;
+        this.processPool = builder.processPool;
+        this.coalescingWrites = builder.coalescingWrites;
+        this.receiveTypes = ((builder.receiveTypes != null) ? Set.copyOf(builder.receiveTypes) : null);
+        this.lazyContent = builder.lazyContent;
+        this.rawMessages = builder.rawMessages;
+        this.closeTimeout = builder.closeTimeout;
+        this.runtime = builder.runtime;
     }
 
     /**
@@ -234,6 +287,7 @@ public final class ClaudeAgentOptions {
         builder.maxBufferSize = this.maxBufferSize;
         builder.maxThinkingTokens = this.maxThinkingTokens;
         builder.maxMsgQSize = this.maxMsgQSize;
+        builder.messageOverflowPolicy = this.messageOverflowPolicy;
         builder.model = this.model;
         builder.fallbackModel = this.fallbackModel;
         builder.betas = ((!this.betas.isEmpty()) ? new ArrayList<>(this.betas) : null);
@@ -245,6 +299,8 @@ public final class ClaudeAgentOptions {
         builder.extraArgs = ((!this.extraArgs.isEmpty()) ? new HashMap<>(this.extraArgs) : null);
         builder.canUseTool = this.canUseTool;
         builder.stderrCallback = this.stderrCallback;
+        builder.stderrBufferSize = this.stderrBufferSize;
+        builder.stderrCallbackRate = this.stderrCallbackRate;
         builder.hooks = ((this.hooks != null) ? new HashMap<>(this.hooks) : null);
         builder.user = this.user;
         builder.includePartialMessages = this.includePartialMessages;
@@ -254,6 +310,13 @@ public final class ClaudeAgentOptions {
         builder.plugins = ((!this.plugins.isEmpty()) ? new ArrayList<>(this.plugins) : null);
         builder.outputFormat = this.outputFormat;
         builder.enableFileCheckpointing = this.enableFileCheckpointing;
+        builder.processPool = this.processPool;
+        builder.coalescingWrites = this.coalescingWrites;
+        builder.receiveTypes = this.receiveTypes;
+        builder.lazyContent = this.lazyContent;
+        builder.rawMessages = this.rawMessages;
+        builder.closeTimeout = this.closeTimeout;
+        builder.runtime = this.runtime;
         return builder;
     }
 
@@ -375,6 +438,16 @@ public final class ClaudeAgentOptions {
         return maxMsgQSize;
     }
 
+    /**
+     * Returns the policy applied when the message queue is full.
+     *
+     * @return the overflow policy (defaults to
+     *         {@link MessageOverflowPolicy#BLOCK})
+     */
+    public MessageOverflowPolicy messageOverflowPolicy() {
+        return messageOverflowPolicy;
+    }
+
     /**
      * Returns the model name to use for inference.
      *
@@ -436,6 +509,27 @@ public final class ClaudeAgentOptions {
         return stderrCallback;
     }
 
+    /**
+     * Returns how many bytes of CLI stderr are kept per connection.
+     *
+     * @return the buffer size in bytes, or null to use the default of 16KB
+     */
+    @Nullable
+    public Integer stderrBufferSize() {
+        return stderrBufferSize;
+    }
+
+    /**
+     * Returns the maximum number of stderr lines per second passed to the
+     * stderr callback.
+     *
+     * @return the line rate, or null for no limit
+     */
+    @Nullable
+    public Integer stderrCallbackRate() {
+        return stderrCallbackRate;
+    }
+
     /**
      * Returns the hook configurations.
      *
@@ -503,6 +597,97 @@ public final class ClaudeAgentOptions {
         return enableFileCheckpointing;
     }
 
+    /**
+     * Returns the process pool that connections are drawn from.
+     *
+     * @return the process pool, or null to spawn a new CLI process per
+     *         connection
+     */
+    @Nullable
+    public CliProcessPool processPool() {
+        return processPool;
+    }
+
+    /**
+     * Returns whether writes to the CLI go through a dedicated writer thread.
+     *
+     * @return true if writes are coalesced
+     */
+    public boolean coalescingWrites() {
+        return coalescingWrites;
+    }
+
+    /**
+     * Returns the message types delivered to the caller.
+     *
+     * @return the message types, or null to deliver every message
+     */
+    @Nullable
+    public Set<String> receiveTypes() {
+        return receiveTypes;
+    }
+
+    /**
+     * Returns whether message content is decoded on first access.
+     *
+     * @return true if content decoding is deferred
+     */
+    public boolean lazyContent() {
+        return lazyContent;
+    }
+
+    /**
+     * Returns whether non-control messages are delivered as undecoded JSON.
+     *
+     * @return true if messages are passed through
+     */
+    public boolean rawMessages() {
+        return rawMessages;
+    }
+
+    /**
+     * Returns the time allowed for the CLI process to exit when the
+     * connection is closed.
+     *
+     * @return the close timeout, or null to use the default of 5 seconds
+     */
+    @Nullable
+    public Duration closeTimeout() {
+        return closeTimeout;
+    }
+
+    /**
+     * Returns the runtime that runs connections' background tasks.
+     *
+     * @return the configured runtime, or {@link SdkRuntime#shared()}
+     */
+    public SdkRuntime runtime() {
+        return ((runtime != null) ? runtime : SdkRuntime.shared());
+    }
+
+    /**
+     * Returns a stable fingerprint of the options that determine the launched
+     * CLI process: command line, environment and working directory.
+     *
+     * <p>
+     * Options built with equal values have equal fingerprints, so the SDK uses
+     * it to reuse the prepared command line and pooled processes across option
+     * instances. Callbacks, hooks, buffer sizes and the process pool are not
+     * part of it. The value is computed once per instance; mutable values
+     * passed to the builder (such as {@code outputFormat}) must not be changed
+     * afterwards.
+     *
+     * @return the fingerprint as a hex string
+     */
+    public String fingerprint() {
+        String fp = fingerprint;
+        if (fp == null) {
+            fp = OptionsFingerprint.compute(this);
+            fingerprint = fp;
+        }
+        return fp;
+    }
+
     /**
      * Functional interface for tool permission callbacks.
      *
@@ -589,6 +774,8 @@ public final class ClaudeAgentOptions {
         @Nullable
         private Integer maxMsgQSize;
         @Nullable
+        private MessageOverflowPolicy messageOverflowPolicy;
+        @Nullable
         private String model;
         @Nullable
         private String fallbackModel;
@@ -611,6 +798,10 @@ public final class ClaudeAgentOptions {
         @Nullable
         private Consumer<String> stderrCallback;
         @Nullable
+        private Integer stderrBufferSize;
+        @Nullable
+        private Integer stderrCallbackRate;
+        @Nullable
         private Map<HookEvent, List<HookMatcher>> hooks;
         @Nullable
         private String user;
@@ -626,6 +817,17 @@ public final class ClaudeAgentOptions {
         @Nullable
         private Map<String, Object> outputFormat;
         private boolean enableFileCheckpointing;
+        @Nullable
+        private CliProcessPool processPool;
+        private boolean coalescingWrites;
+        @Nullable
+        private Set<String> receiveTypes;
+        private boolean lazyContent;
+        private boolean rawMessages;
+        @Nullable
+        private Duration closeTimeout;
+        @Nullable
+        private SdkRuntime runtime;
 
         private Builder() {
         }
@@ -850,6 +1052,17 @@ public final class ClaudeAgentOptions {
             return this;
         }
 
+        /**
+         * Sets the policy applied when the message queue is full.
+         *
+         * @param messageOverflowPolicy the overflow policy
+         * @return this builder
+         */
+        public Builder messageOverflowPolicy(MessageOverflowPolicy messageOverflowPolicy) {
+            this.messageOverflowPolicy = messageOverflowPolicy;
+            return this;
+        }
+
         /**
          * Sets the model name.
          *
@@ -939,6 +1152,13 @@ public final class ClaudeAgentOptions {
         /**
          * Sets the stderr output callback.
          *
+         * <p>
+         * Lines are passed to the callback from a separate task, so a slow
+         * callback does not hold up the CLI. Lines arriving while 1024 lines
+         * are still waiting for the callback, or beyond
+         * {@link #stderrCallbackRate(Integer)}, are skipped; they are still
+         * kept in the stderr buffer.
+         *
          * @param stderrCallback the stderr callback
          * @return this builder
          */
@@ -947,6 +1167,38 @@ public final class ClaudeAgentOptions {
             return this;
         }
 
+        /**
+         * Sets how many bytes of CLI stderr are kept per connection.
+         *
+         * <p>
+         * Stderr is always drained into a ring buffer of this size, whether or
+         * not a callback is set. Its contents are attached to the
+         * {@code ProcessException} raised when the CLI exits with a non-zero
+         * code and can be read with {@code ClaudeSDKClient.getRecentStderr()}.
+         * Defaults to 16KB.
+         *
+         * @param stderrBufferSize the buffer size in bytes, or null for the
+         *                         default
+         * @return this builder
+         */
+        public Builder stderrBufferSize(@Nullable Integer stderrBufferSize) {
+            this.stderrBufferSize = stderrBufferSize;
+            return this;
+        }
+
+        /**
+         * Limits how many stderr lines per second are passed to the stderr
+         * callback; further lines in the same second are skipped. Useful with
+         * {@code debug-to-stderr}, which can write thousands of lines.
+         *
+         * @param stderrCallbackRate the line rate, or null for no limit
+         * @return this builder
+         */
+        public Builder stderrCallbackRate(@Nullable Integer stderrCallbackRate) {
+            this.stderrCallbackRate = stderrCallbackRate;
+            return this;
+        }
+
         /**
          * Sets the hook configurations.
          *
@@ -1040,6 +1292,142 @@ public final class ClaudeAgentOptions {
             return this;
         }
 
+        /**
+         * Sets a pool of pre-started CLI processes to draw connections from.
+         *
+         * <p>
+         * {@link ClaudeSDK#query} and {@link ClaudeSDKClient#connect()} then take
+         * an already initialized process from the pool instead of spawning one,
+         * removing process start-up from the request path.
+         *
+         * @param processPool the process pool
+         * @return this builder
+         */
+        public Builder processPool(CliProcessPool processPool) {
+            this.processPool = processPool;
+            return this;
+        }
+
+        /**
+         * Enables a dedicated writer thread for the CLI's stdin.
+         *
+         * <p>
+         * Writers then only enqueue their message; the writer thread writes
+         * everything queued since its last pass and flushes once. This helps
+         * when many threads write concurrently, e.g. hook and permission
+         * responses while queries are being sent. Control responses are sent
+         * without waiting for the flush. Off by default.
+         *
+         * @param coalescingWrites whether to coalesce writes
+         * @return this builder
+         */
+        public Builder coalescingWrites(boolean coalescingWrites) {
+            this.coalescingWrites = coalescingWrites;
+            return this;
+        }
+
+        /**
+         * Restricts the messages delivered to the caller to the given
+         * top-level types, e.g. {@code Set.of("assistant", "result")}.
+         *
+         * <p>
+         * The subprocess transport reads the {@code type} field of each message
+         * and skips the rest of an unwanted one without binding it, which saves
+         * most of the JSON work for {@code stream_event} partials, the
+         * {@code system} init message and {@code user} tool result echoes.
+         * {@code result} messages are always delivered, since turns end on them,
+         * and so are control messages. Messages without a {@code type} field are
+         * delivered as before.
+         *
+         * @param receiveTypes the message types to deliver, or null for all
+         * @return this builder
+         */
+        public Builder receiveTypes(@Nullable Set<String> receiveTypes) {
+            this.receiveTypes = receiveTypes;
+            return this;
+        }
+
+        /**
+         * Defers decoding of message content until it is first accessed.
+         *
+         * <p>
+         * The content blocks of {@link in.vidyalai.claude.sdk.types.message.AssistantMessage}
+         * and {@link in.vidyalai.claude.sdk.types.message.UserMessage}, the tool
+         * inputs and tool results within them, and
+         * {@code UserMessage.toolUseResult()} are then kept as ranges of the
+         * raw UTF-8 bytes the CLI wrote and decoded (once) when first read.
+         * Messages that are stored or forwarded without inspecting tool
+         * payloads, which can be hundreds of KB of file contents, hold only
+         * those bytes instead of decoded strings and object trees; undecoded
+         * tool payloads are serialized straight from the bytes.
+         *
+         * <p>
+         * Lazily decoded collections are read-only, and malformed content is
+         * reported by the first access as a
+         * {@link in.vidyalai.claude.sdk.exceptions.MessageParseException}. Off by
+         * default.
+         *
+         * @param lazyContent whether to decode content on first access
+         * @return this builder
+         */
+        public Builder lazyContent(boolean lazyContent) {
+            this.lazyContent = lazyContent;
+            return this;
+        }
+
+        /**
+         * Passes messages through undecoded, for proxying CLI output.
+         *
+         * <p>
+         * The subprocess transport then frames each message and keeps its
+         * original bytes instead of binding it, and
+         * {@link ClaudeSDKClient#receiveRawMessages()} hands them out together
+         * with the sniffed {@code type}, ready to forward without parsing or
+         * re-serializing. Control messages are still decoded and handled by the
+         * SDK. {@link ClaudeSDKClient#receiveMessages()} keeps working but has
+         * to parse every message. Off by default.
+         *
+         * @param rawMessages whether to pass messages through undecoded
+         * @return this builder
+         */
+        public Builder rawMessages(boolean rawMessages) {
+            this.rawMessages = rawMessages;
+            return this;
+        }
+
+        /**
+         * Sets the time allowed for the CLI process to exit when the connection
+         * is closed.
+         *
+         * <p>
+         * Closing ends the CLI's input first. A process still running after
+         * half the timeout is sent {@code SIGTERM}, and one still running when
+         * the timeout expires is killed forcibly. {@code close()} waits for
+         * this; {@code closeAsync()} returns at once and leaves it to a shared
+         * reaper thread. Defaults to 5 seconds.
+         *
+         * @param closeTimeout the close timeout, or null for the default
+         * @return this builder
+         */
+        public Builder closeTimeout(@Nullable Duration closeTimeout) {
+            this.closeTimeout = closeTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the runtime whose executor and timer run connections'
+         * background tasks: reading CLI output, streaming input, handling
+         * control requests and reaping closed processes. Defaults to
+         * {@link SdkRuntime#shared()}.
+         *
+         * @param runtime the runtime, or null for the shared runtime
+         * @return this builder
+         */
+        public Builder runtime(@Nullable SdkRuntime runtime) {
+            this.runtime = runtime;
+            return this;
+        }
+
         public ClaudeAgentOptions build() {
             return new ClaudeAgentOptions(this);
         }
@@ -6,12 +6,19 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jspecify.annotations.Nullable;
 
 import in.vidyalai.claude.sdk.internal.QueryHandler;
 import in.vidyalai.claude.sdk.internal.SdkVersion;
+import in.vidyalai.claude.sdk.internal.transport.CliCache;
 import in.vidyalai.claude.sdk.internal.transport.SubprocessCLITransport;
 import in.vidyalai.claude.sdk.mcp.SdkMcpServer;
 import in.vidyalai.claude.sdk.mcp.SdkMcpTool;
@@ -133,51 +140,9 @@ public final class ClaudeSDK {
      *                                  mode)
      */
     public static List<Message> query(String prompt, ClaudeAgentOptions options, Transport transport) {
-        // Set entrypoint for analytics (matches Python SDK)
-        System.setProperty("CLAUDE_CODE_ENTRYPOINT", "sdk-java");
-
-        // Validate and configure options
-        ClaudeAgentOptions effectiveOptions = validateAndConfigureOptions(options, false);
-
-        if (transport == null) {
-            // Create transport in non-streaming mode (prompt passed via CLI args)
-            transport = new SubprocessCLITransport(prompt, false, effectiveOptions);
+        try (OpenQuery query = openQuery(prompt, options, transport)) {
+            return collect(query);
         }
-
-        List<Message> messages = new ArrayList<>();
-        QueryHandler queryHandler = null;
-        try {
-            transport.connect();
-
-            // Extract SDK MCP servers
-            Map<String, SdkMcpServer> sdkMcpServers = extractSdkMcpServers(effectiveOptions);
-
-            // Create QueryHandler for unified control protocol handling
-            // Use non-streaming mode (no initialize call needed)
-            queryHandler = new QueryHandler(
-                    transport,
-                    false, // Non-streaming mode
-                    effectiveOptions.canUseTool(),
-                    effectiveOptions.hooks(),
-                    sdkMcpServers,
-                    DEFAULT_INITIALIZE_TIMEOUT,
-                    effectiveOptions.maxMsgQSize());
-
-            // Start reader thread
-            queryHandler.start();
-
-            // Collect all messages
-            Iterator<Message> iterator = queryHandler.receiveMessages();
-            while (iterator.hasNext()) {
-                messages.add(iterator.next());
-            }
-        } finally {
-            if (queryHandler != null) {
-                queryHandler.close();
-            }
-        }
-
-        return messages;
     }
 
     /**
@@ -236,20 +201,86 @@ public final class ClaudeSDK {
      */
     public static List<Message> query(Iterator<Map<String, Object>> messageStream, ClaudeAgentOptions options,
             Transport transport) {
+        try (OpenQuery query = openQuery(messageStream, options, transport)) {
+            return collect(query);
+        }
+    }
+
+    /**
+     * Starts a one-shot query and returns a handle to read its messages.
+     */
+    static OpenQuery openQuery(String prompt, ClaudeAgentOptions options, @Nullable Transport transport) {
+        // Set entrypoint for analytics (matches Python SDK)
+        System.setProperty("CLAUDE_CODE_ENTRYPOINT", "sdk-java");
+
+        // Validate and configure options
+        ClaudeAgentOptions effectiveOptions = validateAndConfigureOptions(options, false);
+
+        CliProcessPool pool = options.processPool();
+        if ((transport == null) && (pool != null)) {
+            // Pooled processes already run in streaming mode: send the prompt over stdin
+            return startInput(pool.acquire(options).queryHandler(), List.of(userMessage(prompt)).iterator(), options.runtime());
+        }
+
+        if (transport == null) {
+            // Create transport in non-streaming mode (prompt passed via CLI args)
+            transport = new SubprocessCLITransport(prompt, false, effectiveOptions);
+        }
+
+        QueryHandler queryHandler = null;
+        try {
+            transport.connect();
+
+            // Extract SDK MCP servers
+            Map<String, SdkMcpServer> sdkMcpServers = extractSdkMcpServers(effectiveOptions);
+
+            // Create QueryHandler for unified control protocol handling
+            // Use non-streaming mode (no initialize call needed)
+            queryHandler = new QueryHandler(
+                    transport,
+                    false, // Non-streaming mode
+                    effectiveOptions.canUseTool(),
+                    effectiveOptions.hooks(),
+                    sdkMcpServers,
+                    DEFAULT_INITIALIZE_TIMEOUT,
+                    effectiveOptions.maxMsgQSize(),
+                    effectiveOptions.messageOverflowPolicy(),
+                    effectiveOptions.runtime());
+
+            // Start reader thread
+            queryHandler.start();
+            return new OpenQuery(queryHandler, null);
+        } catch (RuntimeException e) {
+            if (queryHandler != null) {
+                queryHandler.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a streaming query and returns a handle to read its messages.
+     */
+    static OpenQuery openQuery(Iterator<Map<String, Object>> messageStream, ClaudeAgentOptions options,
+            @Nullable Transport transport) {
         // Set entrypoint for analytics (matches Python SDK)
         System.setProperty("CLAUDE_CODE_ENTRYPOINT", "sdk-java");
 
         // Validate and configure options
         ClaudeAgentOptions effectiveOptions = validateAndConfigureOptions(options, true);
 
+        CliProcessPool pool = options.processPool();
+        if ((transport == null) && (pool != null)) {
+            // Take an already connected and initialized process
+            return startInput(pool.acquire(options).queryHandler(), messageStream, options.runtime());
+        }
+
         if (transport == null) {
             // Create transport in streaming mode
             transport = new SubprocessCLITransport(null, true, effectiveOptions);
         }
 
-        List<Message> messages = new ArrayList<>();
         QueryHandler queryHandler = null;
-        ExecutorService streamingExecutor = null;
         try {
             transport.connect();
 
@@ -269,50 +300,57 @@ public final class ClaudeSDK {
                     effectiveOptions.hooks(),
                     sdkMcpServers,
                     initializeTimeout,
-                    effectiveOptions.maxMsgQSize());
+                    effectiveOptions.maxMsgQSize(),
+                    effectiveOptions.messageOverflowPolicy(),
+                    effectiveOptions.runtime());
 
             // Start reader thread and initialize
             queryHandler = qh;
             queryHandler.start();
             queryHandler.initialize();
-
-            // Create executor service for streaming input with named virtual threads
-            streamingExecutor = Executors.newSingleThreadExecutor(
-                    Thread.ofVirtual()
-                            .name("ClaudeSDK-Streaming-", 0)
-                            .factory());
-
-            // Stream input messages in background
-            streamingExecutor.submit(() -> qh.streamInput(messageStream));
-
-            // Collect all response messages
-            Iterator<Message> responseIterator = queryHandler.receiveMessages();
-            while (responseIterator.hasNext()) {
-                messages.add(responseIterator.next());
-            }
-        } finally {
-            // Shutdown streaming executor
-            if (streamingExecutor != null) {
-                streamingExecutor.shutdown();
-                try {
-                    if (!streamingExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                        streamingExecutor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    streamingExecutor.shutdownNow();
-                }
-            }
-
-            // Close QueryHandler
+        } catch (RuntimeException e) {
             if (queryHandler != null) {
                 queryHandler.close();
             }
+            throw e;
         }
 
+        return startInput(queryHandler, messageStream, effectiveOptions.runtime());
+    }
+
+    /**
+     * Streams input messages to a started, initialized QueryHandler in the
+     * background.
+     */
+    private static OpenQuery startInput(QueryHandler queryHandler, Iterator<Map<String, Object>> messageStream,
+            SdkRuntime runtime) {
+        // Stream input messages in background
+        Future<?> input = runtime.executor().submit(() -> queryHandler.streamInput(messageStream));
+        return new OpenQuery(queryHandler, input);
+    }
+
+    /**
+     * Collects all response messages of a query.
+     */
+    private static List<Message> collect(OpenQuery query) {
+        List<Message> messages = new ArrayList<>();
+        Iterator<Message> responseIterator = query.messages();
+        while (responseIterator.hasNext()) {
+            messages.add(responseIterator.next());
+        }
         return messages;
     }
 
+    /**
+     * Builds a user message in the streaming input format.
+     */
+    private static Map<String, Object> userMessage(String prompt) {
+        return Map.of(
+                "type", "user",
+                "session_id", "default",
+                "message", Map.of("role", "user", "content", prompt));
+    }
+
     /**
      * Executes a streaming query with default options.
      *
@@ -323,6 +361,189 @@ public final class ClaudeSDK {
         return query(messageStream, ClaudeAgentOptions.defaults(), null);
     }
 
+    /**
+     * Executes a one-shot query and returns its messages as a lazy stream.
+     *
+     * <p>
+     * Messages are read from the CLI as the stream is consumed, so nothing is
+     * buffered beyond the message queue and each message reaches the caller as
+     * soon as it arrives. Close the stream to stop the query early; it is also
+     * closed once the last message has been read.
+     *
+     * <pre>{@code
+     * try (Stream<Message> messages = ClaudeSDK.stream("Refactor this module", options)) {
+     *     messages.filter(AssistantMessage.class::isInstance)
+     *             .forEach(System.out::println);
+     * }
+     * }</pre>
+     *
+     * @param prompt  the prompt to send
+     * @param options the agent options
+     * @return a stream of messages that must be closed
+     * @throws IllegalArgumentException if canUseTool is set (requires streaming
+     *                                  mode)
+     */
+    public static Stream<Message> stream(String prompt, ClaudeAgentOptions options) {
+        return stream(prompt, options, null);
+    }
+
+    /**
+     * Executes a one-shot query and returns its messages as a lazy stream.
+     *
+     * @param prompt    the prompt to send
+     * @param options   the agent options
+     * @param transport custom transport implementation
+     * @return a stream of messages that must be closed
+     */
+    public static Stream<Message> stream(String prompt, ClaudeAgentOptions options, @Nullable Transport transport) {
+        return toStream(openQuery(prompt, options, transport));
+    }
+
+    /**
+     * Executes a streaming query and returns its messages as a lazy stream.
+     *
+     * @param messageStream an iterator of message dictionaries
+     * @param options       the agent options
+     * @return a stream of messages that must be closed
+     */
+    public static Stream<Message> stream(Iterator<Map<String, Object>> messageStream, ClaudeAgentOptions options) {
+        return stream(messageStream, options, null);
+    }
+
+    /**
+     * Executes a streaming query and returns its messages as a lazy stream.
+     *
+     * @param messageStream an iterator of message dictionaries
+     * @param options       the agent options
+     * @param transport     custom transport implementation
+     * @return a stream of messages that must be closed
+     */
+    public static Stream<Message> stream(Iterator<Map<String, Object>> messageStream, ClaudeAgentOptions options,
+            @Nullable Transport transport) {
+        return toStream(openQuery(messageStream, options, transport));
+    }
+
+    /**
+     * Wraps a started query in a sequential stream that closes it when the
+     * stream is closed or exhausted.
+     */
+    private static Stream<Message> toStream(OpenQuery query) {
+        Iterator<Message> messages = query.messages();
+        Iterator<Message> closing = new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                if (messages.hasNext()) {
+                    return true;
+                }
+                query.close();
+                return false;
+            }
+
+            @Override
+            public Message next() {
+                return messages.next();
+            }
+
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(closing, Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+                .onClose(query::close);
+    }
+
+    /**
+     * Executes a one-shot query asynchronously and completes with its result.
+     *
+     * <p>
+     * The query runs on a virtual thread, so no platform thread is held while
+     * waiting for Claude. Only the result message is kept; the rest of the
+     * transcript is discarded as it arrives. Cancelling the returned future
+     * stops the query and closes the CLI process.
+     *
+     * <pre>{@code
+     * ClaudeSDK.queryAsync("What is 2+2?", options)
+     *         .thenAccept(result -> System.out.println(result.result()));
+     * }</pre>
+     *
+     * @param prompt  the prompt to send
+     * @param options the agent options
+     * @return a future completed with the result message, or with null if the
+     *         query ended without one
+     */
+    public static CompletableFuture<ResultMessage> queryAsync(String prompt, ClaudeAgentOptions options) {
+        CompletableFuture<ResultMessage> future = new CompletableFuture<>();
+        options.runtime().executor().execute(() -> {
+            try (OpenQuery query = openQuery(prompt, options, null)) {
+                future.whenComplete((result, error) -> {
+                    if (future.isCancelled()) {
+                        query.close();
+                    }
+                });
+
+                ResultMessage result = null;
+                Iterator<Message> iterator = query.messages();
+                while ((!future.isDone()) && (iterator.hasNext())) {
+                    if (iterator.next() instanceof ResultMessage message) {
+                        result = message;
+                    }
+                }
+                future.complete(result);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Executes a one-shot query asynchronously with default options.
+     *
+     * @param prompt the prompt to send
+     * @return a future completed with the result message
+     */
+    public static CompletableFuture<ResultMessage> queryAsync(String prompt) {
+        return queryAsync(prompt, ClaudeAgentOptions.defaults());
+    }
+
+    /**
+     * Executes a one-shot query as a reactive stream of messages.
+     *
+     * <p>
+     * The query starts when the subscriber first requests messages, and
+     * messages are read only as fast as they are requested: without demand the
+     * message queue fills up and the transport stops reading from the CLI (with
+     * the default {@code BLOCK} overflow policy). Cancelling the subscription
+     * closes the CLI process.
+     *
+     * <p>
+     * The returned publisher runs the query once and accepts a single
+     * subscriber; later subscribers receive an {@link IllegalStateException}.
+     *
+     * <pre>{@code
+     * ClaudeSDK.queryStream("Explain this repository", options)
+     *         .subscribe(subscriber);
+     * }</pre>
+     *
+     * @param prompt  the prompt to send
+     * @param options the agent options
+     * @return a publisher of the query's messages
+     */
+    public static Flow.Publisher<Message> queryStream(String prompt, ClaudeAgentOptions options) {
+        return new QueryPublisher(options.runtime().executor(), () -> openQuery(prompt, options, null));
+    }
+
+    /**
+     * Executes a one-shot query as a reactive stream of messages with default
+     * options.
+     *
+     * @param prompt the prompt to send
+     * @return a publisher of the query's messages
+     */
+    public static Flow.Publisher<Message> queryStream(String prompt) {
+        return queryStream(prompt, ClaudeAgentOptions.defaults());
+    }
+
     /**
      * Validates and configures options for query execution.
      *
@@ -337,7 +558,7 @@ public final class ClaudeSDK {
      *                                  or if canUseTool and
      *                                  permissionPromptToolName are both set
      */
-    private static ClaudeAgentOptions validateAndConfigureOptions(
+    static ClaudeAgentOptions validateAndConfigureOptions(
             ClaudeAgentOptions options,
             boolean isStreamingMode) {
         if (options.canUseTool() != null) {
@@ -365,7 +586,7 @@ public final class ClaudeSDK {
     /**
      * Extracts SDK MCP servers from options.
      */
-    private static Map<String, SdkMcpServer> extractSdkMcpServers(ClaudeAgentOptions options) {
+    static Map<String, SdkMcpServer> extractSdkMcpServers(ClaudeAgentOptions options) {
         Object mcpServers = options.mcpServers();
         if (mcpServers == null) {
             return null;
@@ -403,19 +624,20 @@ public final class ClaudeSDK {
      * @return the combined text content from all assistant messages
      */
     public static String queryForText(String prompt, ClaudeAgentOptions options) {
-        List<Message> messages = query(prompt, options);
         StringBuilder result = new StringBuilder();
 
-        for (Message msg : messages) {
-            if (msg instanceof AssistantMessage assistant) {
-                String text = assistant.getTextContent();
-                if (!text.isEmpty()) {
-                    if (!result.isEmpty()) {
-                        result.append("\n");
+        try (Stream<Message> messages = stream(prompt, options)) {
+            messages.forEach(msg -> {
+                if (msg instanceof AssistantMessage assistant) {
+                    String text = assistant.getTextContent();
+                    if (!text.isEmpty()) {
+                        if (!result.isEmpty()) {
+                            result.append("\n");
+                        }
+                        result.append(text);
                     }
-                    result.append(text);
                 }
-            }
+            });
         }
 
         return result.toString();
@@ -429,15 +651,13 @@ public final class ClaudeSDK {
      * @return the result message, or null if not found
      */
     public static ResultMessage queryForResult(String prompt, ClaudeAgentOptions options) {
-        List<Message> messages = query(prompt, options);
-
-        for (int i = messages.size() - 1; i >= 0; i--) {
-            if (messages.get(i) instanceof ResultMessage result) {
-                return result;
-            }
+        try (Stream<Message> messages = stream(prompt, options)) {
+            return messages
+                    .filter(ResultMessage.class::isInstance)
+                    .map(ResultMessage.class::cast)
+                    .reduce((first, second) -> second)
+                    .orElse(null);
         }
-
-        return null;
     }
 
     /**
@@ -540,6 +760,19 @@ public final class ClaudeSDK {
         return server.toConfig();
     }
 
+    /**
+     * Clears the cached Claude Code CLI location and version check results.
+     *
+     * <p>
+     * Cached entries are revalidated against the binary's modification time and
+     * size on every connection, so upgrading the CLI in place is picked up
+     * automatically. Call this after installing the CLI somewhere else, for
+     * example earlier on {@code PATH}.
+     */
+    public static void invalidateCliCache() {
+        CliCache.invalidate();
+    }
+
     /**
      * Returns the SDK version.
      *
@@ -549,4 +782,30 @@ public final class ClaudeSDK {
         return SdkVersion.VERSION;
     }
 
+    /**
+     * A started query: its handler, plus the task streaming input to it in
+     * streaming mode. Closing it stops the input and closes the handler.
+     */
+    record OpenQuery(QueryHandler queryHandler, @Nullable Future<?> input) implements AutoCloseable {
+
+        Iterator<Message> messages() {
+            return queryHandler.receiveMessages();
+        }
+
+        /**
+         * Stops the input and closes the handler, leaving the CLI process to
+         * exit in the background so that callers do not wait for its teardown.
+         */
+        @Override
+        public void close() {
+            // Closing the handler also releases input blocked on the CLI
+            queryHandler.closeAsync();
+
+            if (input != null) {
+                input.cancel(true);
+            }
+        }
+
+    }
+
 }
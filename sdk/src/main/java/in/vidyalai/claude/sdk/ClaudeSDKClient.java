@@ -5,9 +5,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,10 +20,15 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
+import in.vidyalai.claude.sdk.exceptions.ClaudeSDKException;
+import in.vidyalai.claude.sdk.internal.MessageEncoder;
 import in.vidyalai.claude.sdk.internal.QueryHandler;
 import in.vidyalai.claude.sdk.internal.transport.SubprocessCLITransport;
 import in.vidyalai.claude.sdk.mcp.SdkMcpServer;
 import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
+import in.vidyalai.claude.sdk.types.config.MessageQueueStats;
 import in.vidyalai.claude.sdk.types.mcp.McpSdkServerConfig;
 import in.vidyalai.claude.sdk.types.message.Message;
 import in.vidyalai.claude.sdk.types.message.ResultMessage;
@@ -111,8 +118,8 @@ import in.vidyalai.claude.sdk.types.permission.PermissionMode;
  * This class manages resources that are properly cleaned up on
  * {@link #close()}:
  * <ul>
- * <li>QueryHandler and its thread pools (reader and control executors)</li>
- * <li>Streaming ExecutorService for background message streaming</li>
+ * <li>QueryHandler and its background tasks (reader and control requests)</li>
+ * <li>Background tasks streaming input messages</li>
  * <li>Transport and CLI subprocess</li>
  * <li>Message iterators and queues</li>
  * </ul>
@@ -126,7 +133,7 @@ public class ClaudeSDKClient implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(ClaudeSDKClient.class.getName());
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final MessageEncoder ENCODER = new MessageEncoder(new ObjectMapper().writer());
 
     private final ClaudeAgentOptions options;
     @Nullable
@@ -136,8 +143,8 @@ public class ClaudeSDKClient implements AutoCloseable {
     private final AtomicBoolean connected = new AtomicBoolean(false);
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
-    // Executor service for streaming input in background
-    private volatile ExecutorService streamingExecutor;
+    // Tasks streaming input in background, run on the options' runtime
+    private final Set<Future<?>> streamingTasks = ConcurrentHashMap.newKeySet();
 
     // Thread safety: Volatile for visibility across threads
     @Nullable
@@ -212,12 +219,6 @@ public class ClaudeSDKClient implements AutoCloseable {
             return;
         }
 
-        // Create executor service for streaming tasks with named virtual threads
-        this.streamingExecutor = Executors.newThreadPerTaskExecutor(
-                Thread.ofVirtual()
-                        .name("ClaudeSDKClient-Streaming-", 0)
-                        .factory());
-
         // Validate permission settings
         ClaudeAgentOptions effectiveOptions = options;
         if (options.canUseTool() != null) {
@@ -230,6 +231,31 @@ public class ClaudeSDKClient implements AutoCloseable {
             effectiveOptions = options.withPermissionPromptToolName("stdio");
         }
 
+        CliProcessPool pool = options.processPool();
+        if ((customTransport == null) && (pool != null)) {
+            // Take an already connected and initialized process from the pool
+            CliProcessPool.PooledProcess process = pool.acquire(options);
+            transport = process.transport();
+            query = process.queryHandler();
+        } else {
+            connectQuery(effectiveOptions, initialPrompt);
+        }
+
+        // Mark as connected
+        connected.set(true);
+
+        // Send initial prompt if provided (streaming mode doesn't send it via command
+        // line)
+        if ((initialPrompt != null) && (!initialPrompt.isBlank())) {
+            sendMessage(initialPrompt);
+        }
+    }
+
+    /**
+     * Connects the transport and starts a new, initialized QueryHandler on it.
+     */
+    @SuppressWarnings("null")
+    private void connectQuery(ClaudeAgentOptions effectiveOptions, @Nullable String initialPrompt) {
         // Use provided custom transport or create subprocess transport
         if (customTransport != null) {
             transport = customTransport;
@@ -254,20 +280,13 @@ public class ClaudeSDKClient implements AutoCloseable {
                 effectiveOptions.hooks(),
                 sdkMcpServers,
                 initializeTimeout,
-                effectiveOptions.maxMsgQSize());
+                effectiveOptions.maxMsgQSize(),
+                effectiveOptions.messageOverflowPolicy(),
+                effectiveOptions.runtime());
 
         // Start reading messages and initialize
         query.start();
         query.initialize();
-
-        // Mark as connected
-        connected.set(true);
-
-        // Send initial prompt if provided (streaming mode doesn't send it via command
-        // line)
-        if ((initialPrompt != null) && (!initialPrompt.isBlank())) {
-            sendMessage(initialPrompt);
-        }
     }
 
     /**
@@ -302,7 +321,7 @@ public class ClaudeSDKClient implements AutoCloseable {
         message.put("message", innerMessage);
 
         try {
-            transport.write(MAPPER.writeValueAsString(message) + "\n");
+            ENCODER.write(transport, message);
         } catch (JsonProcessingException e) {
             throw new CLIConnectionException("Failed to serialize message", e);
         }
@@ -369,8 +388,10 @@ public class ClaudeSDKClient implements AutoCloseable {
     public void query(Iterator<Map<String, Object>> messageStream) throws CLIConnectionException {
         ensureConnected();
 
-        // Stream messages in background using executor service
-        streamingExecutor.submit(() -> query.streamInput(messageStream));
+        // Stream messages in background on the runtime's executor
+        QueryHandler handler = query;
+        streamingTasks.removeIf(Future::isDone);
+        streamingTasks.add(options.runtime().executor().submit(() -> handler.streamInput(messageStream)));
     }
 
     /**
@@ -410,6 +431,41 @@ public class ClaudeSDKClient implements AutoCloseable {
         return query.receiveMessages();
     }
 
+    /**
+     * Returns an iterator over messages as undecoded JSON, for forwarding CLI
+     * output without parsing or re-serializing it.
+     *
+     * <p>
+     * Requires {@link ClaudeAgentOptions#rawMessages()}. Each message carries
+     * its sniffed {@code type} and the JSON object exactly as the CLI wrote it;
+     * a turn ends with a message of type {@code result}. Control messages are
+     * handled by the client and not returned.
+     *
+     * <p>
+     * Usage:
+     *
+     * <pre>{@code
+     * Iterator<TransportMessage.EncodedMessage> messages = client.receiveRawMessages();
+     * while (messages.hasNext()) {
+     *     TransportMessage.EncodedMessage msg = messages.next();
+     *     webSocket.sendText(msg.asString(), true);
+     * }
+     * }</pre>
+     *
+     * @return an iterator over encoded messages
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed or rawMessages is not
+     *                                enabled
+     */
+    @SuppressWarnings("null")
+    public Iterator<TransportMessage.EncodedMessage> receiveRawMessages() throws CLIConnectionException {
+        if (!options.rawMessages()) {
+            throw new IllegalStateException("receiveRawMessages() requires ClaudeAgentOptions.rawMessages(true)");
+        }
+        ensureConnected();
+        return query.receiveRawMessages();
+    }
+
     /**
      * Returns an iterable over messages until and including a ResultMessage.
      *
@@ -505,6 +561,21 @@ public class ClaudeSDKClient implements AutoCloseable {
         return query.getMcpStatus();
     }
 
+    /**
+     * Gets the current MCP server connection status without blocking the
+     * calling thread; see {@link #getMcpStatus()}.
+     *
+     * @return a future of the MCP server status map, failed with a
+     *         {@link ClaudeSDKException} if the request fails or times out
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public CompletableFuture<Map<String, Object>> getMcpStatusAsync() throws CLIConnectionException {
+        ensureConnected();
+        return query.getMcpStatusAsync();
+    }
+
     /**
      * Sends an interrupt signal to stop the current operation.
      *
@@ -517,6 +588,21 @@ public class ClaudeSDKClient implements AutoCloseable {
         query.interrupt();
     }
 
+    /**
+     * Sends an interrupt signal without blocking the calling thread.
+     *
+     * @return a future completed once the CLI acknowledges the interrupt,
+     *         failed with a {@link ClaudeSDKException} if the request fails or
+     *         times out
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public CompletableFuture<Void> interruptAsync() throws CLIConnectionException {
+        ensureConnected();
+        return query.interruptAsync();
+    }
+
     /**
      * Changes the permission mode during conversation.
      *
@@ -531,6 +617,22 @@ public class ClaudeSDKClient implements AutoCloseable {
         query.setPermissionMode(mode);
     }
 
+    /**
+     * Changes the permission mode without blocking the calling thread.
+     *
+     * @param mode the new permission mode
+     * @return a future completed once the CLI acknowledges the change, failed
+     *         with a {@link ClaudeSDKException} if the request fails or times
+     *         out
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public CompletableFuture<Void> setPermissionModeAsync(PermissionMode mode) throws CLIConnectionException {
+        ensureConnected();
+        return query.setPermissionModeAsync(mode);
+    }
+
     /**
      * Changes the AI model during conversation.
      *
@@ -544,6 +646,22 @@ public class ClaudeSDKClient implements AutoCloseable {
         query.setModel(model);
     }
 
+    /**
+     * Changes the AI model without blocking the calling thread.
+     *
+     * @param model the model to use, or null for default
+     * @return a future completed once the CLI acknowledges the change, failed
+     *         with a {@link ClaudeSDKException} if the request fails or times
+     *         out
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public CompletableFuture<Void> setModelAsync(@Nullable String model) throws CLIConnectionException {
+        ensureConnected();
+        return query.setModelAsync(model);
+    }
+
     /**
      * Rewinds tracked files to their state at a specific user message.
      *
@@ -583,61 +701,96 @@ public class ClaudeSDKClient implements AutoCloseable {
         return query.getInitializationResult();
     }
 
+    /**
+     * Returns the backpressure counters of the message queue.
+     *
+     * <p>
+     * Useful to tell whether the consumer keeps up with the CLI: blocked time
+     * grows with {@link MessageOverflowPolicy#BLOCK} and spilled messages with
+     * {@link MessageOverflowPolicy#SPILL} when messages are not drained fast
+     * enough.
+     *
+     * @return a snapshot of the queue stats
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public MessageQueueStats getMessageQueueStats() throws CLIConnectionException {
+        ensureConnected();
+        return query.getMessageQueueStats();
+    }
+
+    /**
+     * Returns the most recent stderr output of the CLI process.
+     *
+     * <p>
+     * Stderr is always drained into a buffer of
+     * {@link ClaudeAgentOptions#stderrBufferSize()} bytes, whether or not a
+     * stderr callback is set, so this also works after the process has
+     * exited.
+     *
+     * @return the buffered stderr, possibly empty
+     * @throws CLIConnectionException if not connected
+     * @throws IllegalStateException  if client is closed
+     */
+    @SuppressWarnings("null")
+    public String getRecentStderr() throws CLIConnectionException {
+        ensureConnected();
+        return transport.recentStderr();
+    }
+
     /**
      * Disconnects from Claude Code and releases resources.
      *
      * <p>
-     * This method closes the QueryHandler (which closes the transport), shuts down
-     * the streaming executor, and clears all cached state. It is called by
+     * This method closes the QueryHandler (which closes the transport), cancels
+     * the tasks streaming input to the CLI, and clears all cached state. It waits for the CLI
+     * process to exit, for at most the close timeout (see
+     * {@link ClaudeAgentOptions#closeTimeout()}). It is called by
      * {@link #close()} and can be called directly.
      *
      * <p>
      * This method is safe to call multiple times (idempotent).
      */
     public void disconnect() {
+        awaitClosed(disconnectAsync());
+    }
+
+    private CompletableFuture<Void> disconnectAsync() {
         if (!connected.get()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         // Close QueryHandler (which will close transport)
+        CompletableFuture<Void> handlerClosed = CompletableFuture.completedFuture(null);
         if (query != null) {
             try {
-                query.close();
+                handlerClosed = query.closeAsync();
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Error closing QueryHandler", e);
             }
             query = null;
         }
 
-        // Shutdown streaming executor gracefully
-        shutdownStreamingExecutor();
+        // Stop streaming input; the CLI no longer reads it
+        streamingTasks.forEach(task -> task.cancel(true));
+        streamingTasks.clear();
 
         // Clear cached state
         transport = null;
 
         // Reset connection flag
         connected.set(false);
+        return handlerClosed;
     }
 
-    /**
-     * Shuts down the streaming executor gracefully.
-     */
-    private void shutdownStreamingExecutor() {
-        streamingExecutor.shutdown();
+    private static void awaitClosed(CompletableFuture<Void> closed) {
         try {
-            if (!streamingExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                logger.fine("Streaming executor did not terminate gracefully, forcing shutdown");
-                streamingExecutor.shutdownNow();
-                boolean terminated = streamingExecutor.awaitTermination(2, TimeUnit.SECONDS);
-                if (!terminated) {
-                    logger.warning("Streaming executor did not terminate even after shutdownNow()");
-                }
-            }
+            closed.get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            streamingExecutor.shutdownNow();
-        } finally {
-            streamingExecutor = null;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Error closing QueryHandler", e.getCause());
         }
     }
 
@@ -652,20 +805,44 @@ public class ClaudeSDKClient implements AutoCloseable {
      * Shutdown sequence:
      * <ol>
      * <li>Set closed flag (atomic)</li>
-     * <li>Close QueryHandler (which closes transport and shuts down executors)</li>
+     * <li>Close QueryHandler (which closes transport and cancels in-flight
+     * control requests)</li>
+     * <li>Cancel the tasks streaming input to the CLI</li>
      * <li>Clear all cached state</li>
+     * <li>Wait for the CLI process to exit, for at most the close timeout</li>
      * </ol>
      */
     @Override
     public void close() {
+        awaitClosed(closeAsync());
+    }
+
+    /**
+     * Closes the client without waiting for the CLI process to exit.
+     *
+     * <p>
+     * Everything {@link #close()} releases is released before this returns,
+     * except the process itself: it is left to a shared reaper that kills it if
+     * it has not exited within the close timeout (see
+     * {@link ClaudeAgentOptions#closeTimeout()}). Use this where the caller
+     * should not pay for process teardown, e.g. at the end of a request.
+     *
+     * <p>
+     * This method is thread-safe and idempotent; subsequent calls return a
+     * completed future.
+     *
+     * @return a future completed once the CLI process has exited
+     */
+    public CompletableFuture<Void> closeAsync() {
         // Use atomic getAndSet for thread-safe idempotent close
         if (closed.getAndSet(true)) {
-            return; // Already closed
+            return CompletableFuture.completedFuture(null); // Already closed
         }
 
         logger.fine("Closing ClaudeSDKClient");
-        disconnect();
+        CompletableFuture<Void> disconnected = disconnectAsync();
         logger.fine("ClaudeSDKClient closed");
+        return disconnected;
     }
 
     /**
@@ -0,0 +1,506 @@
+package in.vidyalai.claude.sdk;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import in.vidyalai.claude.sdk.internal.QueryHandler;
+import in.vidyalai.claude.sdk.internal.transport.SubprocessCLITransport;
+import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
+import in.vidyalai.claude.sdk.types.hook.HookEvent;
+import in.vidyalai.claude.sdk.types.hook.HookMatcher;
+
+/**
+ * Pool of pre-started, pre-initialized Claude Code CLI processes.
+ *
+ * <p>
+ * Starting a connection normally spawns the CLI, checks its version and runs
+ * the {@code initialize} handshake before the first prompt can be sent. With a
+ * pool set through {@link ClaudeAgentOptions.Builder#processPool}, that work is
+ * done ahead of time: {@link ClaudeSDK#query} and
+ * {@link ClaudeSDKClient#connect()} take a ready process and the pool starts a
+ * replacement in the background.
+ *
+ * <pre>{@code
+ * CliProcessPool pool = CliProcessPool.builder()
+ *         .size(2)
+ *         .build();
+ *
+ * var options = ClaudeAgentOptions.builder()
+ *         .permissionMode(PermissionMode.BYPASS_PERMISSIONS)
+ *         .processPool(pool)
+ *         .build();
+ * pool.warm(options);  // Optional: start processes before the first query
+ *
+ * List<Message> messages = ClaudeSDK.query("What is 2+2?", options);
+ * }</pre>
+ *
+ * <h2>Keys</h2>
+ * <p>
+ * Processes are started with a fixed command line, so they are kept per
+ * {@link ClaudeAgentOptions#fingerprint()}. Options built separately with
+ * equal values share processes, provided they also use the same callback,
+ * hook and in-process MCP server instances, which are bound to the process
+ * when it is initialized. Pooled processes always run in streaming mode;
+ * one-shot queries send their prompt over stdin.
+ *
+ * <h2>Lifecycle</h2>
+ * <ul>
+ * <li>Each process serves a single query or client and is closed with it, so
+ * no conversation state is shared between callers.</li>
+ * <li>Options that have not been used for {@code idleTimeout} are evicted and
+ * their idle processes closed.</li>
+ * <li>Idle processes older than {@code maxAge}, or that have exited, are
+ * closed and replaced.</li>
+ * </ul>
+ *
+ * <h2>Thread Safety</h2>
+ * <p>
+ * This class is thread-safe. Always call {@link #close()} when done to stop the
+ * idle processes.
+ */
+public final class CliProcessPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CliProcessPool.class.getName());
+    private static final int DEFAULT_SIZE = 1;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(30);
+    private static final Duration MAX_MAINTENANCE_INTERVAL = Duration.ofSeconds(30);
+    private static final int CLOSE_TIMEOUT_SECS = 10;
+
+    private final int size;
+    private final Duration idleTimeout;
+    private final Duration maxAge;
+    private final Map<SlotKey, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    // Spawns and closes processes off the caller's thread
+    private final ExecutorService spawnExecutor;
+    // Runs eviction and recycling
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    private CliProcessPool(Builder builder) {
+        this.size = builder.size;
+        this.idleTimeout = builder.idleTimeout;
+        this.maxAge = builder.maxAge;
+
+        this.spawnExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual()
+                        .name("CliProcessPool-Spawn-", 0)
+                        .factory());
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual()
+                        .name("CliProcessPool-Maintenance-", 0)
+                        .factory());
+
+        Duration shortest = ((idleTimeout.compareTo(maxAge) < 0) ? idleTimeout : maxAge);
+        long intervalMs = Math.max(1, Math.min(shortest.toMillis(), MAX_MAINTENANCE_INTERVAL.toMillis()) / 2);
+        maintenanceExecutor.scheduleWithFixedDelay(this::maintain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new builder for CliProcessPool.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts processes for the given options in the background, without waiting
+     * for them to be ready.
+     *
+     * @param options the options the processes will be used with
+     * @throws IllegalStateException    if the pool is closed
+     * @throws IllegalArgumentException if the options are invalid for a
+     *                                  streaming connection
+     */
+    public void warm(ClaudeAgentOptions options) {
+        ensureOpen();
+        Slot slot = slot(options);
+        slot.lastUsedNanos = System.nanoTime();
+        refill(slot);
+    }
+
+    /**
+     * Returns the number of processes ready to be handed out.
+     *
+     * @return the number of idle processes across all options
+     */
+    public int idleCount() {
+        int count = 0;
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                count += slot.idle.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of processes ready to be handed out for the given
+     * options.
+     *
+     * @param options the options
+     * @return the number of idle processes for these options
+     */
+    public int idleCount(ClaudeAgentOptions options) {
+        Slot slot = slots.get(SlotKey.of(options));
+        if (slot == null) {
+            return 0;
+        }
+        synchronized (slot) {
+            return slot.idle.size();
+        }
+    }
+
+    /**
+     * Takes a connected, initialized process for the given options, starting
+     * one on the calling thread if none is ready. The caller owns the returned
+     * process and closes it through its {@link QueryHandler}.
+     */
+    PooledProcess acquire(ClaudeAgentOptions options) {
+        ensureOpen();
+        Slot slot = slot(options);
+        slot.lastUsedNanos = System.nanoTime();
+        try {
+            PooledProcess process;
+            while ((process = slot.poll()) != null) {
+                if (isUsable(process, System.nanoTime())) {
+                    return process;
+                }
+                closeAsync(process);
+            }
+        } finally {
+            // Start the replacement while the caller uses this one
+            refill(slot);
+        }
+
+        // Cold start: nothing ready yet
+        logger.fine("No pooled Claude Code process ready, starting one");
+        return spawn(slot.effectiveOptions);
+    }
+
+    /**
+     * Closes the pool and all idle processes. Processes already handed out are
+     * unaffected. Idempotent.
+     */
+    @Override
+    public void close() {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+
+        maintenanceExecutor.shutdownNow();
+
+        List<PooledProcess> idle = new ArrayList<>();
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                idle.addAll(slot.idle);
+                slot.idle.clear();
+            }
+        }
+        slots.clear();
+        idle.forEach(this::closeAsync);
+
+        // In-flight spawns see the closed flag and close their process
+        spawnExecutor.shutdown();
+        try {
+            if (!spawnExecutor.awaitTermination(CLOSE_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                logger.warning("Process pool did not shut down within " + CLOSE_TIMEOUT_SECS
+                        + " seconds, forcing shutdown");
+                spawnExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            spawnExecutor.shutdownNow();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("CliProcessPool is closed");
+        }
+    }
+
+    private Slot slot(ClaudeAgentOptions options) {
+        return slots.computeIfAbsent(SlotKey.of(options),
+                key -> new Slot(key, ClaudeSDK.validateAndConfigureOptions(options, true)));
+    }
+
+    private void refill(Slot slot) {
+        int missing;
+        synchronized (slot) {
+            missing = size - slot.idle.size() - slot.spawning;
+            if ((missing <= 0) || (closed.get())) {
+                return;
+            }
+            slot.spawning += missing;
+        }
+        for (int i = 0; i < missing; i++) {
+            try {
+                spawnExecutor.execute(() -> spawnInto(slot));
+            } catch (RejectedExecutionException e) {
+                // Pool closed concurrently
+                synchronized (slot) {
+                    slot.spawning--;
+                }
+            }
+        }
+    }
+
+    private void spawnInto(Slot slot) {
+        PooledProcess process = null;
+        try {
+            process = spawn(slot.effectiveOptions);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to pre-start Claude Code process: " + e.getMessage(), e);
+        }
+
+        boolean keep;
+        synchronized (slot) {
+            slot.spawning--;
+            keep = ((process != null) && (!closed.get()) && (slots.get(slot.key) == slot));
+            if (keep) {
+                slot.idle.addLast(process);
+            }
+        }
+        if ((process != null) && (!keep)) {
+            process.queryHandler().close();
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private static PooledProcess spawn(ClaudeAgentOptions effectiveOptions) {
+        SubprocessCLITransport transport = new SubprocessCLITransport(null, true, effectiveOptions);
+        QueryHandler queryHandler = null;
+        try {
+            transport.connect();
+
+            // Calculate initialize timeout
+            long timeoutMs = Long.parseLong(System.getenv().getOrDefault("CLAUDE_CODE_STREAM_CLOSE_TIMEOUT", "60000"));
+            Duration initializeTimeout = Duration.ofMillis(Math.max(timeoutMs, 60000));
+
+            queryHandler = new QueryHandler(
+                    transport,
+                    true, // Pooled processes always use streaming mode
+                    effectiveOptions.canUseTool(),
+                    effectiveOptions.hooks(),
+                    ClaudeSDK.extractSdkMcpServers(effectiveOptions),
+                    initializeTimeout,
+                    effectiveOptions.maxMsgQSize(),
+                    effectiveOptions.messageOverflowPolicy(),
+                    effectiveOptions.runtime());
+            queryHandler.start();
+            queryHandler.initialize();
+            return new PooledProcess(transport, queryHandler, System.nanoTime());
+        } catch (RuntimeException e) {
+            if (queryHandler != null) {
+                queryHandler.close();
+            } else {
+                transport.close();
+            }
+            throw e;
+        }
+    }
+
+    private void maintain() {
+        long now = System.nanoTime();
+        for (Slot slot : slots.values()) {
+            boolean evict = ((now - slot.lastUsedNanos) > idleTimeout.toNanos());
+            if (evict) {
+                slots.remove(slot.key, slot);
+            }
+
+            List<PooledProcess> expired = new ArrayList<>();
+            synchronized (slot) {
+                for (Iterator<PooledProcess> it = slot.idle.iterator(); it.hasNext();) {
+                    PooledProcess process = it.next();
+                    if ((evict) || (!isUsable(process, now))) {
+                        it.remove();
+                        expired.add(process);
+                    }
+                }
+            }
+            if (!expired.isEmpty()) {
+                logger.fine(() -> "Closing " + expired.size() + ((evict) ? " idle" : " expired")
+                        + " pooled Claude Code process(es)");
+                expired.forEach(this::closeAsync);
+            }
+
+            if (!evict) {
+                refill(slot);
+            }
+        }
+    }
+
+    private boolean isUsable(PooledProcess process, long now) {
+        return (process.transport().isReady() && ((now - process.startedAtNanos()) < maxAge.toNanos()));
+    }
+
+    private void closeAsync(PooledProcess process) {
+        process.queryHandler().closeAsync();
+    }
+
+    /**
+     * A connected and initialized CLI process.
+     */
+    record PooledProcess(Transport transport, QueryHandler queryHandler, long startedAtNanos) {
+    }
+
+    /**
+     * Identifies interchangeable processes: the same CLI launch, and the same
+     * SDK-side handlers bound to the process at initialize.
+     */
+    private record SlotKey(
+            String fingerprint,
+            ClaudeAgentOptions.@Nullable CanUseTool canUseTool,
+            @Nullable Map<HookEvent, List<HookMatcher>> hooks,
+            @Nullable Object mcpServers,
+            @Nullable Consumer<String> stderrCallback,
+            @Nullable Integer stderrBufferSize,
+            @Nullable Integer stderrCallbackRate,
+            @Nullable Integer maxBufferSize,
+            @Nullable Integer maxMsgQSize,
+            MessageOverflowPolicy messageOverflowPolicy,
+            boolean coalescingWrites,
+            @Nullable Set<String> receiveTypes,
+            boolean lazyContent,
+            boolean rawMessages,
+            @Nullable Duration closeTimeout,
+            SdkRuntime runtime) {
+
+        static SlotKey of(ClaudeAgentOptions options) {
+            return new SlotKey(
+                    options.fingerprint(),
+                    options.canUseTool(),
+                    options.hooks(),
+                    options.mcpServers(),
+                    options.stderrCallback(),
+                    options.stderrBufferSize(),
+                    options.stderrCallbackRate(),
+                    options.maxBufferSize(),
+                    options.maxMsgQSize(),
+                    options.messageOverflowPolicy(),
+                    options.coalescingWrites(),
+                    options.receiveTypes(),
+                    options.lazyContent(),
+                    options.rawMessages(),
+                    options.closeTimeout(),
+                    options.runtime());
+        }
+
+    }
+
+    /**
+     * Idle processes for one slot key.
+     */
+    private final class Slot {
+
+        private final SlotKey key;
+        private final ClaudeAgentOptions effectiveOptions;
+        // Guarded by this
+        private final ArrayDeque<PooledProcess> idle = new ArrayDeque<>();
+        // Guarded by this
+        private int spawning = 0;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        Slot(SlotKey key, ClaudeAgentOptions effectiveOptions) {
+            this.key = key;
+            this.effectiveOptions = effectiveOptions;
+        }
+
+        synchronized PooledProcess poll() {
+            return idle.pollFirst();
+        }
+
+    }
+
+    /**
+     * Builder for CliProcessPool.
+     */
+    public static final class Builder {
+
+        private int size = DEFAULT_SIZE;
+        private Duration idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        private Duration maxAge = DEFAULT_MAX_AGE;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of processes kept ready per options fingerprint.
+         *
+         * @param size the number of warm processes (default 1)
+         * @return this builder
+         * @throws IllegalArgumentException if size is less than 1
+         */
+        public Builder size(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("size must be positive: " + size);
+            }
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Sets how long options may go unused before their processes are
+         * evicted.
+         *
+         * @param idleTimeout the idle timeout (default 5 minutes)
+         * @return this builder
+         * @throws IllegalArgumentException if the timeout is not positive
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            if ((idleTimeout.isNegative()) || (idleTimeout.isZero())) {
+                throw new IllegalArgumentException("idleTimeout must be positive: " + idleTimeout);
+            }
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the age after which idle processes are replaced with fresh ones.
+         *
+         * @param maxAge the maximum process age (default 30 minutes)
+         * @return this builder
+         * @throws IllegalArgumentException if the age is not positive
+         */
+        public Builder maxAge(Duration maxAge) {
+            if ((maxAge.isNegative()) || (maxAge.isZero())) {
+                throw new IllegalArgumentException("maxAge must be positive: " + maxAge);
+            }
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * Builds the pool.
+         *
+         * @return a new pool
+         */
+        public CliProcessPool build() {
+            return new CliProcessPool(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package in.vidyalai.claude.sdk;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.jspecify.annotations.Nullable;
+
+import in.vidyalai.claude.sdk.types.message.Message;
+
+/**
+ * Single-use {@link Flow.Publisher} over the messages of one query.
+ *
+ * <p>
+ * The query is opened by a task on the {@link SdkRuntime} executor when the
+ * subscriber first requests messages. That task reads at most one message ahead of the outstanding
+ * demand, so an idle subscriber leaves messages in the QueryHandler's bounded
+ * queue and, once it is full, stalls the transport's read loop. Completion and
+ * errors are signalled as soon as they are seen, whatever the demand.
+ */
+final class QueryPublisher implements Flow.Publisher<Message> {
+
+    private final Executor executor;
+    private final Supplier<ClaudeSDK.OpenQuery> opener;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    QueryPublisher(Executor executor, Supplier<ClaudeSDK.OpenQuery> opener) {
+        this.executor = executor;
+        this.opener = opener;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (subscribed.getAndSet(true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+
+            });
+            subscriber.onError(new IllegalStateException("This query publisher already has a subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new QuerySubscription(subscriber));
+    }
+
+    private final class QuerySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Message> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demandAvailable = lock.newCondition();
+        // Guarded by lock
+        private long demand = 0;
+        private boolean started = false;
+        private boolean cancelled = false;
+        @Nullable
+        private IllegalArgumentException invalidRequest;
+        private ClaudeSDK.@Nullable OpenQuery query;
+
+        QuerySubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    // Reactive Streams rule 3.9: signalled through onError by the drain thread
+                    invalidRequest = new IllegalArgumentException("Requested " + n + " messages, must be positive");
+                } else {
+                    demand = ((demand + n < 0) ? Long.MAX_VALUE : demand + n);
+                }
+                demandAvailable.signal();
+                if (!started) {
+                    started = true;
+                    executor.execute(this::drain);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            ClaudeSDK.OpenQuery toClose;
+            lock.lock();
+            try {
+                cancelled = true;
+                demandAvailable.signal();
+                toClose = query;
+            } finally {
+                lock.unlock();
+            }
+
+            // Unblocks a drain thread waiting for the next message
+            if (toClose != null) {
+                toClose.close();
+            }
+        }
+
+        private void drain() {
+            ClaudeSDK.OpenQuery opened = null;
+            try {
+                if (!awaitDemand()) {
+                    return;
+                }
+
+                opened = opener.get();
+                lock.lock();
+                try {
+                    query = opened;
+                    if (cancelled) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                // End of stream needs no demand, so it is checked first
+                Iterator<Message> messages = opened.messages();
+                while (messages.hasNext()) {
+                    Message message = messages.next();
+                    if ((!awaitDemand()) || (!consumeDemand())) {
+                        return;
+                    }
+                    subscriber.onNext(message);
+                }
+                if (!isCancelled()) {
+                    subscriber.onComplete();
+                }
+            } catch (Throwable e) {
+                if (!isCancelled()) {
+                    subscriber.onError(e);
+                }
+            } finally {
+                if (opened != null) {
+                    opened.close();
+                }
+            }
+        }
+
+        /**
+         * Waits until there is outstanding demand. Returns false if the
+         * subscription was cancelled, and throws if an invalid amount was
+         * requested.
+         */
+        private boolean awaitDemand() throws InterruptedException {
+            lock.lock();
+            try {
+                while ((demand == 0) && (!cancelled) && (invalidRequest == null)) {
+                    demandAvailable.await();
+                }
+                if ((!cancelled) && (invalidRequest != null)) {
+                    throw invalidRequest;
+                }
+                return (!cancelled);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean consumeDemand() {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return false;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isCancelled() {
+            lock.lock();
+            try {
+                return cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package in.vidyalai.claude.sdk;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import in.vidyalai.claude.sdk.internal.transport.ProcessReaper;
+
+/**
+ * Threads shared by all sessions: an executor for background tasks, a timer
+ * and a reaper for closed CLI processes.
+ *
+ * <p>
+ * Every connection runs a few long-lived background tasks (reading stdout and
+ * stderr, streaming input, handling control requests). Instead of each
+ * connection creating and shutting down its own executors, they are submitted
+ * to the runtime set through {@link ClaudeAgentOptions.Builder#runtime}, or to
+ * {@link #shared()} by default, and stopped individually when the connection
+ * closes.
+ *
+ * <pre>{@code
+ * // Route SDK tasks through an instrumented executor
+ * SdkRuntime runtime = SdkRuntime.of(
+ *         tracingExecutor(Executors.newVirtualThreadPerTaskExecutor()),
+ *         Executors.newSingleThreadScheduledExecutor());
+ *
+ * var options = ClaudeAgentOptions.builder()
+ *         .runtime(runtime)
+ *         .build();
+ * }</pre>
+ *
+ * <p>
+ * Tasks block for as long as their connection is open, so the executor must
+ * start a thread per task (e.g.
+ * {@link Executors#newVirtualThreadPerTaskExecutor()}); a bounded pool would
+ * stall connections once its threads are taken.
+ *
+ * <h2>Thread Safety</h2>
+ * <p>
+ * This class is thread-safe.
+ */
+public final class SdkRuntime implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final ProcessReaper reaper;
+    private final boolean owned;
+
+    private SdkRuntime(ExecutorService executor, ScheduledExecutorService scheduler, boolean owned) {
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.reaper = new ProcessReaper(scheduler);
+        this.owned = owned;
+    }
+
+    /**
+     * Returns the runtime used when none is configured. It lives as long as
+     * the JVM; its threads are virtual and do not keep the JVM alive.
+     *
+     * @return the shared runtime
+     */
+    public static SdkRuntime shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Creates a runtime with its own virtual-thread-per-task executor and timer,
+     * both shut down by {@link #close()}.
+     *
+     * @return a new runtime
+     */
+    public static SdkRuntime create() {
+        return new SdkRuntime(
+                Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual()
+                                .name("ClaudeSDK-", 0)
+                                .factory()),
+                Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofVirtual()
+                                .name("ClaudeSDK-Timer-", 0)
+                                .factory()),
+                true);
+    }
+
+    /**
+     * Creates a runtime on caller-owned executors. {@link #close()} leaves them
+     * running.
+     *
+     * @param executor  runs background tasks; must start a thread per task
+     * @param scheduler runs timeouts; tasks are short and must not block
+     * @return a new runtime
+     */
+    public static SdkRuntime of(ExecutorService executor, ScheduledExecutorService scheduler) {
+        return new SdkRuntime(executor, scheduler, false);
+    }
+
+    /**
+     * Returns the executor for background tasks.
+     *
+     * @return the executor
+     */
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Returns the timer for timeouts and delayed work.
+     *
+     * @return the scheduler
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Waits for a CLI process whose input has been closed to exit, sending
+     * {@code SIGTERM} after half the deadline and killing it once the deadline
+     * expires.
+     *
+     * @param process  the process
+     * @param deadline time allowed for the process to exit
+     * @return a future completed once the process has exited
+     */
+    public CompletableFuture<Void> reap(Process process, Duration deadline) {
+        return reaper.reap(process, deadline);
+    }
+
+    /**
+     * Shuts down the executor and timer of a runtime from {@link #create()},
+     * interrupting tasks of connections still using it. Has no effect on
+     * {@link #shared()} or on runtimes from {@link #of}.
+     */
+    @Override
+    public void close() {
+        if (owned) {
+            executor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class Shared {
+
+        static final SdkRuntime INSTANCE;
+
+        static {
+            SdkRuntime runtime = create();
+            INSTANCE = new SdkRuntime(runtime.executor, runtime.scheduler, false);
+        }
+
+    }
+
+}
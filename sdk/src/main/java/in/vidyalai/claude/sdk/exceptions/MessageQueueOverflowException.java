@@ -0,0 +1,30 @@
+package in.vidyalai.claude.sdk.exceptions;
+
+/**
+ * Raised when the message queue is full and the overflow policy is
+ * {@link in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy#FAIL}.
+ */
+public class MessageQueueOverflowException extends ClaudeSDKException {
+
+    private final int capacity;
+
+    /**
+     * Creates a new exception for a queue of the given capacity.
+     *
+     * @param capacity the queue capacity that was exceeded
+     */
+    public MessageQueueOverflowException(int capacity) {
+        super("Message queue full (capacity " + capacity + "), consumer is not keeping up");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the queue capacity that was exceeded.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,390 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import in.vidyalai.claude.sdk.exceptions.MessageParseException;
+import in.vidyalai.claude.sdk.types.message.ContentBlock;
+import in.vidyalai.claude.sdk.types.message.TextBlock;
+import in.vidyalai.claude.sdk.types.message.ThinkingBlock;
+import in.vidyalai.claude.sdk.types.message.ToolResultBlock;
+import in.vidyalai.claude.sdk.types.message.ToolUseBlock;
+
+/**
+ * Read-only collections that keep their slice of a message's raw UTF-8 JSON
+ * and decode it on first access.
+ *
+ * <p>
+ * Used by {@link MessageParser} when lazy content is enabled (see
+ * {@code ClaudeAgentOptions.lazyContent()}). The transport hands such messages
+ * over as the bytes the CLI wrote, and message content stays as a byte range
+ * into them until a content block is looked at; decoding the blocks in turn
+ * leaves tool inputs and structured tool results as byte ranges until they are
+ * looked at. No strings are decoded before then. Decoded values are memoized
+ * and the slice released; the message bytes are freed once no slice refers to
+ * them.
+ *
+ * <p>
+ * Plain JSON values ({@link JsonMap}, {@link JsonList}) that were never
+ * decoded are serialized by streaming their bytes to the generator, so
+ * messages can be stored or forwarded without building the object tree.
+ *
+ * <p>
+ * All classes are thread-safe; a value is decoded at most once.
+ */
+final class LazyContent {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(Map.class);
+    private static final ObjectReader LIST_READER = MAPPER.readerFor(List.class);
+
+    private LazyContent() {
+        // Utility class
+    }
+
+    /**
+     * A JSON value's byte range within a message's raw JSON.
+     *
+     * @param json   the message bytes, shared by all slices of the message
+     * @param offset the index of the value's first byte
+     * @param length the length of the value in bytes
+     */
+    record Slice(byte[] json, int offset, int length) {
+
+        /**
+         * Returns a slice over a whole message.
+         *
+         * @param json the message bytes
+         * @return the slice
+         */
+        static Slice of(byte[] json) {
+            return new Slice(json, 0, json.length);
+        }
+
+        /**
+         * Opens a parser over the slice, positioned before its first token.
+         *
+         * @return the parser
+         * @throws IOException if the parser cannot be created
+         */
+        JsonParser parser() throws IOException {
+            return MAPPER.createParser(json, offset, length);
+        }
+
+        /**
+         * Returns the slice of the object or array at the current token of
+         * {@code p}, a parser opened by {@link #parser()}, and skips past it.
+         */
+        private Slice child(JsonParser p) throws IOException {
+            // Byte offsets are relative to the start of the parser's input
+            int start = (int) p.currentTokenLocation().getByteOffset();
+            p.skipChildren();
+            int end = (int) p.currentLocation().getByteOffset();
+            return new Slice(json, offset + start, end - start);
+        }
+
+    }
+
+    /**
+     * Reads the value at the current token of {@code p}, a parser opened by
+     * {@code source.parser()}: objects and arrays become lazy collections and
+     * are skipped, scalars are decoded right away.
+     *
+     * @param source the slice {@code p} reads
+     * @param p      the parser, positioned on the value's first token
+     * @return the value
+     * @throws IOException if the value cannot be read
+     */
+    @Nullable
+    static Object value(Slice source, JsonParser p) throws IOException {
+        JsonToken first = p.currentToken();
+        if (first == JsonToken.START_OBJECT) {
+            return new JsonMap(source.child(p));
+        }
+        if (first == JsonToken.START_ARRAY) {
+            return new JsonList(source.child(p));
+        }
+        return MAPPER.readValue(p, Object.class);
+    }
+
+    /**
+     * Reads message content at the current token of {@code p}: arrays become
+     * lazy {@link ContentBlocks}, other values are read as by
+     * {@link #value(Slice, JsonParser)}.
+     *
+     * @param source the slice {@code p} reads
+     * @param p      the parser, positioned on the content's first token
+     * @return the content
+     * @throws IOException if the content cannot be read
+     */
+    @Nullable
+    static Object content(Slice source, JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.START_ARRAY) {
+            return new ContentBlocks(source.child(p));
+        }
+        return value(source, p);
+    }
+
+    /**
+     * Memoized decoding of a slice.
+     */
+    private abstract static class Memo<T> {
+
+        @Nullable
+        private Slice slice;
+        @Nullable
+        private volatile T decoded;
+
+        Memo(Slice slice) {
+            this.slice = slice;
+        }
+
+        final T get() {
+            T value = decoded;
+            if (value == null) {
+                synchronized (this) {
+                    value = decoded;
+                    if (value == null) {
+                        try {
+                            value = decode(slice);
+                        } catch (IOException e) {
+                            throw new MessageParseException("Failed to decode message content: " + e.getMessage(),
+                                    null, e);
+                        }
+                        decoded = value;
+                        slice = null;
+                    }
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Writes the value, streaming the slice if it was never decoded.
+         */
+        final void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Slice pending;
+            synchronized (this) {
+                pending = slice;
+            }
+            if (pending != null) {
+                try (JsonParser p = pending.parser()) {
+                    p.nextToken();
+                    gen.copyCurrentStructure(p);
+                }
+            } else {
+                provider.defaultSerializeValue(get(), gen);
+            }
+        }
+
+        abstract T decode(Slice slice) throws IOException;
+
+    }
+
+    /**
+     * Content blocks of an assistant or user message.
+     */
+    static final class ContentBlocks extends AbstractList<ContentBlock> {
+
+        private final Memo<List<ContentBlock>> blocks;
+
+        ContentBlocks(Slice slice) {
+            this.blocks = new Memo<>(slice) {
+                @Override
+                List<ContentBlock> decode(Slice slice) throws IOException {
+                    return readBlocks(slice);
+                }
+            };
+        }
+
+        @Override
+        public ContentBlock get(int index) {
+            return blocks.get().get(index);
+        }
+
+        @Override
+        public int size() {
+            return blocks.get().size();
+        }
+
+    }
+
+    /**
+     * A JSON object, e.g. a tool input.
+     */
+    static final class JsonMap extends AbstractMap<String, Object> implements JsonSerializable {
+
+        private final Memo<Map<String, Object>> map;
+
+        JsonMap(Slice slice) {
+            this.map = new Memo<>(slice) {
+                @Override
+                Map<String, Object> decode(Slice slice) throws IOException {
+                    return Collections.unmodifiableMap(MAP_READER.readValue(slice.parser()));
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return map.get().entrySet();
+        }
+
+        @Override
+        public Object get(Object key) {
+            return map.get().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.get().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.get().size();
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            map.serialize(gen, serializers);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            serialize(gen, serializers);
+        }
+
+    }
+
+    /**
+     * A JSON array, e.g. structured tool result content.
+     */
+    static final class JsonList extends AbstractList<Object> implements JsonSerializable {
+
+        private final Memo<List<Object>> list;
+
+        JsonList(Slice slice) {
+            this.list = new Memo<>(slice) {
+                @Override
+                List<Object> decode(Slice slice) throws IOException {
+                    return Collections.unmodifiableList(LIST_READER.readValue(slice.parser()));
+                }
+            };
+        }
+
+        @Override
+        public Object get(int index) {
+            return list.get().get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.get().size();
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            list.serialize(gen, serializers);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            serialize(gen, serializers);
+        }
+
+    }
+
+    // ==================== Block Decoding ====================
+
+    private static List<ContentBlock> readBlocks(Slice slice) throws IOException {
+        try (JsonParser p = slice.parser()) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Content is not an array");
+            }
+            List<ContentBlock> blocks = new ArrayList<>();
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Content block is not an object: " + token);
+                }
+                blocks.add(readBlock(slice, p));
+            }
+            return Collections.unmodifiableList(blocks);
+        }
+    }
+
+    /**
+     * Reads one content block, leaving structured tool payloads as slices.
+     */
+    private static ContentBlock readBlock(Slice source, JsonParser p) throws IOException {
+        String type = null;
+        String text = null;
+        String thinking = null;
+        String signature = null;
+        String id = null;
+        String name = null;
+        String toolUseId = null;
+        Object input = null;
+        Object content = null;
+        Boolean isError = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "type" -> type = p.getValueAsString();
+                case "text" -> text = p.getValueAsString();
+                case "thinking" -> thinking = p.getValueAsString();
+                case "signature" -> signature = p.getValueAsString();
+                case "id" -> id = p.getValueAsString();
+                case "name" -> name = p.getValueAsString();
+                case "tool_use_id" -> toolUseId = p.getValueAsString();
+                case "input" -> input = value(source, p);
+                case "content" -> content = value(source, p);
+                case "is_error" -> isError = ((p.currentToken() == JsonToken.VALUE_NULL) ? null : p.getBooleanValue());
+                default -> p.skipChildren();
+            }
+        }
+
+        if (type == null) {
+            throw new IOException("Missing 'type' field in content block");
+        }
+        return switch (type) {
+            case "text" -> new TextBlock(text);
+            case "thinking" -> new ThinkingBlock(thinking, signature);
+            case "tool_use" -> new ToolUseBlock(id, name, toolInput(input));
+            case "tool_result" -> new ToolResultBlock(toolUseId, content, isError);
+            default -> throw new IOException("Unknown content block type: " + type);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Map<String, Object> toolInput(@Nullable Object input) throws IOException {
+        if ((input == null) || (input instanceof Map)) {
+            return (Map<String, Object>) input;
+        }
+        throw new IOException("Tool input is not an object");
+    }
+
+}
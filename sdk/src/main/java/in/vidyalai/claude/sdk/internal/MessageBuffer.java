@@ -0,0 +1,408 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import in.vidyalai.claude.sdk.exceptions.ClaudeSDKException;
+import in.vidyalai.claude.sdk.exceptions.MessageQueueOverflowException;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
+import in.vidyalai.claude.sdk.types.config.MessageQueueStats;
+
+/**
+ * Bounded single-producer message buffer with a configurable overflow policy.
+ *
+ * <p>
+ * Hands messages from a reader thread to one or more consumers without
+ * dropping any of them. When the in-memory capacity is reached the
+ * {@link MessageOverflowPolicy} decides whether the producer blocks, spills to
+ * a temporary file or fails. End of stream is signalled with
+ * {@link #finish(Throwable)}, which wakes all blocked consumers once the
+ * remaining messages have been drained.
+ *
+ * <h2>Ordering</h2>
+ * <p>
+ * Messages are delivered in the order they were put. Once spilling starts,
+ * every new message goes to disk until the spill file has been fully drained,
+ * so in-memory messages are always older than spilled ones.
+ *
+ * <h2>Headroom</h2>
+ * <p>
+ * While at least one {@link #acquireHeadroom()} is outstanding a producer
+ * under the BLOCK policy does not block: messages beyond the capacity are
+ * kept in memory. The reader thread is the only path by which control
+ * responses reach their waiters, so a blocked producer would otherwise hold
+ * back e.g. an interrupt response behind a backlog of partial message events -
+ * and deadlock outright if the consumer itself is the thread waiting for that
+ * response. The bound is relaxed only for that window, which the control
+ * request's timeout limits, and only up to four times the capacity: beyond
+ * that, messages spill to disk if the buffer has a codec, and the put fails
+ * with a {@link MessageQueueOverflowException} otherwise, so overlapping holds
+ * under a flood of messages cannot grow the heap without bound. SPILL and
+ * FAIL never block the producer and are not affected.
+ *
+ * <h2>Thread Safety</h2>
+ * <p>
+ * All methods are thread-safe. {@link #put(Object)} is intended to be called
+ * by a single reader thread; {@link #take()} may be called by any number of
+ * consumers.
+ *
+ * @param <T> the message type
+ */
+public final class MessageBuffer<T> implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(MessageBuffer.class.getName());
+    // Memory limit under headroom, as a multiple of the capacity
+    private static final int HEADROOM_FACTOR = 4;
+
+    /**
+     * Serializes messages for the spill file.
+     *
+     * @param <T> the message type
+     */
+    public interface SpillCodec<T> {
+
+        /**
+         * Encodes a message to bytes.
+         *
+         * @param message the message
+         * @return the encoded bytes
+         * @throws IOException if encoding fails
+         */
+        byte[] encode(T message) throws IOException;
+
+        /**
+         * Decodes a message previously produced by {@link #encode(Object)}.
+         *
+         * @param bytes the encoded bytes
+         * @return the message
+         * @throws IOException if decoding fails
+         */
+        T decode(byte[] bytes) throws IOException;
+
+    }
+
+    private final int capacity;
+    private final int headroomLimit;
+    private final MessageOverflowPolicy policy;
+    @Nullable
+    private final SpillCodec<T> codec;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<T> memory = new ArrayDeque<>();
+
+    // Spill state, guarded by lock
+    @Nullable
+    private Path spillPath = null;
+    @Nullable
+    private RandomAccessFile spillFile = null;
+    private long spillReadPos = 0;
+    private long spillWritePos = 0;
+    private int spilledPending = 0;
+
+    // Lifecycle, guarded by lock
+    private int headroomHolds = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+    @Nullable
+    private Throwable failure = null;
+
+    // Stats, guarded by lock
+    private long blockedPuts = 0;
+    private long blockedNanos = 0;
+    private long spilledMessages = 0;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param capacity max messages held in memory
+     * @param policy   what to do when the memory capacity is reached
+     * @param codec    codec for spilled messages, required for
+     *                 {@link MessageOverflowPolicy#SPILL}
+     */
+    public MessageBuffer(int capacity, MessageOverflowPolicy policy, @Nullable SpillCodec<T> codec) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if ((policy == MessageOverflowPolicy.SPILL) && (codec == null)) {
+            throw new IllegalArgumentException("SPILL policy requires a codec");
+        }
+        this.capacity = capacity;
+        this.headroomLimit = (int) Math.min((long) capacity * HEADROOM_FACTOR, Integer.MAX_VALUE);
+        this.policy = policy;
+        this.codec = codec;
+    }
+
+    /**
+     * Adds a message, applying the overflow policy if the buffer is full.
+     *
+     * <p>
+     * Messages put after {@link #close()} are discarded.
+     *
+     * @param message the message
+     * @throws InterruptedException          if interrupted while blocked
+     * @throws MessageQueueOverflowException if full and the policy is FAIL, or
+     *                                       if the headroom limit is reached
+     *                                       without a codec to spill with
+     * @throws ClaudeSDKException            if spilling to disk fails
+     */
+    public void put(T message) throws InterruptedException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (spilledPending > 0) {
+                // Keep FIFO order: later messages queue up behind spilled ones
+                spill(message);
+                return;
+            }
+            if (memory.size() >= capacity) {
+                switch (policy) {
+                    case BLOCK -> {
+                        if (mustBlock()) {
+                            blockedPuts++;
+                            long start = System.nanoTime();
+                            try {
+                                while (mustBlock()) {
+                                    notFull.await();
+                                }
+                            } finally {
+                                blockedNanos += System.nanoTime() - start;
+                            }
+                            if (closed) {
+                                return;
+                            }
+                        }
+                        if (memory.size() >= headroomLimit) {
+                            // Only reachable under headroom: keep memory bounded without blocking
+                            if (codec == null) {
+                                throw new MessageQueueOverflowException(headroomLimit);
+                            }
+                            spill(message);
+                            return;
+                        }
+                    }
+                    case SPILL -> {
+                        spill(message);
+                        return;
+                    }
+                    case FAIL -> throw new MessageQueueOverflowException(capacity);
+                }
+            }
+            memory.addLast(message);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the producer put messages beyond the capacity instead of blocking
+     * until the matching {@link #releaseHeadroom()}, waking a producer blocked
+     * on a full buffer. Holds nest and share one limit of four times the
+     * capacity in memory; see the class documentation.
+     */
+    public void acquireHeadroom() {
+        lock.lock();
+        try {
+            headroomHolds++;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a hold taken with {@link #acquireHeadroom()}. Messages already
+     * above the capacity stay queued; the producer blocks again only once the
+     * consumer has drained below it.
+     */
+    public void releaseHeadroom() {
+        lock.lock();
+        try {
+            if (headroomHolds > 0) {
+                headroomHolds--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Guarded by lock
+    private boolean mustBlock() {
+        return ((memory.size() >= capacity) && (headroomHolds == 0) && (!closed));
+    }
+
+    /**
+     * Takes the next message, blocking until one is available.
+     *
+     * @return the next message, or null once the buffer is finished and drained
+     *         or closed
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ClaudeSDKException   if a spilled message cannot be read back
+     */
+    @Nullable
+    public T take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                T message = memory.pollFirst();
+                if (message != null) {
+                    notFull.signal();
+                    return message;
+                }
+                if (spilledPending > 0) {
+                    return unspill();
+                }
+                if (finished) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of the stream. Consumers drain the remaining messages and
+     * then see end of stream.
+     *
+     * @param error the error that ended the stream, or null for a normal end
+     */
+    public void finish(@Nullable Throwable error) {
+        lock.lock();
+        try {
+            if (!finished) {
+                finished = true;
+                failure = error;
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the error passed to {@link #finish(Throwable)}, if any.
+     *
+     * @return the error, or null
+     */
+    @Nullable
+    public Throwable failure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the backpressure counters.
+     *
+     * @return the current stats
+     */
+    public MessageQueueStats stats() {
+        lock.lock();
+        try {
+            return new MessageQueueStats(blockedPuts, blockedNanos, spilledMessages, memory.size() + spilledPending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards all queued messages, deletes the spill file and wakes every
+     * blocked producer and consumer. Idempotent.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            finished = true;
+            memory.clear();
+            resetSpill();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("null")
+    private void spill(T message) {
+        try {
+            if (spillFile == null) {
+                spillPath = Files.createTempFile("claude-sdk-spill-", ".bin");
+                spillFile = new RandomAccessFile(spillPath.toFile(), "rw");
+                logger.fine(() -> "Message queue full, spilling to " + spillPath);
+            }
+            byte[] bytes = codec.encode(message);
+            spillFile.seek(spillWritePos);
+            spillFile.writeInt(bytes.length);
+            spillFile.write(bytes);
+            spillWritePos = spillFile.getFilePointer();
+            spilledPending++;
+            spilledMessages++;
+            notEmpty.signal();
+        } catch (IOException e) {
+            throw new ClaudeSDKException("Failed to spill message to disk: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("null")
+    private T unspill() {
+        try {
+            spillFile.seek(spillReadPos);
+            byte[] bytes = new byte[spillFile.readInt()];
+            spillFile.readFully(bytes);
+            spillReadPos = spillFile.getFilePointer();
+            if (--spilledPending == 0) {
+                // Drained: reuse the file from the start
+                spillReadPos = 0;
+                spillWritePos = 0;
+                spillFile.setLength(0);
+            }
+            return codec.decode(bytes);
+        } catch (IOException e) {
+            throw new ClaudeSDKException("Failed to read spilled message from disk: " + e.getMessage(), e);
+        }
+    }
+
+    private void resetSpill() {
+        spilledPending = 0;
+        spillReadPos = 0;
+        spillWritePos = 0;
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            spillFile = null;
+        }
+        if (spillPath != null) {
+            try {
+                Files.deleteIfExists(spillPath);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to delete spill file " + spillPath, e);
+            }
+            spillPath = null;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
+import in.vidyalai.claude.sdk.transport.Transport;
+
+/**
+ * Serializes outbound messages straight to newline-terminated UTF-8 bytes.
+ *
+ * <p>
+ * Messages are written by a cached {@link ObjectWriter} into a pooled byte
+ * buffer and handed to {@link Transport#write(byte[], int, int)}, avoiding the
+ * intermediate JSON string, the concatenated line and the re-encoding to
+ * bytes. Buffers that grew beyond {@value #MAX_POOLED_BYTES} bytes (e.g. for a
+ * tool result carrying an image) are not returned to the pool.
+ */
+public final class MessageEncoder {
+
+    static final int POOL_SIZE = 16;
+    static final int MAX_POOLED_BYTES = 1024 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+
+    // Static is safe: a buffer serves one call at a time and is reset before it is pooled
+    private static final ArrayBlockingQueue<Buffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final ObjectWriter writer;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param writer the writer to serialize messages with
+     */
+    public MessageEncoder(ObjectWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Serializes the message and writes it, followed by a newline, to the
+     * transport.
+     *
+     * @param transport the transport to write to
+     * @param message   the message
+     * @throws JsonProcessingException if the message cannot be serialized
+     * @throws CLIConnectionException  if the write fails
+     */
+    public void write(Transport transport, Object message) throws JsonProcessingException, CLIConnectionException {
+        Buffer buffer = acquire();
+        try {
+            encodeInto(buffer, message);
+            transport.write(buffer.array(), 0, buffer.size());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Serializes the message to a newline-terminated byte array of its own,
+     * for writes that complete after this call returns.
+     *
+     * @param message the message
+     * @return the encoded line
+     * @throws JsonProcessingException if the message cannot be serialized
+     */
+    public byte[] encode(Object message) throws JsonProcessingException {
+        Buffer buffer = acquire();
+        try {
+            encodeInto(buffer, message);
+            return Arrays.copyOf(buffer.array(), buffer.size());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private void encodeInto(Buffer buffer, Object message) throws JsonProcessingException {
+        try {
+            writer.writeValue(buffer, message);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        buffer.write('\n');
+    }
+
+    private static Buffer acquire() {
+        Buffer buffer = POOL.poll();
+        return ((buffer != null) ? buffer : new Buffer());
+    }
+
+    private static void release(Buffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BYTES) {
+            buffer.reset();
+            POOL.offer(buffer);
+        }
+    }
+
+    /**
+     * Byte array stream exposing its backing array.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(INITIAL_BUFFER_BYTES);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+    }
+
+}
@@ -1,9 +1,28 @@
 package in.vidyalai.claude.sdk.internal;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
 import in.vidyalai.claude.sdk.exceptions.MessageParseException;
 import in.vidyalai.claude.sdk.types.message.AssistantMessage;
 import in.vidyalai.claude.sdk.types.message.AssistantMessageError;
@@ -20,9 +39,34 @@ import in.vidyalai.claude.sdk.types.message.UserMessage;
 
 /**
  * Parser for converting raw JSON messages to typed Message objects.
+ *
+ * <p>
+ * Messages can be parsed either from an already materialised {@code Map}
+ * ({@link #parse(Map)}) or bound directly from buffered JSON tokens
+ * ({@link #parse(String, TokenBuffer)}), which avoids building the
+ * intermediate map for the common message types.
+ *
+ * <p>
+ * With lazy content, assistant and user messages are read from their raw
+ * JSON bytes ({@link #parseLazy(String, byte[])}), keeping message content and
+ * {@code tool_use_result} as byte ranges decoded on first access (see
+ * {@link LazyContent}).
  */
 public final class MessageParser {
 
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            // Type mismatches must fail so the caller can fall back to parse(Map)
+            .configure(MapperFeature.ALLOW_COERCION_OF_SCALARS, false)
+            .addMixIn(ContentBlock.class, ContentBlockMixin.class)
+            .build();
+    private static final JavaType CONTENT_BLOCK_LIST = MAPPER.getTypeFactory()
+            .constructCollectionType(List.class, ContentBlock.class);
+    private static final ObjectReader USER_READER = MAPPER.readerFor(UserWire.class);
+    private static final ObjectReader ASSISTANT_READER = MAPPER.readerFor(AssistantWire.class);
+    private static final ObjectReader RESULT_READER = MAPPER.readerFor(ResultWire.class);
+    private static final ObjectReader STREAM_EVENT_READER = MAPPER.readerFor(StreamEventWire.class);
+
     private MessageParser() {
         // Utility class
     }
@@ -65,13 +109,7 @@ public final class MessageParser {
         try {
             String parentToolUseId = (String) data.get("parent_tool_use_id");
             String uuid = (String) data.get("uuid");
-            Object tuResult = data.get("tool_use_result");
-            Map<String, Object> toolUseResult = switch (tuResult) {
-                case null -> null;
-                case Map<?, ?> m -> (Map<String, Object>) m;
-                case String s -> Map.of("unknown", s);
-                default -> Map.of("unknown", tuResult.toString());
-            };
+            Map<String, Object> toolUseResult = toolUseResult(data.get("tool_use_result"));
 
             Map<String, Object> message = (Map<String, Object>) data.get("message");
             if (message == null) {
@@ -212,6 +250,167 @@ public final class MessageParser {
         }
     }
 
+    /**
+     * Binds a message directly from buffered JSON tokens, without building the
+     * intermediate {@code Map}.
+     *
+     * <p>
+     * This is a fast path only: it returns null for message types it does not
+     * bind directly (e.g. {@code system}, whose payload is the map itself) and
+     * throws if the tokens do not match the expected shape. Callers should fall
+     * back to {@link #parse(Map)} in both cases, which produces the same result
+     * or the appropriate {@link MessageParseException}.
+     *
+     * @param type   the message's top-level {@code type} field
+     * @param tokens the buffered JSON object
+     * @return the parsed Message, or null if the type is not bound directly
+     * @throws IOException if the tokens cannot be bound
+     */
+    @Nullable
+    public static Message parse(@Nullable String type, TokenBuffer tokens) throws IOException {
+        if (type == null) {
+            return null;
+        }
+
+        return switch (type) {
+            case "user" -> {
+                UserWire wire = USER_READER.readValue(tokens.asParser());
+                if (wire.message() == null) {
+                    throw new IOException("Missing 'message' in user message");
+                }
+                yield new UserMessage(wire.message().content(), wire.uuid(), wire.parentToolUseId(),
+                        toolUseResult(wire.toolUseResult()));
+            }
+            case "assistant" -> {
+                AssistantWire wire = ASSISTANT_READER.readValue(tokens.asParser());
+                AssistantBody body = wire.message();
+                if ((body == null) || (body.content() == null) || (body.model() == null)) {
+                    throw new IOException("Missing required field in assistant message");
+                }
+                yield new AssistantMessage(body.content(), body.model(), wire.parentToolUseId(),
+                        AssistantMessageError.fromValue(body.error()));
+            }
+            case "result" -> {
+                ResultWire wire = RESULT_READER.readValue(tokens.asParser());
+                if ((wire.subtype() == null) || (wire.durationMs() == null) || (wire.durationApiMs() == null)
+                        || (wire.isError() == null) || (wire.numTurns() == null) || (wire.sessionId() == null)) {
+                    throw new IOException("Missing required field in result message");
+                }
+                yield new ResultMessage(
+                        wire.subtype(), wire.durationMs().intValue(), wire.durationApiMs().intValue(),
+                        wire.isError(), wire.numTurns().intValue(), wire.sessionId(),
+                        ((wire.totalCostUsd() != null) ? wire.totalCostUsd().doubleValue() : null),
+                        wire.usage(), wire.result(), wire.structuredOutput());
+            }
+            case "stream_event" -> {
+                StreamEventWire wire = STREAM_EVENT_READER.readValue(tokens.asParser());
+                if ((wire.uuid() == null) || (wire.sessionId() == null) || (wire.event() == null)) {
+                    throw new IOException("Missing required field in stream_event message");
+                }
+                yield new StreamEvent(wire.uuid(), wire.sessionId(), wire.event(), wire.parentToolUseId());
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Reads an assistant or user message from its raw JSON bytes, deferring
+     * the decoding of content.
+     *
+     * <p>
+     * The content of the message, the tool inputs and tool results in it, and
+     * a user message's {@code tool_use_result} are kept as ranges of
+     * {@code json} and decoded only when first accessed; the message keeps a
+     * reference to {@code json} until then, which must not be modified.
+     * Malformed content then surfaces as a {@link MessageParseException} from
+     * the accessing call instead of from parsing. Lazily decoded collections
+     * are read-only.
+     *
+     * @param type the message's top-level {@code type} field
+     * @param json the message's UTF-8 JSON object
+     * @return the parsed Message, or null if the type is not read lazily
+     * @throws IOException if the message cannot be read
+     */
+    @Nullable
+    public static Message parseLazy(@Nullable String type, byte[] json) throws IOException {
+        boolean user = "user".equals(type);
+        if ((!user) && (!"assistant".equals(type))) {
+            return null;
+        }
+
+        LazyContent.Slice source = LazyContent.Slice.of(json);
+        String uuid = null;
+        String parentToolUseId = null;
+        Object toolUseResult = null;
+        boolean hasBody = false;
+        Object content = null;
+        String model = null;
+        String error = null;
+        try (JsonParser p = source.parser()) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Message is not an object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "uuid" -> uuid = text(p);
+                    case "parent_tool_use_id" -> parentToolUseId = text(p);
+                    case "tool_use_result" -> toolUseResult = LazyContent.value(source, p);
+                    case "message" -> {
+                        if (p.currentToken() != JsonToken.START_OBJECT) {
+                            p.skipChildren();
+                        } else {
+                            hasBody = true;
+                            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                                String bodyField = p.currentName();
+                                p.nextToken();
+                                switch (bodyField) {
+                                    case "content" -> content = LazyContent.content(source, p);
+                                    case "model" -> model = text(p);
+                                    case "error" -> error = text(p);
+                                    default -> p.skipChildren();
+                                }
+                            }
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+
+        if (user) {
+            if (!hasBody) {
+                throw new IOException("Missing 'message' in user message");
+            }
+            return new UserMessage(content, uuid, parentToolUseId, toolUseResult(toolUseResult));
+        }
+        if ((!(content instanceof LazyContent.ContentBlocks blocks)) || (model == null)) {
+            throw new IOException("Missing required field in assistant message");
+        }
+        return new AssistantMessage(blocks, model, parentToolUseId, AssistantMessageError.fromValue(error));
+    }
+
+    @Nullable
+    private static String text(JsonParser p) throws IOException {
+        return switch (p.currentToken()) {
+            case VALUE_STRING -> p.getText();
+            case VALUE_NULL -> null;
+            default -> throw new IOException("Expected a string for '" + p.currentName() + "'");
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Map<String, Object> toolUseResult(@Nullable Object tuResult) {
+        return switch (tuResult) {
+            case null -> null;
+            case Map<?, ?> m -> (Map<String, Object>) m;
+            case String s -> Map.of("unknown", s);
+            default -> Map.of("unknown", tuResult.toString());
+        };
+    }
+
     private static <T> T getRequired(Map<String, Object> data, String key, Class<T> type) throws MessageParseException {
         Object value = data.get(key);
         if (value == null) {
@@ -226,4 +425,77 @@ public final class MessageParser {
         return type.cast(value);
     }
 
+    // ==================== Wire Formats ====================
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = TextBlock.class, name = "text"),
+            @JsonSubTypes.Type(value = ThinkingBlock.class, name = "thinking"),
+            @JsonSubTypes.Type(value = ToolUseBlock.class, name = "tool_use"),
+            @JsonSubTypes.Type(value = ToolResultBlock.class, name = "tool_result")
+    })
+    private interface ContentBlockMixin {
+    }
+
+    private record UserWire(
+            @JsonProperty("message") @Nullable UserBody message,
+            @JsonProperty("uuid") @Nullable String uuid,
+            @JsonProperty("parent_tool_use_id") @Nullable String parentToolUseId,
+            @JsonProperty("tool_use_result") @Nullable Object toolUseResult) {
+    }
+
+    private record UserBody(
+            @JsonProperty("content") @JsonDeserialize(using = UserContentDeserializer.class) @Nullable Object content) {
+    }
+
+    private record AssistantWire(
+            @JsonProperty("message") @Nullable AssistantBody message,
+            @JsonProperty("parent_tool_use_id") @Nullable String parentToolUseId) {
+    }
+
+    private record AssistantBody(
+            @JsonProperty("content") @Nullable List<ContentBlock> content,
+            @JsonProperty("model") @Nullable String model,
+            @JsonProperty("error") @Nullable String error) {
+    }
+
+    private record ResultWire(
+            @JsonProperty("subtype") @Nullable String subtype,
+            @JsonProperty("duration_ms") @Nullable Number durationMs,
+            @JsonProperty("duration_api_ms") @Nullable Number durationApiMs,
+            @JsonProperty("is_error") @Nullable Boolean isError,
+            @JsonProperty("num_turns") @Nullable Number numTurns,
+            @JsonProperty("session_id") @Nullable String sessionId,
+            @JsonProperty("total_cost_usd") @Nullable Number totalCostUsd,
+            @JsonProperty("usage") @Nullable Map<String, Object> usage,
+            @JsonProperty("result") @Nullable String result,
+            @JsonProperty("structured_output") @Nullable Object structuredOutput) {
+    }
+
+    private record StreamEventWire(
+            @JsonProperty("uuid") @Nullable String uuid,
+            @JsonProperty("session_id") @Nullable String sessionId,
+            @JsonProperty("event") @Nullable Map<String, Object> event,
+            @JsonProperty("parent_tool_use_id") @Nullable String parentToolUseId) {
+    }
+
+    /**
+     * User content is either a plain string or a list of content blocks.
+     */
+    static final class UserContentDeserializer extends StdDeserializer<Object> {
+
+        UserContentDeserializer() {
+            super(Object.class);
+        }
+
+        @Override
+        public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.START_ARRAY) {
+                return ctxt.readValue(p, CONTENT_BLOCK_LIST);
+            }
+            return ctxt.readValue(p, Object.class);
+        }
+
+    }
+
 }
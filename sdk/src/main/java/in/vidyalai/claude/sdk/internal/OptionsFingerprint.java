@@ -0,0 +1,96 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import in.vidyalai.claude.sdk.ClaudeAgentOptions;
+
+/**
+ * Computes {@link ClaudeAgentOptions#fingerprint()}.
+ *
+ * <p>
+ * The fingerprint is a SHA-256 digest of a canonical JSON form of every option
+ * that affects the launched CLI process: its command line, environment and
+ * working directory. Object properties and map entries are sorted, so options
+ * built with equal values produce the same fingerprint in any JVM.
+ *
+ * <p>
+ * SDK-side settings (callbacks, hooks, buffer and queue sizes, the process
+ * pool) are not part of it.
+ */
+public final class OptionsFingerprint {
+
+    private static final Logger logger = Logger.getLogger(OptionsFingerprint.class.getName());
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+    private static final AtomicLong UNSHARED = new AtomicLong();
+
+    private OptionsFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the given options.
+     *
+     * <p>
+     * If the options hold values that cannot be serialized, a fingerprint
+     * unique to this call is returned so that nothing is shared.
+     *
+     * @param options the options
+     * @return the fingerprint as a lowercase hex string
+     */
+    public static String compute(ClaudeAgentOptions options) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("tools", options.tools());
+        values.put("allowedTools", options.allowedTools());
+        values.put("disallowedTools", options.disallowedTools());
+        values.put("systemPrompt", options.systemPrompt());
+        values.put("mcpServers", options.mcpServers());
+        values.put("permissionMode", options.permissionMode());
+        values.put("permissionPromptToolName", options.permissionPromptToolName());
+        values.put("continueConversation", options.continueConversation());
+        values.put("resume", options.resume());
+        values.put("forkSession", options.forkSession());
+        values.put("maxTurns", options.maxTurns());
+        values.put("maxBudgetUsd", options.maxBudgetUsd());
+        values.put("maxThinkingTokens", options.maxThinkingTokens());
+        values.put("model", options.model());
+        values.put("fallbackModel", options.fallbackModel());
+        values.put("betas", options.betas());
+        values.put("cwd", options.cwd());
+        values.put("cliPath", options.cliPath());
+        values.put("settings", options.settings());
+        values.put("addDirs", options.addDirs());
+        values.put("env", options.env());
+        values.put("extraArgs", options.extraArgs());
+        values.put("user", options.user());
+        values.put("includePartialMessages", options.includePartialMessages());
+        values.put("agents", options.agents());
+        values.put("settingSources", options.settingSources());
+        values.put("sandbox", options.sandbox());
+        values.put("plugins", options.plugins());
+        values.put("outputFormat", options.outputFormat());
+        values.put("enableFileCheckpointing", options.enableFileCheckpointing());
+
+        try {
+            byte[] canonical = MAPPER.writeValueAsBytes(values);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            logger.fine("Options cannot be fingerprinted, not sharing them: " + e.getMessage());
+            return "unshared-" + UNSHARED.incrementAndGet();
+        }
+    }
+
+}
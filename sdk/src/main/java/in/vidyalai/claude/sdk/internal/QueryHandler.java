@@ -1,6 +1,6 @@
 package in.vidyalai.claude.sdk.internal;
 
-import java.security.SecureRandom;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -8,31 +8,40 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jspecify.annotations.Nullable;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import in.vidyalai.claude.sdk.ClaudeAgentOptions;
+import in.vidyalai.claude.sdk.SdkRuntime;
 import in.vidyalai.claude.sdk.ClaudeSDKClient;
 import in.vidyalai.claude.sdk.exceptions.ClaudeSDKException;
+import in.vidyalai.claude.sdk.exceptions.MessageParseException;
 import in.vidyalai.claude.sdk.mcp.SdkMcpServer;
+import in.vidyalai.claude.sdk.transport.MessageListener;
 import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
+import in.vidyalai.claude.sdk.types.config.MessageQueueStats;
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
 import in.vidyalai.claude.sdk.types.control.request.SDKControlInitializeRequest;
 import in.vidyalai.claude.sdk.types.control.request.SDKControlInterruptRequest;
 import in.vidyalai.claude.sdk.types.control.request.SDKControlMCPStatusRequest;
@@ -109,25 +118,24 @@ import in.vidyalai.claude.sdk.types.permission.ToolPermissionContext;
  *
  * <li><b>close():</b> Thread-safe and idempotent. Can be called concurrently
  * with
- * other operations. Shuts down both reader and control executors gracefully
- * with
- * separate timeouts, followed by forced shutdown if needed. Subsequent calls
- * after
- * the first are no-ops.</li>
+ * other operations. Closes the transport and waits for it to shut down and
+ * for the reader to stop. Subsequent calls after the first only wait for the
+ * first to finish.</li>
  * </ul>
  *
  * <h2>Threading Architecture</h2>
  * <p>
- * This class uses two separate {@link ExecutorService} instances:
+ * Background work runs as tasks on the executor of the {@link SdkRuntime}
+ * passed to the constructor (by default {@link SdkRuntime#shared()}), so no
+ * executor is created per handler:
  * <ul>
- * <li><b>Reader Executor:</b> Single-threaded executor using
- * {@code Executors.newSingleThreadExecutor()} with named virtual thread
- * "QueryHandler-Reader-0". Ensures only one thread reads from transport.</li>
+ * <li><b>Reader task:</b> Submitted through the executor passed to
+ * {@link Transport#startReading(MessageListener, java.util.concurrent.Executor)};
+ * transports with their own reader thread (such as the subprocess transport)
+ * push messages from that thread instead and never submit it.</li>
  *
- * <li><b>Control Executor:</b> Multi-threaded executor using
- * {@code Executors.newThreadPerTaskExecutor()} with named virtual threads
- * "QueryHandler-Control-N". Allows concurrent processing of control requests
- * (permissions, hooks, MCP messages).</li>
+ * <li><b>Control tasks:</b> One task per control request, allowing concurrent
+ * processing of control requests (permissions, hooks, MCP messages).</li>
  * </ul>
  *
  * <h2>Usage Pattern</h2>
@@ -153,7 +161,7 @@ import in.vidyalai.claude.sdk.types.permission.ToolPermissionContext;
  * }
  *
  * // Cleanup
- * handler.close();  // Thread-safe, waits for threads
+ * handler.close();  // Thread-safe, waits for the process to exit
  * }</pre>
  *
  * <h2>Resource Management</h2>
@@ -161,13 +169,8 @@ import in.vidyalai.claude.sdk.types.permission.ToolPermissionContext;
  * This class manages multiple resources that are properly cleaned up on
  * {@link #close()}:
  * <ul>
- * <li>Reader ExecutorService - single-threaded executor for message
- * reading</li>
- * <li>Control ExecutorService - multi-threaded executor for concurrent control
- * request handling</li>
- * <li>Reader task (named virtual thread: "QueryHandler-Reader-0")</li>
- * <li>Control request handler tasks (named virtual threads:
- * "QueryHandler-Control-N")</li>
+ * <li>Reader task for pull-based transports</li>
+ * <li>Control request handler tasks</li>
  * <li>Hook callback references and their associated closures</li>
  * <li>Pending CompletableFutures for control request/response tracking</li>
  * <li>Message queue containing buffered messages</li>
@@ -189,30 +192,23 @@ import in.vidyalai.claude.sdk.types.permission.ToolPermissionContext;
  *
  * <h2>Shutdown Behavior</h2>
  * <p>
- * When {@link #close()} is called:
+ * When {@link #closeAsync()} is called:
  * <ol>
  * <li>Sets the closed flag to prevent new operations</li>
- * <li>Completes all pending control request futures exceptionally</li>
- * <li>Closes the transport to unblock the reader thread</li>
- * <li>Initiates graceful shutdown of both executors via {@code shutdown()}</li>
- * <li>Waits up to 10 seconds for reader executor to terminate</li>
- * <li>Forces reader shutdown via {@code shutdownNow()} if timeout occurs, waits
- * 2s more</li>
- * <li>Logs warning if reader threads don't terminate after forced shutdown</li>
- * <li>Waits up to 5 seconds for control executor to terminate</li>
- * <li>Forces control executor shutdown via {@code shutdownNow()} if timeout
- * occurs, waits 2s more</li>
- * <li>Logs warning if control threads don't terminate after forced
- * shutdown</li>
+ * <li>Completes all pending control request futures exceptionally and cancels
+ * in-flight callbacks</li>
+ * <li>Closes the transport to unblock the reader thread, leaving the process
+ * exit to the transport's future</li>
+ * <li>Clears the message queue and enqueues the end marker so that iterators
+ * blocked in {@code hasNext()} return immediately</li>
+ * <li>Lets the reader stop with the transport; it is interrupted if it has not
+ * stopped 10 seconds later</li>
  * <li>Clears all callback maps and queues to enable garbage collection</li>
  * </ol>
  * <p>
- * <b>Note:</b> In rare cases where threads are stuck in uninterruptible I/O
- * operations,
- * they may continue running briefly after {@code close()} returns. This is
- * logged as a
- * warning. Such threads will eventually terminate when they complete their I/O
- * operation.
+ * {@link #close()} does the same and then waits for the transport to shut down
+ * and the reader to stop. Neither waits for control threads, so a callback that
+ * ignores its cancellation may still be running briefly after they return.
  *
  * @see Transport
  * @see ClaudeSDKClient
@@ -220,11 +216,9 @@ import in.vidyalai.claude.sdk.types.permission.ToolPermissionContext;
 public class QueryHandler implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(QueryHandler.class.getName());
-    private static final SecureRandom random = new SecureRandom();
     private static final int DEFAULT_MSG_Q_SIZE = 1000;
     private static final int RESULT_WAIT_SECS = 60;
-    private static final int READER_THREAD_JOIN_TIMEOUT_SECS = 10;
-    private static final int CONTROL_THREAD_JOIN_TIMEOUT_SECS = 5;
+    private static final int READER_STOP_TIMEOUT_SECS = 10;
     private static final ObjectMapper MAPPER;
 
     static {
@@ -239,6 +233,10 @@ public class QueryHandler implements AutoCloseable {
                         JsonInclude.Include.NON_NULL));
     }
 
+    private static final MessageEncoder ENCODER = new MessageEncoder(MAPPER.writer());
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
     private final Transport transport;
     private final boolean isStreamingMode;
     // May be null
@@ -251,22 +249,28 @@ public class QueryHandler implements AutoCloseable {
 
     // Control protocol state
     private final Map<String, CompletableFuture<ControlResponse>> pendingControlResponses = new ConcurrentHashMap<>();
+    // Control requests from the CLI that have not been answered yet
+    private final Map<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
     private final Map<String, BiFunction<HookInput, HookContext, CompletableFuture<HookOutput>>> hookCallbacks = new ConcurrentHashMap<>();
     private final AtomicInteger nextCallbackId = new AtomicInteger(0);
-    private final AtomicInteger requestCounter = new AtomicInteger(0);
+    private final RequestIdGenerator requestIds = new RequestIdGenerator();
 
     // Message stream
-    private final BlockingQueue<Map<String, Object>> messageQueue;
+    private final MessageBuffer<TransportMessage> messageQueue;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+    // Completed once the reader has delivered its last message
+    private final CompletableFuture<Void> readerDone = new CompletableFuture<>();
     private final AtomicBoolean readerStarted = new AtomicBoolean(false);
     @Nullable
     private volatile SDKControlResponse initializationResult = null;
 
-    // Thread management via ExecutorService
-    // Separate executors for reader (single thread) and control tasks (concurrent)
-    private final ExecutorService readerExecutor;
-    private final ExecutorService controlExecutor;
+    // Runs the reader and control tasks
+    private final SdkRuntime runtime;
+    // Reader task of pull-based transports, once submitted
+    @Nullable
+    private volatile Future<?> readerTask;
 
     // Track first result for proper stream closure
     private final CompletableFuture<Void> firstResultEvent = new CompletableFuture<>();
@@ -311,26 +315,75 @@ public class QueryHandler implements AutoCloseable {
             @Nullable Map<String, SdkMcpServer> sdkMcpServers,
             Duration initializeTimeout,
             @Nullable Integer maxMsgQSize) {
+        this(transport, isStreamingMode, canUseTool, hooks, sdkMcpServers, initializeTimeout, maxMsgQSize,
+                MessageOverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a new QueryHandler with SDK MCP server support and an explicit
+     * message overflow policy.
+     *
+     * @param transport         the transport for I/O
+     * @param isStreamingMode   whether using streaming (bidirectional) mode
+     * @param canUseTool        optional callback for tool permission requests (may
+     *                          be null)
+     * @param hooks             optional hook configurations
+     * @param sdkMcpServers     optional SDK MCP servers for in-process tool
+     *                          execution
+     * @param initializeTimeout timeout for the initialize request
+     * @param maxMsgQSize       max message queue size
+     * @param overflowPolicy    what to do when the message queue is full
+     */
+    public QueryHandler(
+            Transport transport,
+            boolean isStreamingMode,
+            ClaudeAgentOptions.CanUseTool canUseTool, // may be null
+            @Nullable Map<HookEvent, List<HookMatcher>> hooks,
+            @Nullable Map<String, SdkMcpServer> sdkMcpServers,
+            Duration initializeTimeout,
+            @Nullable Integer maxMsgQSize,
+            MessageOverflowPolicy overflowPolicy) {
+        this(transport, isStreamingMode, canUseTool, hooks, sdkMcpServers, initializeTimeout, maxMsgQSize,
+                overflowPolicy, SdkRuntime.shared());
+    }
+
+    /**
+     * Creates a new QueryHandler running its background tasks on the given
+     * runtime.
+     *
+     * @param transport         the transport for I/O
+     * @param isStreamingMode   whether using streaming (bidirectional) mode
+     * @param canUseTool        optional callback for tool permission requests (may
+     *                          be null)
+     * @param hooks             optional hook configurations
+     * @param sdkMcpServers     optional SDK MCP servers for in-process tool
+     *                          execution
+     * @param initializeTimeout timeout for the initialize request
+     * @param maxMsgQSize       max message queue size
+     * @param overflowPolicy    what to do when the message queue is full
+     * @param runtime           runs the reader and control tasks
+     */
+    public QueryHandler(
+            Transport transport,
+            boolean isStreamingMode,
+            ClaudeAgentOptions.CanUseTool canUseTool, // may be null
+            @Nullable Map<HookEvent, List<HookMatcher>> hooks,
+            @Nullable Map<String, SdkMcpServer> sdkMcpServers,
+            Duration initializeTimeout,
+            @Nullable Integer maxMsgQSize,
+            MessageOverflowPolicy overflowPolicy,
+            SdkRuntime runtime) {
         this.transport = transport;
         this.isStreamingMode = isStreamingMode;
         this.canUseTool = canUseTool;
         this.hooks = hooks;
         this.sdkMcpServers = sdkMcpServers;
         this.initializeTimeout = initializeTimeout;
-        this.messageQueue = new LinkedBlockingQueue<>((maxMsgQSize != null) ? maxMsgQSize : DEFAULT_MSG_Q_SIZE);
-
-        // Create separate executors for reader and control tasks
-        // Reader: Single-threaded executor with named virtual thread
-        this.readerExecutor = Executors.newSingleThreadExecutor(
-                Thread.ofVirtual()
-                        .name("QueryHandler-Reader-", 0)
-                        .factory());
-
-        // Control: Multi-threaded executor for concurrent control request handling
-        this.controlExecutor = Executors.newThreadPerTaskExecutor(
-                Thread.ofVirtual()
-                        .name("QueryHandler-Control-", 0)
-                        .factory());
+        this.messageQueue = new MessageBuffer<>(
+                ((maxMsgQSize != null) ? maxMsgQSize : DEFAULT_MSG_Q_SIZE),
+                overflowPolicy,
+                TransportMessageCodec.INSTANCE);
+        this.runtime = runtime;
 
         // Get stream close timeout from env, default 60 seconds
         long timeoutMs = Long.parseLong(System.getenv().getOrDefault("CLAUDE_CODE_STREAM_CLOSE_TIMEOUT", "60000"));
@@ -418,84 +471,148 @@ public class QueryHandler implements AutoCloseable {
 
         // Use atomic compare-and-set to ensure only one reader task is started
         if (readerStarted.compareAndSet(false, true)) {
-            readerExecutor.submit(this::readMessages);
+            // Messages are pushed from the transport's reader thread; the
+            // executor only runs the pull loop for transports without one
+            transport.startReading(new MessageRouter(),
+                    task -> readerTask = runtime.executor().submit(task));
         }
         // If already started, this is a no-op (idempotent)
     }
 
-    private void readMessages() {
-        try {
-            Iterator<Map<String, Object>> messages = transport.readMessages();
-            while (messages.hasNext() && (!closed.get())) {
-                Map<String, Object> message = messages.next();
-                String msgType = (String) message.get("type");
-
-                // Route control messages
-                if ("control_response".equals(msgType)) {
-                    handleControlResponse(message);
-                    continue;
-                } else if ("control_request".equals(msgType)) {
-                    // Handle incoming control requests from CLI
-                    // Use controlExecutor for concurrent control request handling
-                    controlExecutor.submit(() -> handleControlRequest(message));
-                    continue;
-                } else if ("control_cancel_request".equals(msgType)) {
-                    // TODO: Implement cancellation support
-                    continue;
-                }
+    /**
+     * A control request from the CLI that is being handled.
+     */
+    private static final class InFlightRequest {
 
-                // Track results for proper stream closure
-                if ("result".equals(msgType)) {
-                    firstResultEvent.complete(null);
-                }
+        private final AbortSignal signal = new AbortSignal();
+        // Thread running the user callback, until it has returned its future
+        @Nullable
+        private Thread dispatcher;
+        private boolean cancelled;
+
+        /**
+         * Records the thread about to run the user callback.
+         *
+         * @return false if the request was cancelled before it got here
+         */
+        synchronized boolean startDispatch(Thread thread) {
+            if (cancelled) {
+                return false;
+            }
+            dispatcher = thread;
+            return true;
+        }
+
+        synchronized void dispatched() {
+            dispatcher = null;
+            // Clear an interrupt from a cancel that raced with the callback returning
+            Thread.interrupted();
+        }
+
+        /**
+         * Marks the request cancelled, so that a callback not yet started is
+         * skipped, and interrupts one that is running. Does not abort the
+         * signal.
+         */
+        synchronized void stop() {
+            cancelled = true;
+            if (dispatcher != null) {
+                dispatcher.interrupt();
+            }
+        }
+
+        void cancel() {
+            stop();
+            signal.abort();
+        }
 
-                // Regular SDK messages go to the stream
-                // Use offer with timeout to prevent deadlock if queue is full
-                if (!messageQueue.offer(message, 5, TimeUnit.SECONDS)) {
-                    logger.warning("Message queue full, dropping message: " + message);
+    }
+
+    /**
+     * Routes messages pushed by the transport's reader thread.
+     *
+     * <p>
+     * Control responses are completed inline, control requests are handed to
+     * the control executor, and SDK messages go straight into the message queue,
+     * so each message crosses a single thread hop from stdout to the consumer.
+     *
+     * <p>
+     * Routing uses the {@code type} sniffed by the transport and never waits
+     * on the consumer, except for SDK messages when the queue is full. While a
+     * control request of ours is pending a full queue does not block (see
+     * {@link MessageBuffer#acquireHeadroom()}), so its response is not stuck
+     * behind a backlog of partial message events, however long.
+     */
+    private final class MessageRouter implements MessageListener {
+
+        @Override
+        public void onMessage(TransportMessage message) throws InterruptedException {
+            if (closed.get()) {
+                return;
+            }
+            String msgType = message.type();
+
+            // Route control messages
+            if ("control_response".equals(msgType)) {
+                handleControlResponse(message);
+                return;
+            } else if ("control_request".equals(msgType)) {
+                // Handle incoming control requests from CLI
+                // Register before handing off, so that a cancel read right
+                // behind the request finds it
+                InFlightRequest inFlight = new InFlightRequest();
+                String requestId = controlRequestId(message);
+                if (requestId != null) {
+                    inFlightRequests.put(requestId, inFlight);
                 }
+                // Handle control requests concurrently, off the reader thread
+                runtime.executor().execute(() -> handleControlRequest(message, inFlight));
+                return;
+            } else if ("control_cancel_request".equals(msgType)) {
+                handleControlCancelRequest(message);
+                return;
             }
-        } catch (InterruptedException e) {
-            // Thread was interrupted during shutdown
-            Thread.currentThread().interrupt();
-            logger.fine("Reader thread interrupted");
-        } catch (Exception e) {
-            if (!closed.get()) {
-                logger.log(Level.SEVERE, "Fatal error in message reader: " + e.getMessage(), e);
+
+            // Track results for proper stream closure
+            if ("result".equals(msgType)) {
+                firstResultEvent.complete(null);
+            }
+
+            // Regular SDK messages go to the stream; when the queue is full the
+            // overflow policy blocks, spills to disk or fails - never drops
+            messageQueue.put(message);
+        }
+
+        @Override
+        public void onComplete(@Nullable Throwable error) {
+            if ((error != null) && (!closed.get())) {
+                logger.log(Level.SEVERE, "Fatal error in message reader: " + error.getMessage(), error);
                 // Signal all pending control requests
                 for (Map.Entry<String, CompletableFuture<ControlResponse>> entry : pendingControlResponses
                         .entrySet()) {
-                    entry.getValue().completeExceptionally(e);
+                    entry.getValue().completeExceptionally(error);
                 }
                 pendingControlResponses.clear();
 
-                // Put error in stream so iterators can handle it
-                try {
-                    Map<String, Object> errMessage = new HashMap<>();
-                    errMessage.put("type", "error");
-                    errMessage.put("error", e.getMessage());
-                    messageQueue.offer(errMessage, 1, TimeUnit.SECONDS);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        } finally {
-            // Signal end of stream
-            try {
-                Map<String, Object> endMessage = new HashMap<>();
-                endMessage.put("type", "end");
-                messageQueue.offer(endMessage, 1, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                // End the stream with the error so iterators can handle it
+                messageQueue.finish(error);
             }
+            // Signal end of stream; iterators drain what is queued, then stop
+            messageQueue.finish(null);
             // Complete firstResultEvent in case it's still pending
             firstResultEvent.complete(null);
+            readerDone.complete(null);
         }
+
     }
 
     @SuppressWarnings("null")
-    private void handleControlResponse(Map<String, Object> message) {
-        SDKControlResponse controlResponse = MAPPER.convertValue(message, SDKControlResponse.class);
+    private void handleControlResponse(TransportMessage message) {
+        SDKControlResponse controlResponse = switch (message) {
+            case TransportMessage.ControlResponseMessage typed -> typed.response();
+            case TransportMessage.RawMessage raw -> MAPPER.convertValue(raw.data(), SDKControlResponse.class);
+            default -> throw new IllegalArgumentException("Not a control response: " + message.type());
+        };
         ControlResponseData response = controlResponse.response();
         if (response == null) {
             return;
@@ -515,122 +632,214 @@ public class QueryHandler implements AutoCloseable {
 
     /**
      * Handles incoming control requests from CLI using strongly-typed classes.
+     *
+     * <p>
+     * Runs the user callback and returns; the response is sent when the
+     * callback's future completes, so no thread waits on it. The request was
+     * registered as in flight by the reader thread; if it has been cancelled
+     * since, the callback is not run.
      */
     @SuppressWarnings("null")
-    private void handleControlRequest(Map<String, Object> message) {
+    private void handleControlRequest(TransportMessage message, InFlightRequest inFlight) {
         String requestId = null;
         try {
-            // Deserialize to typed SDKControlRequest
-            SDKControlRequest controlRequest = MAPPER.convertValue(message, SDKControlRequest.class);
+            // Use the typed SDKControlRequest, deserializing raw messages if needed
+            SDKControlRequest controlRequest = switch (message) {
+                case TransportMessage.ControlRequestMessage typed -> typed.request();
+                case TransportMessage.RawMessage raw -> MAPPER.convertValue(raw.data(), SDKControlRequest.class);
+                default -> throw new IllegalArgumentException("Not a control request: " + message.type());
+            };
 
             requestId = controlRequest.requestId();
-            SDKControlRequestData requestData = controlRequest.request();
-
-            Map<String, Object> responseData = new HashMap<>();
-
-            // Pattern match on request type (discriminated union)
-            switch (requestData) {
-                case SDKControlPermissionRequest permissionReq -> {
-                    if (canUseTool == null) {
-                        throw new ClaudeSDKException("canUseTool callback is not provided");
-                    }
-
-                    String toolName = permissionReq.toolName();
-                    Map<String, Object> input = permissionReq.input();
-
-                    // Build context with permission suggestions from CLI
-                    List<PermissionUpdate> suggestions = ((permissionReq.permissionSuggestions() != null)
-                            ? permissionReq.permissionSuggestions()
-                            : List.of());
-                    ToolPermissionContext context = new ToolPermissionContext(null, suggestions);
+            String id = requestId;
+            if (!inFlight.startDispatch(Thread.currentThread())) {
+                logger.fine("Control request was cancelled before it was handled: " + id);
+                return;
+            }
 
-                    CompletableFuture<PermissionResult> resultFuture = canUseTool.apply(toolName, input, context);
-                    PermissionResult result = resultFuture.get(RESULT_WAIT_SECS, TimeUnit.SECONDS);
+            CompletableFuture<Map<String, Object>> dispatched;
+            try {
+                dispatched = dispatchControlRequest(controlRequest.request(), inFlight.signal);
+            } catch (Exception e) {
+                if (inFlightRequests.remove(id, inFlight)) {
+                    sendControlErrorResponse(id, e);
+                }
+                return;
+            } finally {
+                inFlight.dispatched();
+            }
 
-                    // Serialize permission result to response format
-                    switch (result) {
-                        case PermissionResultAllow allow -> {
-                            responseData = allow.toMap(input);
+            CompletableFuture<Map<String, Object>> response = dispatched;
+            inFlight.signal.onAbort(() -> response.cancel(true));
+            response
+                    .orTimeout(RESULT_WAIT_SECS, TimeUnit.SECONDS)
+                    .whenComplete((responseData, e) -> {
+                        // Cancelled requests are already removed; the CLI expects no response
+                        if (!inFlightRequests.remove(id, inFlight)) {
+                            return;
                         }
-                        case PermissionResultDeny deny -> {
-                            responseData = deny.toMap(input);
+                        if (e == null) {
+                            // Send success response
+                            sendControlResponse(new ControlResponse(id, responseData));
+                        } else {
+                            sendControlErrorResponse(id, unwrap(e));
                         }
-                    }
-                }
-                case SDKHookCallbackRequest hookReq -> {
-                    String callbackId = hookReq.callbackId();
-                    var callback = hookCallbacks.get(callbackId);
-                    if (callback == null) {
-                        throw new ClaudeSDKException("No hook callback found for ID: " + callbackId);
-                    }
+                    });
+        } catch (Exception e) {
+            if ((requestId == null) && (message instanceof TransportMessage.RawMessage raw)) {
+                // Try to extract from raw message if deserialization failed
+                requestId = (String) raw.data().get("request_id");
+            }
+            if (requestId == null) {
+                logger.log(Level.WARNING, "Failed to handle control request without request_id", e);
+            } else if (inFlightRequests.remove(requestId, inFlight)) {
+                sendControlErrorResponse(requestId, e);
+            }
+        }
+    }
 
-                    HookInput hookInput = hookReq.input();
-                    String toolUseId = hookReq.toolUseId();
-                    HookContext context = new HookContext(toolUseId);
+    /**
+     * Returns the request_id of a control request, or null if it has none.
+     */
+    private static @Nullable String controlRequestId(TransportMessage message) {
+        return switch (message) {
+            case TransportMessage.ControlRequestMessage typed -> typed.request().requestId();
+            case TransportMessage.RawMessage raw -> ((raw.data().get("request_id") instanceof String id) ? id : null);
+            default -> null;
+        };
+    }
 
-                    CompletableFuture<HookOutput> outputFuture = callback.apply(hookInput, context);
-                    HookOutput output = outputFuture.get(RESULT_WAIT_SECS, TimeUnit.SECONDS);
-                    responseData = output.toMap();
+    /**
+     * Starts handling a control request from the CLI.
+     *
+     * @return a future of the response data
+     * @throws Exception if the request cannot be handled
+     */
+    @SuppressWarnings("null")
+    private CompletableFuture<Map<String, Object>> dispatchControlRequest(SDKControlRequestData requestData,
+            AbortSignal signal) throws Exception {
+        // Pattern match on request type (discriminated union)
+        return switch (requestData) {
+            case SDKControlPermissionRequest permissionReq -> {
+                if (canUseTool == null) {
+                    throw new ClaudeSDKException("canUseTool callback is not provided");
                 }
-                case SDKControlMcpMessageRequest mcpReq -> {
-                    // Route MCP message to SDK MCP server
-                    String serverName = mcpReq.serverName();
-                    Map<String, Object> mcpMessage = mcpReq.message();
 
-                    if ((serverName == null) || (mcpMessage == null)) {
-                        throw new ClaudeSDKException("Missing name or message for SDK MCP server");
-                    }
+                String toolName = permissionReq.toolName();
+                Map<String, Object> input = permissionReq.input();
+
+                // Build context with permission suggestions from CLI
+                List<PermissionUpdate> suggestions = ((permissionReq.permissionSuggestions() != null)
+                        ? permissionReq.permissionSuggestions()
+                        : List.of());
+                ToolPermissionContext context = new ToolPermissionContext(signal, suggestions);
+
+                CompletableFuture<PermissionResult> resultFuture = canUseTool.apply(toolName, input, context);
+                signal.onAbort(() -> resultFuture.cancel(true));
+                // Serialize permission result to response format
+                yield resultFuture.thenApply(result -> switch (result) {
+                    case PermissionResultAllow allow -> allow.toMap(input);
+                    case PermissionResultDeny deny -> deny.toMap(input);
+                });
+            }
+            case SDKHookCallbackRequest hookReq -> {
+                String callbackId = hookReq.callbackId();
+                var callback = hookCallbacks.get(callbackId);
+                if (callback == null) {
+                    throw new ClaudeSDKException("No hook callback found for ID: " + callbackId);
+                }
 
-                    if ((sdkMcpServers == null) || (!sdkMcpServers.containsKey(serverName))) {
-                        throw new ClaudeSDKException("SDK MCP server not found: " + serverName);
-                    }
+                HookInput hookInput = hookReq.input();
+                String toolUseId = hookReq.toolUseId();
+                HookContext context = new HookContext(toolUseId, signal);
 
-                    SdkMcpServer server = sdkMcpServers.get(serverName);
-                    CompletableFuture<Map<String, Object>> mcpResponseFuture = server.handleMessage(mcpMessage);
-                    Map<String, Object> mcpResponse = mcpResponseFuture.get(RESULT_WAIT_SECS, TimeUnit.SECONDS);
-                    responseData.put("mcp_response", mcpResponse);
-                }
-                case SDKControlMCPStatusRequest ignored -> {
-                    // Interrupt is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected mcp status request from CLI: " + ignored);
-                }
-                case SDKControlInterruptRequest ignored -> {
-                    // Interrupt is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected interrupt request from CLI: " + ignored);
-                }
-                case SDKControlInitializeRequest ignored -> {
-                    // Initialize is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected initialize request from CLI: " + ignored);
-                }
-                case SDKControlSetPermissionModeRequest ignored -> {
-                    // Set permission mode is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected set_permission_mode request from CLI: " + ignored);
-                }
-                case SDKControlSetModelRequest ignored -> {
-                    // Set model is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected set_model request from CLI: " + ignored);
+                CompletableFuture<HookOutput> outputFuture = callback.apply(hookInput, context);
+                signal.onAbort(() -> outputFuture.cancel(true));
+                yield outputFuture.thenApply(HookOutput::toMap);
+            }
+            case SDKControlMcpMessageRequest mcpReq -> {
+                // Route MCP message to SDK MCP server
+                String serverName = mcpReq.serverName();
+                Map<String, Object> mcpMessage = mcpReq.message();
+
+                if ((serverName == null) || (mcpMessage == null)) {
+                    throw new ClaudeSDKException("Missing name or message for SDK MCP server");
                 }
-                case SDKControlRewindFilesRequest ignored -> {
-                    // Rewind files is sent from SDK to CLI, not CLI to SDK
-                    throw new ClaudeSDKException("Unexpected rewind_files request from CLI: " + ignored);
+
+                if ((sdkMcpServers == null) || (!sdkMcpServers.containsKey(serverName))) {
+                    throw new ClaudeSDKException("SDK MCP server not found: " + serverName);
                 }
-            }
 
-            // Send success response
-            sendControlResponse(new ControlResponse(requestId, responseData));
-        } catch (Exception e) {
-            // Send error response
-            if (requestId == null) {
-                // Try to extract from raw message if deserialization failed
-                requestId = (String) message.get("request_id");
+                SdkMcpServer server = sdkMcpServers.get(serverName);
+                yield server.handleMessage(mcpMessage, signal).thenApply(mcpResponse -> {
+                    Map<String, Object> responseData = new HashMap<>();
+                    responseData.put("mcp_response", mcpResponse);
+                    return responseData;
+                });
             }
-            if (requestId != null) {
-                logger.log(Level.WARNING, "Error in handling control request", e);
-                sendControlResponse(new ControlErrorResponse(requestId, e.getMessage()));
-            } else {
-                logger.log(Level.WARNING, "Failed to handle control request without request_id", e);
+            case SDKControlMCPStatusRequest ignored -> {
+                // Interrupt is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected mcp status request from CLI: " + ignored);
             }
+            case SDKControlInterruptRequest ignored -> {
+                // Interrupt is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected interrupt request from CLI: " + ignored);
+            }
+            case SDKControlInitializeRequest ignored -> {
+                // Initialize is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected initialize request from CLI: " + ignored);
+            }
+            case SDKControlSetPermissionModeRequest ignored -> {
+                // Set permission mode is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected set_permission_mode request from CLI: " + ignored);
+            }
+            case SDKControlSetModelRequest ignored -> {
+                // Set model is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected set_model request from CLI: " + ignored);
+            }
+            case SDKControlRewindFilesRequest ignored -> {
+                // Rewind files is sent from SDK to CLI, not CLI to SDK
+                throw new ClaudeSDKException("Unexpected rewind_files request from CLI: " + ignored);
+            }
+        };
+    }
+
+    /**
+     * Cancels a control request the CLI no longer needs an answer for.
+     */
+    private void handleControlCancelRequest(TransportMessage message) {
+        if ((!(message instanceof TransportMessage.RawMessage raw))
+                || (!(raw.data().get("request_id") instanceof String requestId))) {
+            logger.fine("Ignoring control cancel request without request_id");
+            return;
         }
+
+        // Removing it first keeps a response that completes meanwhile from being sent
+        InFlightRequest inFlight = inFlightRequests.remove(requestId);
+        if (inFlight == null) {
+            logger.fine("Ignoring cancel for control request that is not in flight: " + requestId);
+            return;
+        }
+        logger.fine("Cancelling control request: " + requestId);
+        inFlight.stop();
+        // Abort listeners are user code; keep them off the reader thread
+        runtime.executor().execute(inFlight.signal::abort);
+    }
+
+    private void sendControlErrorResponse(String requestId, Throwable error) {
+        logger.log(Level.WARNING, "Error in handling control request", error);
+        String message = ((error instanceof TimeoutException)
+                ? "Control request was not handled within " + RESULT_WAIT_SECS + " seconds"
+                : error.getMessage());
+        sendControlResponse(new ControlErrorResponse(requestId, message));
+    }
+
+    /**
+     * Strips the {@link CompletionException} wrapper added by future
+     * composition.
+     */
+    private static Throwable unwrap(Throwable e) {
+        return (((e instanceof CompletionException) && (e.getCause() != null)) ? e.getCause() : e);
     }
 
     private void sendControlResponse(ControlResponseData crData) {
@@ -642,8 +851,12 @@ public class QueryHandler implements AutoCloseable {
 
         SDKControlResponse cr = new SDKControlResponse(crData);
         try {
-            String json = MAPPER.writeValueAsString(cr);
-            transport.write(json + "\n");
+            // Nothing waits on a response, so don't block the handler on the flush
+            transport.writeAsync(ENCODER.encode(cr)).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    logger.log(Level.WARNING, "Failed to send control response", e);
+                }
+            });
         } catch (Exception e) {
             logger.log(Level.WARNING, "Failed to send control response", e);
         }
@@ -658,20 +871,51 @@ public class QueryHandler implements AutoCloseable {
      * @throws ClaudeSDKException if the request fails or times out
      */
     private SDKControlResponse sendControlRequest(SDKControlRequestData requestData, Duration timeout) {
+        CompletableFuture<SDKControlResponse> future = sendControlRequestAsync(requestData, timeout);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ClaudeSDKException cause) {
+                throw cause;
+            }
+            throw new ClaudeSDKException("Control request failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClaudeSDKException("Control request interrupted: " + requestData.subtype(), e);
+        }
+    }
+
+    /**
+     * Sends a strongly-typed control request without waiting for the response.
+     *
+     * <p>
+     * The request is written on the calling thread; the returned future is
+     * completed by the reader thread when the response arrives, so nothing
+     * blocks while it is outstanding.
+     *
+     * @param requestData the typed request data
+     * @param timeout     timeout duration
+     * @return a future of the control response, failed with a
+     *         {@link ClaudeSDKException} if the request fails or times out
+     */
+    private CompletableFuture<SDKControlResponse> sendControlRequestAsync(SDKControlRequestData requestData,
+            Duration timeout) {
         if (!isStreamingMode) {
-            throw new ClaudeSDKException("Control requests require streaming mode");
+            return CompletableFuture.failedFuture(new ClaudeSDKException("Control requests require streaming mode"));
         }
 
         if (closed.get()) {
-            throw new ClaudeSDKException("QueryHandler is closed");
+            return CompletableFuture.failedFuture(new ClaudeSDKException("QueryHandler is closed"));
         }
 
         // Generate unique request ID
-        String requestId = "req_" + requestCounter.incrementAndGet() + "_" + randomHex(4);
+        String requestId = requestIds.next();
 
         // Create future for response
         CompletableFuture<ControlResponse> future = new CompletableFuture<>();
         pendingControlResponses.put(requestId, future);
+        // Keep the reader moving past bulk messages until the response arrives
+        messageQueue.acquireHeadroom();
 
         // Build and send typed request
         SDKControlRequest controlRequest = new SDKControlRequest(requestId, requestData);
@@ -679,34 +923,33 @@ public class QueryHandler implements AutoCloseable {
         try {
             // Serialize to JSON - the request will have proper structure:
             // {"type": "control_request", "request_id": "...", "request": {...}}
-            String json = MAPPER.writeValueAsString(controlRequest);
-            transport.write(json + "\n");
-
-            // Wait for response
-            ControlResponse result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
-            if (!requestId.equals(result.requestId())) {
-                throw new IllegalStateException(
-                        "Result ids don't match: %s != %s".formatted(requestId, result.requestId()));
-            }
-            return new SDKControlResponse(result);
-        } catch (TimeoutException e) {
-            throw new ClaudeSDKException("Control request timeout: " + requestData.subtype());
+            ENCODER.write(transport, controlRequest);
         } catch (Exception e) {
-            throw new ClaudeSDKException("Control request failed: " + e.getMessage(), e);
-        } finally {
-            // Always remove from pending map to prevent memory leak
             pendingControlResponses.remove(requestId);
+            messageQueue.releaseHeadroom();
+            return CompletableFuture.failedFuture(
+                    new ClaudeSDKException("Control request failed: " + e.getMessage(), e));
         }
-    }
 
-    private static String randomHex(int bytes) {
-        byte[] data = new byte[bytes];
-        random.nextBytes(data);
-        StringBuilder sb = new StringBuilder();
-        for (byte b : data) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        return future
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((result, e) -> {
+                    // Always remove from pending map to prevent memory leak
+                    pendingControlResponses.remove(requestId);
+                    messageQueue.releaseHeadroom();
+                    if (e != null) {
+                        Throwable cause = unwrap(e);
+                        if (cause instanceof TimeoutException) {
+                            throw new ClaudeSDKException("Control request timeout: " + requestData.subtype());
+                        }
+                        throw new ClaudeSDKException("Control request failed: " + cause.getMessage(), cause);
+                    }
+                    if (!requestId.equals(result.requestId())) {
+                        throw new ClaudeSDKException("Control request failed: Result ids don't match: %s != %s"
+                                .formatted(requestId, result.requestId()));
+                    }
+                    return new SDKControlResponse(result);
+                });
     }
 
     /**
@@ -721,6 +964,19 @@ public class QueryHandler implements AutoCloseable {
         return ((ControlResponse) response.response()).response();
     }
 
+    /**
+     * Sends an get current MCP server connection status control request
+     * without blocking.
+     *
+     * @return a future of the MCP server connection status map, failed with a
+     *         {@link ClaudeSDKException} if the request fails
+     */
+    public CompletableFuture<Map<String, Object>> getMcpStatusAsync() {
+        SDKControlMCPStatusRequest request = new SDKControlMCPStatusRequest();
+        return sendControlRequestAsync(request, Duration.ofSeconds(RESULT_WAIT_SECS))
+                .thenApply(response -> ((ControlResponse) response.response()).response());
+    }
+
     /**
      * Sends an interrupt control request.
      *
@@ -731,6 +987,16 @@ public class QueryHandler implements AutoCloseable {
         sendControlRequest(request, Duration.ofSeconds(RESULT_WAIT_SECS));
     }
 
+    /**
+     * Sends an interrupt control request without blocking.
+     *
+     * @return a future completed once the CLI acknowledges the interrupt
+     */
+    public CompletableFuture<Void> interruptAsync() {
+        SDKControlInterruptRequest request = new SDKControlInterruptRequest();
+        return sendControlRequestAsync(request, Duration.ofSeconds(RESULT_WAIT_SECS)).thenApply(response -> null);
+    }
+
     /**
      * Changes the permission mode.
      *
@@ -742,6 +1008,17 @@ public class QueryHandler implements AutoCloseable {
         sendControlRequest(request, Duration.ofSeconds(RESULT_WAIT_SECS));
     }
 
+    /**
+     * Changes the permission mode without blocking.
+     *
+     * @param mode the new permission mode
+     * @return a future completed once the CLI acknowledges the change
+     */
+    public CompletableFuture<Void> setPermissionModeAsync(PermissionMode mode) {
+        SDKControlSetPermissionModeRequest request = new SDKControlSetPermissionModeRequest(mode);
+        return sendControlRequestAsync(request, Duration.ofSeconds(RESULT_WAIT_SECS)).thenApply(response -> null);
+    }
+
     /**
      * Changes the model.
      *
@@ -753,6 +1030,17 @@ public class QueryHandler implements AutoCloseable {
         sendControlRequest(request, Duration.ofSeconds(RESULT_WAIT_SECS));
     }
 
+    /**
+     * Changes the model without blocking.
+     *
+     * @param model the model identifier, or null to reset to default
+     * @return a future completed once the CLI acknowledges the change
+     */
+    public CompletableFuture<Void> setModelAsync(@Nullable String model) {
+        SDKControlSetModelRequest request = new SDKControlSetModelRequest(model);
+        return sendControlRequestAsync(request, Duration.ofSeconds(RESULT_WAIT_SECS)).thenApply(response -> null);
+    }
+
     /**
      * Rewinds tracked files to their state at a specific user message.
      * Requires file checkpointing to be enabled via the `enable_file_checkpointing`
@@ -773,8 +1061,7 @@ public class QueryHandler implements AutoCloseable {
         try {
             while (stream.hasNext() && (!closed.get())) {
                 Map<String, Object> message = stream.next();
-                String json = MAPPER.writeValueAsString(message);
-                transport.write(json + "\n");
+                ENCODER.write(transport, message);
             }
 
             // If we have hooks or SDK MCP servers that need bidirectional communication,
@@ -830,7 +1117,66 @@ public class QueryHandler implements AutoCloseable {
      * @return an iterator over messages received from the CLI
      */
     public Iterator<Message> receiveMessages() {
-        return new MessageIterator();
+        return new MessageIterator<>(QueryHandler::toMessage);
+    }
+
+    /**
+     * Returns an iterator over SDK messages as undecoded JSON, for forwarding
+     * them without parsing.
+     *
+     * <p>
+     * Intended for transports that pass messages through as
+     * {@link TransportMessage.EncodedMessage} (see
+     * {@code ClaudeAgentOptions.rawMessages()}); raw maps are re-serialized.
+     * Control messages are handled internally and never returned. The same
+     * message queue backs {@link #receiveMessages()}, so use one or the other.
+     *
+     * @return an iterator over encoded messages received from the CLI
+     */
+    public Iterator<TransportMessage.EncodedMessage> receiveRawMessages() {
+        return new MessageIterator<>(QueryHandler::toEncodedMessage);
+    }
+
+    private static Message toMessage(TransportMessage message) {
+        return switch (message) {
+            case TransportMessage.SdkMessage typed -> typed.message();
+            case TransportMessage.RawMessage raw -> MessageParser.parse(raw.data());
+            case TransportMessage.EncodedMessage encoded -> MessageParser.parse(readMap(encoded));
+            default -> throw new IllegalStateException("Unexpected message: " + message.type());
+        };
+    }
+
+    private static TransportMessage.EncodedMessage toEncodedMessage(TransportMessage message) {
+        return switch (message) {
+            case TransportMessage.EncodedMessage encoded -> encoded;
+            case TransportMessage.RawMessage raw -> {
+                try {
+                    yield new TransportMessage.EncodedMessage(raw.type(), MAPPER.writeValueAsBytes(raw.data()));
+                } catch (JsonProcessingException e) {
+                    throw new ClaudeSDKException("Failed to encode message: " + e.getMessage(), e);
+                }
+            }
+            default -> throw new ClaudeSDKException(
+                    "Transport delivered a decoded " + message.type() + " message; enable rawMessages to receive "
+                            + "undecoded messages");
+        };
+    }
+
+    private static Map<String, Object> readMap(TransportMessage.EncodedMessage encoded) {
+        try {
+            return MAPPER.readValue(encoded.json(), MAP_TYPE);
+        } catch (IOException e) {
+            throw new MessageParseException("Failed to parse message: " + e.getMessage(), null, e);
+        }
+    }
+
+    /**
+     * Returns the backpressure counters of the message queue.
+     *
+     * @return a snapshot of the queue stats
+     */
+    public MessageQueueStats getMessageQueueStats() {
+        return messageQueue.stats();
     }
 
     /**
@@ -848,132 +1194,124 @@ public class QueryHandler implements AutoCloseable {
     }
 
     /**
-     * Closes this QueryHandler and releases all resources.
-     *
-     * <p>
-     * This method:
-     * <ul>
-     * <li>Interrupts and waits for the reader thread to terminate</li>
-     * <li>Interrupts and waits for all control request handler threads</li>
-     * <li>Completes all pending control request futures exceptionally</li>
-     * <li>Clears all callback maps</li>
-     * <li>Closes the underlying transport</li>
-     * </ul>
+     * Closes the handler and its transport, waiting for the transport to shut
+     * down (for the subprocess transport: for the CLI process to exit, bounded
+     * by the close timeout) and for the reader to stop (at most 10 seconds).
      *
      * <p>
      * This method is idempotent and can be safely called multiple times.
-     * Subsequent calls after the first are no-ops.
+     * Subsequent calls after the first only wait for the first to finish.
      */
     @Override
     public void close() {
+        CompletableFuture<Void> transportClosed = closeAsync();
+        try {
+            transportClosed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Error closing transport", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the handler without waiting for the transport to shut down.
+     *
+     * <p>
+     * Pending control requests fail, in-flight callbacks are cancelled and
+     * iterators are released before this returns; see the class documentation
+     * for the full sequence.
+     *
+     * @return a future completed once the transport has shut down and the
+     *         reader has stopped
+     */
+    public CompletableFuture<Void> closeAsync() {
         // Use atomic compare-and-set for thread-safe idempotent close
         if (closed.getAndSet(true)) {
-            return; // Already closed
+            return closeFuture; // Already closed
         }
 
         logger.fine("Closing QueryHandler");
 
-        try {
-            // 1. Complete all pending futures exceptionally
-            ClaudeSDKException closedException = new ClaudeSDKException("QueryHandler is closed");
-            for (CompletableFuture<ControlResponse> future : pendingControlResponses.values()) {
-                future.completeExceptionally(closedException);
-            }
-            pendingControlResponses.clear();
+        // 1. Complete all pending futures exceptionally
+        ClaudeSDKException closedException = new ClaudeSDKException("QueryHandler is closed");
+        for (CompletableFuture<ControlResponse> future : pendingControlResponses.values()) {
+            future.completeExceptionally(closedException);
+        }
+        pendingControlResponses.clear();
 
-            // Complete firstResultEvent if still pending
-            firstResultEvent.complete(null);
+        // Stop work on requests that can no longer be answered
+        for (InFlightRequest inFlight : inFlightRequests.values()) {
+            inFlight.cancel();
+        }
+        inFlightRequests.clear();
 
-            // 2. Close transport FIRST to unblock any waiting hasNext() calls
-            // This ensures the reader thread can exit its message loop quickly
-            try {
-                transport.close();
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "Error closing transport", e);
-            }
+        // Complete firstResultEvent if still pending
+        firstResultEvent.complete(null);
 
-            // 3. Graceful shutdown of both executors
-            readerExecutor.shutdown();
-            controlExecutor.shutdown();
-            logger.fine("Initiated executors shutdown, waiting for tasks to complete");
-
-            // 4. Wait for reader executor to terminate (should be quick since transport is
-            // closed)
-            boolean readerTerminated = readerExecutor.awaitTermination(
-                    READER_THREAD_JOIN_TIMEOUT_SECS,
-                    TimeUnit.SECONDS);
-
-            if (!readerTerminated) {
-                logger.warning("Reader executor did not terminate gracefully, forcing shutdown");
-                readerExecutor.shutdownNow();
-                boolean forcedTermination = readerExecutor.awaitTermination(2, TimeUnit.SECONDS);
-                if (!forcedTermination) {
-                    logger.warning(
-                            "Reader executor did not terminate even after shutdownNow() - threads may still be running");
-                }
-            } else {
-                logger.fine("Reader executor terminated gracefully");
-            }
+        // 2. Close transport FIRST to unblock the reader thread; only the
+        // process exit is left to the returned future
+        CompletableFuture<Void> transportClosed;
+        try {
+            transportClosed = transport.closeAsync();
+        } catch (RuntimeException e) {
+            transportClosed = CompletableFuture.failedFuture(e);
+        }
 
-            // 5. Wait for control executor to terminate
-            boolean controlTerminated = controlExecutor.awaitTermination(
-                    CONTROL_THREAD_JOIN_TIMEOUT_SECS,
-                    TimeUnit.SECONDS);
+        // Drop undelivered messages (releasing a reader blocked on a full queue,
+        // deleting any spill file) and wake iterators blocked in hasNext()
+        messageQueue.close();
 
-            if (!controlTerminated) {
-                // Force shutdown if graceful shutdown timed out
-                logger.warning("Control executor did not terminate gracefully within " +
-                        CONTROL_THREAD_JOIN_TIMEOUT_SECS + " seconds, forcing shutdown");
-                List<Runnable> pendingTasks = controlExecutor.shutdownNow();
-                logger.fine("Cancelled " + pendingTasks.size() + " pending control tasks");
+        // 3. Control tasks have been cancelled and are not waited for; the
+        // reader stops with the transport
+        if (!readerStarted.get()) {
+            readerDone.complete(null);
+        }
+        CompletableFuture<Void> readerStopped = readerDone
+                .orTimeout(READER_STOP_TIMEOUT_SECS, TimeUnit.SECONDS)
+                .exceptionally(e -> {
+                    logger.warning("Reader did not stop within " + READER_STOP_TIMEOUT_SECS
+                            + " seconds after close, interrupting it");
+                    Future<?> task = readerTask;
+                    if (task != null) {
+                        task.cancel(true);
+                    }
+                    return null;
+                });
 
-                // Wait a bit more for forced shutdown
-                controlTerminated = controlExecutor.awaitTermination(2, TimeUnit.SECONDS);
+        // 4. Clear all callback maps to prevent memory leaks
+        hookCallbacks.clear();
 
-                if (!controlTerminated) {
-                    logger.warning("Control executor did not terminate after shutdownNow() - " +
-                            "control request handler threads may still be running");
-                }
+        CompletableFuture.allOf(transportClosed, readerStopped).whenComplete((v, e) -> {
+            if (e != null) {
+                closeFuture.completeExceptionally(e);
             } else {
-                logger.fine("Control executor terminated gracefully");
+                closeFuture.complete(null);
             }
-
-            // 6. Clear all callback maps to prevent memory leaks
-            hookCallbacks.clear();
-
-            // 7. Clear message queue
-            messageQueue.clear();
-
-            logger.fine("QueryHandler closed successfully");
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.log(Level.WARNING, "Interrupted during close, forcing executors shutdown", e);
-            readerExecutor.shutdownNow();
-            controlExecutor.shutdownNow();
-            try {
-                transport.close();
-            } catch (Exception te) {
-                logger.log(Level.WARNING, "Failed to close transport after interruption", te);
-            }
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error during close", e);
-        }
+            logger.fine("QueryHandler closed");
+        });
+        return closeFuture;
     }
 
     /**
      * Iterator for SDK messages from the message queue.
      *
      * <p>
-     * This iterator blocks waiting for messages and handles special control
-     * messages like "end" and "error".
+     * This iterator blocks waiting for messages. The stream ends when the
+     * message queue is finished and drained, rethrowing the reader's error if
+     * there was one, or when the handler is closed.
      */
-    private class MessageIterator implements Iterator<Message> {
+    private class MessageIterator<T> implements Iterator<T> {
 
+        private final Function<TransportMessage, T> converter;
         @Nullable
-        private Message nextMessage = null;
+        private T nextMessage = null;
         private boolean done = false;
 
+        MessageIterator(Function<TransportMessage, T> converter) {
+            this.converter = converter;
+        }
+
         @Override
         public boolean hasNext() {
             if (nextMessage != null) {
@@ -984,36 +1322,33 @@ public class QueryHandler implements AutoCloseable {
             }
 
             try {
-                // Use poll with timeout instead of blocking take() to ensure graceful
-                // termination.
-                // Blocking take() would risk deadlock if the reader thread crashes or is
-                // interrupted
-                // before sending the "end" message. Polling allows us to periodically check the
-                // closed flag and terminate within 400ms even if the queue is empty.
-                while (!done) {
-                    // Check closed flag to avoid blocking forever
-                    if (closed.get()) {
-                        done = true;
-                        return false;
-                    }
-
-                    // Poll with timeout to periodically wake up and check closed flag
-                    Map<String, Object> message = messageQueue.poll(400, TimeUnit.MILLISECONDS);
-                    if (message != null) {
-                        // Check for end marker
-                        if ("end".equals(message.get("type"))) {
-                            done = true;
-                            return false;
-                        }
-                        if ("error".equals(message.get("type"))) {
-                            done = true;
-                            throw new ClaudeSDKException((String) message.get("error"));
-                        }
+                // Check closed flag before blocking
+                if (closed.get()) {
+                    done = true;
+                    return false;
+                }
 
-                        nextMessage = MessageParser.parse(message);
-                        return true;
+                // Blocking take() is safe: the reader always finishes the queue, and
+                // close() closes it, so this wakes as soon as the stream ends or the
+                // handler is closed.
+                TransportMessage message = messageQueue.take();
+                if (message == null) {
+                    done = true;
+                    Throwable failure = messageQueue.failure();
+                    if ((failure != null) && (!closed.get())) {
+                        throw ((failure instanceof ClaudeSDKException sdkException)
+                                ? sdkException
+                                : new ClaudeSDKException(failure.getMessage(), failure));
                     }
+                    return false;
+                }
+                if (closed.get()) {
+                    done = true;
+                    return false;
                 }
+
+                nextMessage = converter.apply(message);
+                return true;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 done = true;
@@ -1022,11 +1357,11 @@ public class QueryHandler implements AutoCloseable {
         }
 
         @Override
-        public Message next() {
+        public T next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            Message msg = nextMessage;
+            T msg = nextMessage;
             nextMessage = null;
             return msg;
         }
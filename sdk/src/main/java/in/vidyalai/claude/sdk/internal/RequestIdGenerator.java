@@ -0,0 +1,38 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates control request IDs of the form {@code req_<n>_<8 hex digits>}.
+ *
+ * <p>
+ * The counter makes IDs unique within a session; the random suffix is chosen
+ * once per generator so that IDs from different sessions are unlikely to
+ * coincide in logs. Generating an ID is a counter increment and a string
+ * concatenation.
+ */
+final class RequestIdGenerator {
+
+    private final AtomicLong counter = new AtomicLong();
+    private final String suffix;
+
+    RequestIdGenerator() {
+        this(ThreadLocalRandom.current().nextInt());
+    }
+
+    RequestIdGenerator(int salt) {
+        this.suffix = "_" + HexFormat.of().toHexDigits(salt);
+    }
+
+    /**
+     * Returns the next request ID.
+     *
+     * @return a request ID unique for this generator
+     */
+    String next() {
+        return "req_" + counter.incrementAndGet() + suffix;
+    }
+
+}
@@ -0,0 +1,151 @@
+package in.vidyalai.claude.sdk.internal;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.control.request.SDKControlRequest;
+import in.vidyalai.claude.sdk.types.control.response.SDKControlResponse;
+import in.vidyalai.claude.sdk.types.message.AssistantMessage;
+import in.vidyalai.claude.sdk.types.message.ContentBlock;
+import in.vidyalai.claude.sdk.types.message.Message;
+import in.vidyalai.claude.sdk.types.message.ResultMessage;
+import in.vidyalai.claude.sdk.types.message.StreamEvent;
+import in.vidyalai.claude.sdk.types.message.SystemMessage;
+import in.vidyalai.claude.sdk.types.message.TextBlock;
+import in.vidyalai.claude.sdk.types.message.ThinkingBlock;
+import in.vidyalai.claude.sdk.types.message.ToolResultBlock;
+import in.vidyalai.claude.sdk.types.message.ToolUseBlock;
+import in.vidyalai.claude.sdk.types.message.UserMessage;
+
+/**
+ * Round-trips {@link TransportMessage}s to bytes for the
+ * {@link MessageBuffer} spill file.
+ *
+ * <p>
+ * The encoding is private to this SDK version and only lives as long as the
+ * spill file: typed messages are written as their records with a type tag
+ * (configured through mix-ins so the public types stay unannotated), raw
+ * messages as plain maps.
+ */
+public final class TransportMessageCodec implements MessageBuffer.SpillCodec<TransportMessage> {
+
+    /**
+     * Shared instance; the codec is stateless.
+     */
+    public static final TransportMessageCodec INSTANCE = new TransportMessageCodec();
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .addMixIn(Message.class, MessageMixin.class)
+            .addMixIn(ContentBlock.class, ContentBlockMixin.class)
+            .addMixIn(TextBlock.class, TypedBlockMixin.class)
+            .addMixIn(ThinkingBlock.class, TypedBlockMixin.class)
+            .addMixIn(ToolUseBlock.class, TypedBlockMixin.class)
+            .addMixIn(ToolResultBlock.class, TypedBlockMixin.class)
+            .addMixIn(UserMessage.class, UserMessageMixin.class)
+            .build();
+    private static final ObjectWriter WRITER = MAPPER.writerFor(Envelope.class);
+    private static final ObjectReader READER = MAPPER.readerFor(Envelope.class);
+
+    private TransportMessageCodec() {
+    }
+
+    @Override
+    public byte[] encode(TransportMessage message) throws IOException {
+        Envelope envelope = switch (message) {
+            case TransportMessage.SdkMessage sdk -> new Envelope(sdk.message(), null, null, null, null, null);
+            case TransportMessage.ControlRequestMessage req -> new Envelope(null, req.request(), null, null, null, null);
+            case TransportMessage.ControlResponseMessage resp ->
+                new Envelope(null, null, resp.response(), null, null, null);
+            case TransportMessage.RawMessage raw -> new Envelope(null, null, null, raw.data(), null, null);
+            case TransportMessage.EncodedMessage encoded ->
+                new Envelope(null, null, null, null, encoded.type(), encoded.json());
+        };
+        return WRITER.writeValueAsBytes(envelope);
+    }
+
+    @Override
+    public TransportMessage decode(byte[] bytes) throws IOException {
+        Envelope envelope = READER.readValue(bytes);
+        if (envelope.message() != null) {
+            return new TransportMessage.SdkMessage(envelope.message());
+        }
+        if (envelope.controlRequest() != null) {
+            return new TransportMessage.ControlRequestMessage(envelope.controlRequest());
+        }
+        if (envelope.controlResponse() != null) {
+            return new TransportMessage.ControlResponseMessage(envelope.controlResponse());
+        }
+        if (envelope.raw() != null) {
+            return TransportMessage.raw(envelope.raw());
+        }
+        if (envelope.json() != null) {
+            return new TransportMessage.EncodedMessage(envelope.encodedType(), envelope.json());
+        }
+        throw new IOException("Empty spill record");
+    }
+
+    private record Envelope(
+            @JsonProperty("message") @Nullable Message message,
+            @JsonProperty("control_request") @Nullable SDKControlRequest controlRequest,
+            @JsonProperty("control_response") @Nullable SDKControlResponse controlResponse,
+            @JsonProperty("raw") @Nullable Map<String, Object> raw,
+            @JsonProperty("encoded_type") @Nullable String encodedType,
+            @JsonProperty("json") byte @Nullable [] json) {
+    }
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = UserMessage.class, name = "user"),
+            @JsonSubTypes.Type(value = AssistantMessage.class, name = "assistant"),
+            @JsonSubTypes.Type(value = SystemMessage.class, name = "system"),
+            @JsonSubTypes.Type(value = ResultMessage.class, name = "result"),
+            @JsonSubTypes.Type(value = StreamEvent.class, name = "stream_event")
+    })
+    private interface MessageMixin {
+    }
+
+    // The "type" property is written by TypedBlockMixin, so blocks keep their tag
+    // even inside UserMessage's untyped content
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = TextBlock.class, name = "text"),
+            @JsonSubTypes.Type(value = ThinkingBlock.class, name = "thinking"),
+            @JsonSubTypes.Type(value = ToolUseBlock.class, name = "tool_use"),
+            @JsonSubTypes.Type(value = ToolResultBlock.class, name = "tool_result")
+    })
+    private interface ContentBlockMixin {
+    }
+
+    private interface TypedBlockMixin {
+
+        @JsonProperty("type")
+        String type();
+
+    }
+
+    private abstract static class UserMessageMixin {
+
+        UserMessageMixin(
+                @JsonProperty("content") @JsonDeserialize(using = MessageParser.UserContentDeserializer.class) Object content,
+                @JsonProperty("uuid") String uuid,
+                @JsonProperty("parent_tool_use_id") String parentToolUseId,
+                @JsonProperty("tool_use_result") Map<String, Object> toolUseResult) {
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Process-wide cache of Claude Code CLI discovery, version check results and
+ * prepared command lines.
+ *
+ * <p>
+ * Finding the CLI scans every {@code PATH} entry, and the version check forks
+ * {@code claude -v}. Both results only change when the binary does, so they
+ * are cached against the resolved path together with the file's modification
+ * time and size. A cached entry is revalidated with a single {@code stat}; if
+ * the binary was replaced or removed the work is done again.
+ *
+ * <p>
+ * Command line flags and environment overrides are derived from the options
+ * alone, so they are cached per {@code ClaudeAgentOptions#fingerprint()}. The
+ * most recently used {@value #MAX_LAUNCH_SPECS} entries are kept.
+ *
+ * <p>
+ * Installing a CLI at a location that takes precedence over the cached one,
+ * or editing a settings file that is merged with sandbox settings, is not
+ * detected. Call {@link #invalidate()} (or
+ * {@code ClaudeSDK.invalidateCliCache()}) after such changes.
+ *
+ * <h2>Thread Safety</h2>
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class CliCache {
+
+    // Last discovered CLI, revalidated against the file on every lookup
+    @Nullable
+    private static volatile FileStamp discovered;
+
+    // Parsed "claude -v" output per binary
+    private static final ConcurrentHashMap<FileStamp, String> versions = new ConcurrentHashMap<>();
+
+    static final int MAX_LAUNCH_SPECS = 256;
+
+    // Command line flags and environment per options fingerprint, in access order
+    private static final Map<String, LaunchSpec> launchSpecs = new LinkedHashMap<>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LaunchSpec> eldest) {
+            return (size() > MAX_LAUNCH_SPECS);
+        }
+
+    };
+
+    private CliCache() {
+    }
+
+    /**
+     * Returns the discovered CLI path, running {@code finder} only when nothing
+     * is cached or the cached binary has changed.
+     *
+     * @param finder searches for the CLI; may throw if none is found
+     * @return the CLI path
+     */
+    static String discover(Supplier<String> finder) {
+        FileStamp cached = discovered;
+        if ((cached != null) && (cached.equals(FileStamp.of(cached.path())))) {
+            return cached.path();
+        }
+
+        String path = finder.get();
+        discovered = FileStamp.of(path);
+        return path;
+    }
+
+    /**
+     * Returns the version reported by the CLI at {@code cliPath}, running
+     * {@code checker} only when it is not cached for the current binary.
+     *
+     * <p>
+     * The checker forks a process, so it runs outside the map's locks;
+     * concurrent misses for the same binary may each run it, and the first
+     * result wins. A null result from {@code checker} (e.g. a timeout) is not
+     * cached. If the file cannot be stat'ed, nothing is cached and
+     * {@code checker} always runs.
+     *
+     * @param cliPath the CLI path
+     * @param checker runs the version check; returns null if it failed
+     * @return the version, or null if the check failed
+     */
+    @Nullable
+    static String version(String cliPath, Function<String, @Nullable String> checker) {
+        FileStamp stamp = FileStamp.of(cliPath);
+        if (stamp == null) {
+            return checker.apply(cliPath);
+        }
+        String version = versions.get(stamp);
+        if (version != null) {
+            return version;
+        }
+
+        String checked = checker.apply(cliPath);
+        if (checked == null) {
+            return null;
+        }
+        version = versions.putIfAbsent(stamp, checked);
+        return ((version != null) ? version : checked);
+    }
+
+    /**
+     * Returns the launch spec for the given options fingerprint, building it
+     * with {@code builder} if it is not cached.
+     *
+     * <p>
+     * The builder runs outside the lock; concurrent misses for the same
+     * fingerprint may each build it, and the first result wins.
+     *
+     * @param fingerprint the options fingerprint
+     * @param builder     builds the spec from the options
+     * @return the launch spec
+     */
+    static LaunchSpec launchSpec(String fingerprint, Supplier<LaunchSpec> builder) {
+        synchronized (launchSpecs) {
+            LaunchSpec spec = launchSpecs.get(fingerprint);
+            if (spec != null) {
+                return spec;
+            }
+        }
+
+        LaunchSpec built = builder.get();
+        synchronized (launchSpecs) {
+            LaunchSpec spec = launchSpecs.putIfAbsent(fingerprint, built);
+            return ((spec != null) ? spec : built);
+        }
+    }
+
+    /**
+     * Clears all cached discovery, version and command line results.
+     */
+    public static void invalidate() {
+        discovered = null;
+        versions.clear();
+        synchronized (launchSpecs) {
+            launchSpecs.clear();
+        }
+    }
+
+    /**
+     * Clears cached results for one CLI path.
+     *
+     * @param cliPath the CLI path
+     */
+    public static void invalidate(Path cliPath) {
+        String path = cliPath.toString();
+        FileStamp cached = discovered;
+        if ((cached != null) && (cached.path().equals(path))) {
+            discovered = null;
+        }
+        versions.keySet().removeIf(stamp -> stamp.path().equals(path));
+    }
+
+    /**
+     * Command line flags and environment overrides derived from options.
+     *
+     * @param args   the flags between the CLI path and the input mode flags
+     * @param env    environment variables to set on top of the inherited ones
+     * @param length the length of {@code args} joined with spaces
+     */
+    record LaunchSpec(List<String> args, Map<String, String> env, int length) {
+
+        LaunchSpec(List<String> args, Map<String, String> env) {
+            this(List.copyOf(args), Map.copyOf(env), String.join(" ", args).length());
+        }
+
+    }
+
+    /**
+     * Identifies one version of a file by path, modification time and size.
+     */
+    private record FileStamp(String path, long modifiedMillis, long size) {
+
+        @Nullable
+        static FileStamp of(String path) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(Path.of(path), BasicFileAttributes.class);
+                return new FileStamp(path, attrs.lastModifiedTime().toMillis(), attrs.size());
+            } catch (IOException | InvalidPathException e) {
+                return null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
+
+/**
+ * Single writer task that drains a lock-free queue of pending writes and
+ * flushes everything pending at once.
+ *
+ * <p>
+ * Producers only enqueue and wake the writer, so concurrent callers never
+ * contend on the output stream. Whatever has accumulated while the previous
+ * batch was being written goes out as the next batch, with a single flush.
+ * Each write completes its future once its batch has been flushed.
+ *
+ * <p>
+ * End of input is queued like a write, so it takes effect only after every
+ * write submitted before it.
+ */
+final class CoalescingWriter implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CoalescingWriter.class.getName());
+
+    /**
+     * Writes a batch of messages and flushes once.
+     */
+    @FunctionalInterface
+    interface BatchWriter {
+
+        /**
+         * @param batch the messages, in submission order
+         * @throws CLIConnectionException if the batch could not be written
+         */
+        void write(List<ByteBuffer> batch) throws CLIConnectionException;
+
+    }
+
+    // data == null marks end of input
+    private record PendingWrite(@Nullable ByteBuffer data, CompletableFuture<Void> future) {
+    }
+
+    private final ConcurrentLinkedQueue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final BatchWriter batchWriter;
+    private final Runnable endInput;
+    // Set by the writer task before it first drains the queue
+    @Nullable
+    private volatile Thread thread;
+    private volatile boolean started = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a writer; writes are rejected until {@link #start()} is called.
+     *
+     * @param executor    runs the writer task
+     * @param batchWriter writes and flushes a batch
+     * @param endInput    closes the output once all earlier writes are done
+     */
+    CoalescingWriter(Executor executor, BatchWriter batchWriter, Runnable endInput) {
+        this.executor = executor;
+        this.batchWriter = batchWriter;
+        this.endInput = endInput;
+    }
+
+    void start() {
+        started = true;
+        executor.execute(this::run);
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @param data the data to write; its contents must not change until the
+     *             future completes
+     * @return a future completed once the data has been flushed
+     */
+    CompletableFuture<Void> submit(ByteBuffer data) {
+        return enqueue(data);
+    }
+
+    /**
+     * Queues end of input after all writes submitted so far.
+     *
+     * @return a future completed once input has been ended
+     */
+    CompletableFuture<Void> submitEnd() {
+        return enqueue(null);
+    }
+
+    private CompletableFuture<Void> enqueue(@Nullable ByteBuffer data) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!started) {
+            future.completeExceptionally(new CLIConnectionException("ProcessTransport is not ready for writing"));
+            return future;
+        }
+        if (closed) {
+            future.completeExceptionally(closedException());
+            return future;
+        }
+        PendingWrite pending = new PendingWrite(data, future);
+        queue.offer(pending);
+        wakeWriter();
+
+        // The writer may have drained its queue for the last time just before
+        // the offer. Whoever takes the entry off the queue completes it, so an
+        // entry the writer has polled is left to the writer.
+        if (closed && queue.removeIf(write -> (write == pending))) {
+            future.completeExceptionally(closedException());
+        }
+        return future;
+    }
+
+    /**
+     * Stops the writer. Writes that have not been flushed yet fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wakeWriter();
+    }
+
+    private void wakeWriter() {
+        Thread writer = thread;
+        // Not running yet: it drains the queue before it first parks
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void run() {
+        thread = Thread.currentThread();
+        List<PendingWrite> drained = new ArrayList<>();
+        try {
+            while (!closed) {
+                PendingWrite pending;
+                while ((pending = queue.poll()) != null) {
+                    drained.add(pending);
+                }
+                if (drained.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                process(drained);
+                drained.clear();
+            }
+        } finally {
+            drained.forEach(write -> write.future().completeExceptionally(closedException()));
+            PendingWrite pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future().completeExceptionally(closedException());
+            }
+        }
+    }
+
+    /**
+     * Writes the drained entries as batches separated by end-of-input markers.
+     */
+    private void process(List<PendingWrite> drained) {
+        List<ByteBuffer> batch = new ArrayList<>(drained.size());
+        int batchStart = 0;
+        for (int i = 0; i < drained.size(); i++) {
+            PendingWrite write = drained.get(i);
+            if (write.data() != null) {
+                batch.add(write.data());
+                continue;
+            }
+
+            flush(batch, drained.subList(batchStart, i));
+            batch.clear();
+            batchStart = i + 1;
+            try {
+                endInput.run();
+                write.future().complete(null);
+            } catch (RuntimeException e) {
+                write.future().completeExceptionally(e);
+            }
+        }
+        flush(batch, drained.subList(batchStart, drained.size()));
+    }
+
+    private void flush(List<ByteBuffer> batch, List<PendingWrite> writes) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchWriter.write(batch);
+            writes.forEach(write -> write.future().complete(null));
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "Failed to write batch of " + batch.size() + " messages", e);
+            writes.forEach(write -> write.future().completeExceptionally(e));
+        }
+    }
+
+    private static CLIConnectionException closedException() {
+        return new CLIConnectionException("Transport is closed");
+    }
+
+}
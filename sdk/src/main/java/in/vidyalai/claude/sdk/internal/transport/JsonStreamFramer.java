@@ -0,0 +1,440 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import in.vidyalai.claude.sdk.exceptions.CLIJSONDecodeException;
+
+/**
+ * Incremental framer that splits the CLI's stdout byte stream into top-level
+ * JSON objects.
+ *
+ * <p>
+ * Bytes are read straight from the process {@link InputStream} and fed to
+ * Jackson's non-blocking parser, so every byte is tokenized exactly once no
+ * matter how a message is split across reads or lines. Each completed
+ * top-level object is returned as a {@link TokenBuffer} that can be bound to
+ * any target type without re-parsing the text. The object's top-level
+ * {@code type} field is sniffed on the way through (see {@link #type()}) so
+ * that callers can pick a target type without scanning the tokens again.
+ *
+ * <p>
+ * Objects whose type matches the optional skip predicate are dropped as soon
+ * as their {@code type} field has been read: the remaining tokens are only
+ * counted to find the end of the object, never copied or bound.
+ *
+ * <p>
+ * Objects whose type matches the optional raw predicate are returned as their
+ * original bytes instead of tokens (see {@link #nextFrame()}), for callers
+ * that forward messages without decoding them.
+ *
+ * <p>
+ * Malformed input (e.g. a stray non-JSON line) is skipped up to the next
+ * newline so that a single bad line cannot wedge the stream.
+ *
+ * <p>
+ * The read chunk is taken from a pool shared by all framers and returned by
+ * {@link #close()}, so short-lived connections do not each allocate one. The
+ * buffer that collects raw objects spanning several chunks is reused from one
+ * object to the next.
+ *
+ * <p>
+ * This class is <b>not thread-safe</b>; it is owned by a single reader thread.
+ */
+final class JsonStreamFramer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(JsonStreamFramer.class.getName());
+    static final int READ_CHUNK_SIZE = 64 * 1024;
+    static final int POOL_SIZE = 16;
+
+    // Static is safe: a framer returns its chunk only on close, once its read loop has finished
+    private static final ArrayBlockingQueue<byte[]> CHUNK_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final InputStream in;
+    private final JsonFactory factory;
+    private final int maxBufferSize;
+    @Nullable
+    private final Predicate<String> skipType;
+    @Nullable
+    private final Predicate<String> rawType;
+    private final byte[] chunk;
+
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+    // Absolute stream offset of the first byte fed to the current parser
+    private long parserBase = 0;
+    // Absolute stream offset of chunk[0] and number of valid bytes in chunk
+    private long chunkBase = 0;
+    private int chunkLen = 0;
+    // Absolute stream offset just past the last complete top-level value
+    private long boundary = 0;
+    // Absolute stream offset of the '{' opening the current top-level object
+    private long objectStart = 0;
+    private int depth = 0;
+    private boolean eof = false;
+    private boolean skippingLine = false;
+    @Nullable
+    private TokenBuffer current = null;
+    // Top-level "type" field of the current object, sniffed while copying tokens
+    private boolean atTypeField = false;
+    @Nullable
+    private String currentType = null;
+    @Nullable
+    private String lastType = null;
+    private long skipped = 0;
+    // Bytes of the current object copied out of earlier chunks, when capturing
+    private boolean capturing = false;
+    private boolean rawWanted = false;
+    private byte[] raw = new byte[0];
+    private int rawLen = 0;
+    private long rawCopiedUpTo = 0;
+    private boolean closed = false;
+
+    /**
+     * A framed top-level object: either its tokens or, for raw types, its
+     * original bytes.
+     *
+     * @param type   the top-level {@code type} field, if any
+     * @param tokens the object's tokens, or null if returned raw
+     * @param json   the object's bytes, or null if returned as tokens
+     */
+    record Frame(@Nullable String type, @Nullable TokenBuffer tokens, byte @Nullable [] json) {
+    }
+
+    /**
+     * Creates a new framer.
+     *
+     * @param in            the stream to read from (typically process stdout)
+     * @param factory       the factory used to create the non-blocking parser
+     * @param maxBufferSize max bytes a single JSON message may span
+     * @throws IOException if the parser cannot be created
+     */
+    JsonStreamFramer(InputStream in, JsonFactory factory, int maxBufferSize) throws IOException {
+        this(in, factory, maxBufferSize, null, null);
+    }
+
+    /**
+     * Creates a new framer that drops objects of unwanted types.
+     *
+     * @param in            the stream to read from (typically process stdout)
+     * @param factory       the factory used to create the non-blocking parser
+     * @param maxBufferSize max bytes a single JSON message may span
+     * @param skipType      returns true for top-level types to drop, or null
+     *                      to return every object
+     * @param rawType       returns true for top-level types to return as bytes,
+     *                      or null to return every object as tokens
+     * @throws IOException if the parser cannot be created
+     */
+    JsonStreamFramer(InputStream in, JsonFactory factory, int maxBufferSize,
+            @Nullable Predicate<String> skipType, @Nullable Predicate<String> rawType) throws IOException {
+        this.in = in;
+        this.factory = factory;
+        this.maxBufferSize = maxBufferSize;
+        this.skipType = skipType;
+        this.rawType = rawType;
+        byte[] pooled = CHUNK_POOL.poll();
+        this.chunk = ((pooled != null) ? pooled : new byte[READ_CHUNK_SIZE]);
+        this.parser = factory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Reads the next top-level JSON object from the stream.
+     *
+     * <p>
+     * Blocks until a complete object is available or the stream ends.
+     * Whitespace, blank lines and top-level scalars/arrays between objects are
+     * ignored.
+     *
+     * @return the tokens of the next object, or null at end of stream
+     * @throws IOException            if reading from the stream fails
+     * @throws CLIJSONDecodeException if a message exceeds the max buffer size
+     */
+    @Nullable
+    TokenBuffer next() throws IOException {
+        Frame frame = nextFrame();
+        return ((frame != null) ? frame.tokens() : null);
+    }
+
+    /**
+     * Reads the next top-level JSON object from the stream, as bytes if its
+     * type matches the raw predicate and as tokens otherwise.
+     *
+     * @return the next object, or null at end of stream
+     * @throws IOException            if reading from the stream fails
+     * @throws CLIJSONDecodeException if a message exceeds the max buffer size
+     */
+    @Nullable
+    Frame nextFrame() throws IOException {
+        while (true) {
+            JsonToken token;
+            try {
+                token = parser.nextToken();
+            } catch (JsonParseException e) {
+                if (eof) {
+                    // Truncated trailing data, e.g. process killed mid-write
+                    logger.fine("Discarding incomplete JSON at end of CLI output: " + e.getOriginalMessage());
+                    return null;
+                }
+                resync(e);
+                continue;
+            }
+
+            if (token == JsonToken.NOT_AVAILABLE) {
+                checkBufferLimit((chunkBase + chunkLen) - boundary);
+                if (capturing) {
+                    // The chunk is about to be overwritten
+                    copyRaw(chunkBase + chunkLen);
+                }
+                fill();
+                continue;
+            }
+            if (token == null) {
+                return null;
+            }
+
+            if ((depth == 0) && (token == JsonToken.START_OBJECT)) {
+                // '{' is a single byte, already consumed
+                objectStart = position() - 1;
+                current = new TokenBuffer(parser);
+                currentType = null;
+                capturing = (rawType != null);
+                rawWanted = false;
+                rawLen = 0;
+                rawCopiedUpTo = objectStart;
+            }
+            if (current != null) {
+                current.copyCurrentEvent(parser);
+                if (depth == 1) {
+                    sniffType(token);
+                    if ((currentType != null) && (skipType != null) && (skipType.test(currentType))) {
+                        // Track depth to the end of the object without copying it
+                        current = null;
+                        capturing = false;
+                        skipped++;
+                    } else if ((currentType != null) && (capturing)) {
+                        // Keep either the bytes or the tokens, not both
+                        rawWanted = rawType.test(currentType);
+                        if (rawWanted) {
+                            current = null;
+                        } else {
+                            capturing = false;
+                        }
+                    }
+                }
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+
+            if (depth == 0) {
+                // A complete top-level value
+                boundary = position();
+                TokenBuffer done = current;
+                current = null;
+                if (rawWanted) {
+                    checkBufferLimit(boundary - objectStart);
+                    lastType = currentType;
+                    rawWanted = false;
+                    capturing = false;
+                    return new Frame(currentType, null, takeRaw());
+                }
+                capturing = false;
+                if (done != null) {
+                    checkBufferLimit(boundary - objectStart);
+                    lastType = currentType;
+                    return new Frame(currentType, done, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the parser and returns the read chunk to the pool. The framer
+     * must not be used afterwards; the stream is not closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // Nothing to release for a byte array parser
+        }
+        CHUNK_POOL.offer(chunk);
+        raw = new byte[0];
+    }
+
+    /**
+     * Returns the top-level {@code type} field of the object most recently
+     * returned by {@link #next()}.
+     *
+     * @return the type, or null if the object had no string {@code type} field
+     */
+    @Nullable
+    String type() {
+        return lastType;
+    }
+
+    /**
+     * Returns the number of objects dropped by the skip predicate so far.
+     *
+     * @return the skipped object count
+     */
+    long skipped() {
+        return skipped;
+    }
+
+    private void sniffType(JsonToken token) throws IOException {
+        if (token == JsonToken.FIELD_NAME) {
+            atTypeField = "type".equals(parser.currentName());
+        } else {
+            if ((atTypeField) && (token == JsonToken.VALUE_STRING)) {
+                currentType = parser.getText();
+            }
+            atTypeField = false;
+        }
+    }
+
+    /**
+     * Appends the current object's bytes up to {@code upTo} (absolute) that are
+     * still in the chunk.
+     */
+    private void copyRaw(long upTo) {
+        long from = Math.max(rawCopiedUpTo, chunkBase);
+        int len = (int) (upTo - from);
+        if (len <= 0) {
+            return;
+        }
+        if (rawLen + len > raw.length) {
+            int grown = Math.min(Math.max(raw.length * 2, READ_CHUNK_SIZE), maxBufferSize);
+            raw = Arrays.copyOf(raw, Math.max(rawLen + len, grown));
+        }
+        System.arraycopy(chunk, (int) (from - chunkBase), raw, rawLen, len);
+        rawLen += len;
+        rawCopiedUpTo = upTo;
+    }
+
+    private byte[] takeRaw() {
+        if (rawLen == 0) {
+            // Common case: the whole object is in the current chunk
+            int from = (int) (objectStart - chunkBase);
+            return Arrays.copyOfRange(chunk, from, from + (int) (boundary - objectStart));
+        }
+        copyRaw(boundary);
+        // The capture buffer is kept for the next large message; it never
+        // grows beyond maxBufferSize and is released by close()
+        byte[] json = Arrays.copyOf(raw, rawLen);
+        rawLen = 0;
+        return json;
+    }
+
+    private long position() {
+        return parserBase + parser.currentLocation().getByteOffset();
+    }
+
+    private void checkBufferLimit(long pending) {
+        if (pending > maxBufferSize) {
+            throw new CLIJSONDecodeException(
+                    "JSON message exceeded maximum buffer size of " + maxBufferSize + " bytes",
+                    new IllegalStateException("Buffer size " + pending + " exceeds limit " + maxBufferSize));
+        }
+    }
+
+    /**
+     * Reads the next chunk and feeds it to the parser, signalling end of input
+     * once the stream is exhausted.
+     */
+    private void fill() throws IOException {
+        if (closed) {
+            throw new IOException("Framer is closed");
+        }
+        while (true) {
+            chunkBase += chunkLen;
+            chunkLen = 0;
+            int n = in.read(chunk, 0, chunk.length);
+            if (n < 0) {
+                eof = true;
+                feeder.endOfInput();
+                return;
+            }
+            chunkLen = n;
+
+            int start = 0;
+            if (skippingLine) {
+                int nl = indexOfNewline(0);
+                if (nl < 0) {
+                    continue;
+                }
+                skippingLine = false;
+                start = nl + 1;
+                resetParser(chunkBase + start);
+            }
+            if (start < chunkLen) {
+                feeder.feedInput(chunk, start, chunkLen);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the malformed value and restarts parsing after the next newline.
+     */
+    private void resync(JsonParseException e) throws IOException {
+        logger.warning("Skipping malformed JSON from CLI: " + e.getOriginalMessage());
+        int from = (int) Math.min(Math.max(position() - chunkBase, 0), chunkLen);
+        int nl = indexOfNewline(from);
+        if (nl < 0) {
+            // Rest of the line continues in a later chunk
+            skippingLine = true;
+            resetParser(chunkBase + chunkLen);
+            return;
+        }
+        resetParser(chunkBase + nl + 1);
+        if (nl + 1 < chunkLen) {
+            feeder.feedInput(chunk, nl + 1, chunkLen);
+        }
+    }
+
+    private void resetParser(long base) throws IOException {
+        parser.close();
+        parser = factory.createNonBlockingByteArrayParser();
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        parserBase = base;
+        boundary = base;
+        depth = 0;
+        current = null;
+        atTypeField = false;
+        capturing = false;
+        rawWanted = false;
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < chunkLen; i++) {
+            if (chunk[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
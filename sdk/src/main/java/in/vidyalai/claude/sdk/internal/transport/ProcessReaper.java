@@ -0,0 +1,81 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Waits for closed CLI processes to exit, escalating to signals on a deadline.
+ *
+ * <p>
+ * A process handed over here has already had its stdin closed. It is given
+ * half the deadline to exit on its own, is then sent {@code SIGTERM}, and is
+ * killed forcibly once the deadline expires. Exits are observed through
+ * {@link Process#onExit()} and the deadlines run on the given timer (the
+ * {@code SdkRuntime} scheduler), so no thread blocks per closing process.
+ */
+public final class ProcessReaper {
+
+    private static final Logger logger = Logger.getLogger(ProcessReaper.class.getName());
+
+    // How long to wait for the exit after a forced kill before giving up
+    static final Duration FORCED_EXIT_WAIT = Duration.ofSeconds(2);
+
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Creates a reaper.
+     *
+     * @param timer runs the deadlines
+     */
+    public ProcessReaper(ScheduledExecutorService timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * Reaps a process whose input has been closed.
+     *
+     * @param process  the process
+     * @param deadline time allowed for the process to exit before it is killed
+     * @return a future completed once the process has exited, or once it
+     *         outlived its forced kill by {@link #FORCED_EXIT_WAIT}
+     */
+    public CompletableFuture<Void> reap(Process process, Duration deadline) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!process.isAlive()) {
+            done.complete(null);
+            return done;
+        }
+
+        long deadlineNanos = deadline.toNanos();
+        ScheduledFuture<?> terminate = timer.schedule(() -> {
+            if (process.isAlive()) {
+                logger.fine("CLI process " + process.pid() + " did not exit after end of input, terminating");
+                process.destroy();
+            }
+        }, deadlineNanos / 2, TimeUnit.NANOSECONDS);
+        ScheduledFuture<?> kill = timer.schedule(() -> {
+            if (process.isAlive()) {
+                logger.warning("Process did not terminate gracefully, forcing kill");
+                process.destroyForcibly();
+            }
+        }, deadlineNanos, TimeUnit.NANOSECONDS);
+        ScheduledFuture<?> giveUp = timer.schedule(() -> {
+            if (done.complete(null)) {
+                logger.warning("CLI process " + process.pid() + " still running after forced kill");
+            }
+        }, deadlineNanos + FORCED_EXIT_WAIT.toNanos(), TimeUnit.NANOSECONDS);
+
+        process.onExit().whenComplete((exited, error) -> {
+            terminate.cancel(false);
+            kill.cancel(false);
+            giveUp.cancel(false);
+            done.complete(null);
+        });
+        return done;
+    }
+
+}
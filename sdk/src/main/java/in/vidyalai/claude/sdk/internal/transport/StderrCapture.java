@@ -0,0 +1,246 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Drains CLI stderr into a fixed-size ring buffer, optionally handing lines to
+ * a callback on a separate task.
+ *
+ * <p>
+ * The pipe is always drained, so a CLI writing a lot to stderr never blocks
+ * on a full pipe. The last {@code capacity} bytes are kept as raw bytes and
+ * decoded only by {@link #tail()}. Lines for the callback pass through a
+ * bounded queue to {@link #deliver()}: when the callback falls behind, or more
+ * than the allowed lines per second arrive, lines are skipped for the
+ * callback (never for the buffer) and counted.
+ *
+ * <p>
+ * {@link #drain(InputStream)} and {@link #deliver()} each run on one thread;
+ * {@link #tail()} may be called from any thread.
+ */
+final class StderrCapture {
+
+    private static final Logger logger = Logger.getLogger(StderrCapture.class.getName());
+
+    static final int DEFAULT_CAPACITY = 16 * 1024;
+    // Lines waiting for the callback before further lines are skipped
+    static final int CALLBACK_QUEUE_SIZE = 1024;
+    // Longest line passed to the callback; longer lines are cut
+    static final int MAX_LINE_LENGTH = 16 * 1024;
+
+    private static final int READ_SIZE = 8 * 1024;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    // Queued after the last line; compared by identity
+    private static final String END = new String("");
+
+    // Guarded by this
+    private final byte[] ring;
+    private long written;
+
+    @Nullable
+    private final Consumer<String> callback;
+    @Nullable
+    private final BlockingQueue<String> lines;
+    private final int maxLinesPerSecond;
+    private volatile long skippedLines;
+
+    // Line assembly and rate limiting, drain thread only
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private long windowStart = System.nanoTime();
+    private int windowLines;
+
+    /**
+     * Creates a capture.
+     *
+     * @param capacity          bytes of stderr to keep
+     * @param callback          receives stderr lines, or null
+     * @param maxLinesPerSecond lines passed to the callback per second, or 0
+     *                          for no limit
+     */
+    StderrCapture(int capacity, @Nullable Consumer<String> callback, int maxLinesPerSecond) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.ring = new byte[capacity];
+        this.callback = callback;
+        // One slot more than lines may take, so that END always fits
+        this.lines = ((callback != null) ? new ArrayBlockingQueue<>(CALLBACK_QUEUE_SIZE + 1) : null);
+        this.maxLinesPerSecond = maxLinesPerSecond;
+    }
+
+    /**
+     * Returns whether lines are passed to a callback, that is whether
+     * {@link #deliver()} needs to run.
+     *
+     * @return true if there is a callback
+     */
+    boolean hasCallback() {
+        return (callback != null);
+    }
+
+    /**
+     * Reads the stream until it ends or is closed, then closes it and queues
+     * the end of the lines for {@link #deliver()}.
+     *
+     * @param in the stderr stream
+     */
+    void drain(InputStream in) {
+        byte[] buffer = new byte[READ_SIZE];
+        try (in) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                append(buffer, 0, n);
+                if (lines != null) {
+                    splitLines(buffer, n);
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed
+        } finally {
+            if (lines != null) {
+                if (lineLength > 0) {
+                    emitLine();
+                }
+                lines.add(END);
+            }
+        }
+    }
+
+    /**
+     * Passes queued lines to the callback until {@link #drain(InputStream)}
+     * has finished and every line before the end has been delivered.
+     */
+    @SuppressWarnings("null")
+    void deliver() {
+        if (lines == null) {
+            return;
+        }
+        try {
+            String next;
+            while ((next = lines.take()) != END) {
+                try {
+                    callback.accept(next);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "stderr callback failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the buffered stderr, starting at the first complete line once
+     * earlier output has been overwritten.
+     *
+     * @return the last {@code capacity} bytes of stderr, decoded as UTF-8
+     */
+    synchronized String tail() {
+        int length = (int) Math.min(written, ring.length);
+        int start = (int) ((written - length) % ring.length);
+        byte[] bytes = new byte[length];
+        int first = Math.min(length, ring.length - start);
+        System.arraycopy(ring, start, bytes, 0, first);
+        System.arraycopy(ring, 0, bytes, first, length - first);
+
+        int from = 0;
+        if (written > ring.length) {
+            // Drop the partial line the buffer starts in, if a whole one follows
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        return new String(bytes, from, length - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of lines not passed to the callback because it fell
+     * behind or the rate limit was reached.
+     *
+     * @return the skipped line count
+     */
+    long skippedLines() {
+        return skippedLines;
+    }
+
+    private synchronized void append(byte[] bytes, int offset, int length) {
+        if (length > ring.length) {
+            // Only the end fits
+            offset += length - ring.length;
+            written += length - ring.length;
+            length = ring.length;
+        }
+        int position = (int) (written % ring.length);
+        int first = Math.min(length, ring.length - position);
+        System.arraycopy(bytes, offset, ring, position, first);
+        System.arraycopy(bytes, offset + first, ring, 0, length - first);
+        written += length;
+    }
+
+    private void splitLines(byte[] bytes, int length) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') {
+                appendToLine(bytes, start, i - start);
+                emitLine();
+                start = i + 1;
+            }
+        }
+        appendToLine(bytes, start, length - start);
+    }
+
+    private void appendToLine(byte[] bytes, int offset, int length) {
+        int kept = Math.min(length, MAX_LINE_LENGTH - lineLength);
+        if (kept <= 0) {
+            return;
+        }
+        if (lineLength + kept > line.length) {
+            line = Arrays.copyOf(line, Math.min(Math.max(line.length * 2, lineLength + kept), MAX_LINE_LENGTH));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, kept);
+        lineLength += kept;
+    }
+
+    @SuppressWarnings("null")
+    private void emitLine() {
+        int length = lineLength;
+        if ((length > 0) && (line[length - 1] == '\r')) {
+            length--;
+        }
+        String text = new String(line, 0, length, StandardCharsets.UTF_8);
+        lineLength = 0;
+
+        if (maxLinesPerSecond > 0) {
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS) {
+                windowStart = now;
+                windowLines = 0;
+            }
+            if (++windowLines > maxLinesPerSecond) {
+                skippedLines++;
+                return;
+            }
+        }
+        // Only this thread adds, so the check cannot be overtaken
+        if (lines.remainingCapacity() > 1) {
+            lines.add(text);
+        } else {
+            skippedLines++;
+        }
+    }
+
+}
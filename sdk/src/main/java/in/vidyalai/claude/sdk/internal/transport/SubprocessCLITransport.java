@@ -1,13 +1,16 @@
 package in.vidyalai.claude.sdk.internal.transport;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,27 +18,41 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jspecify.annotations.Nullable;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import in.vidyalai.claude.sdk.ClaudeAgentOptions;
+import in.vidyalai.claude.sdk.SdkRuntime;
 import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
 import in.vidyalai.claude.sdk.exceptions.CLIJSONDecodeException;
 import in.vidyalai.claude.sdk.exceptions.CLINotFoundException;
+import in.vidyalai.claude.sdk.exceptions.MessageQueueOverflowException;
 import in.vidyalai.claude.sdk.exceptions.ProcessException;
+import in.vidyalai.claude.sdk.internal.MessageBuffer;
 import in.vidyalai.claude.sdk.internal.SdkVersion;
+import in.vidyalai.claude.sdk.internal.TransportMessageCodec;
+import in.vidyalai.claude.sdk.transport.MessageListener;
 import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
 import in.vidyalai.claude.sdk.types.config.SdkBeta;
 import in.vidyalai.claude.sdk.types.config.SettingSource;
 import in.vidyalai.claude.sdk.types.config.SystemPromptPreset;
@@ -61,18 +78,19 @@ import in.vidyalai.claude.sdk.types.mcp.McpServerConfig;
  * concurrently.</li>
  * <li><b>endInput()</b>: Thread-safe. Can be called concurrently with
  * write().</li>
- * <li><b>readMessages()</b>: <b>NOT thread-safe.</b> Can only be called ONCE
- * per instance.
- * Multiple calls will throw {@link IllegalStateException}. The returned
+ * <li><b>readMessages() / readTypedMessages() / startReading()</b>: <b>NOT
+ * thread-safe.</b>
+ * Only one of them can be called, and only ONCE per instance.
+ * Further calls will throw {@link IllegalStateException}. The returned
  * iterator reads
- * from a shared BufferedReader which is not thread-safe for concurrent
+ * from the shared stdout stream which is not safe for concurrent
  * access.</li>
- * <li><b>close()</b>: Thread-safe. Can be called concurrently with other
- * operations.
- * Shuts down both executor services gracefully (with 2s timeout each, then
- * forced shutdown with 1s verification), terminates the CLI process (5s
- * graceful, then forced), and cleans up all resources. Logs warnings if
- * resources don't terminate within timeouts.</li>
+ * <li><b>close() / closeAsync()</b>: Thread-safe. Can be called concurrently
+ * with other operations. {@link #closeAsync()} releases the streams and reader
+ * tasks right away and hands the CLI process to the {@link SdkRuntime}'s
+ * process reaper, which allows it the single close timeout to exit, sending
+ * {@code SIGTERM} halfway through and killing it once the timeout expires.
+ * {@link #close()} also waits for the process to exit.</li>
  * </ul>
  *
  * <h2>Usage Pattern</h2>
@@ -108,14 +126,16 @@ import in.vidyalai.claude.sdk.types.mcp.McpServerConfig;
  *
  * <h2>Threading Architecture</h2>
  * <p>
- * This class uses two separate {@link ExecutorService} instances with named
- * virtual threads:
- * <ul>
- * <li><b>Stderr Executor:</b> Single-threaded executor for reading stderr
- * stream. Thread name: "SPCTransport-Stderr-0"</li>
- * <li><b>Message Reader Executor:</b> Single-threaded executor for reading
- * stdout messages. Thread name: "SPCTransport-MsgReader-0"</li>
- * </ul>
+ * Reading stderr, reading stdout messages and, with coalesced writes, writing
+ * stdin each run as a task on the executor of
+ * {@link ClaudeAgentOptions#runtime()} (by default the shared
+ * {@link SdkRuntime}), so no executor is created per transport.
+ *
+ * <p>
+ * Stderr is always drained, into a ring buffer of
+ * {@link ClaudeAgentOptions#stderrBufferSize()} bytes whose contents are
+ * attached to the {@link ProcessException} raised on a non-zero exit. A stderr
+ * callback is called from a separate task, so it cannot hold up the CLI.
  *
  * <h2>Resource Management</h2>
  * <p>
@@ -123,36 +143,25 @@ import in.vidyalai.claude.sdk.types.mcp.McpServerConfig;
  * {@link #close()}:
  * <ul>
  * <li>CLI subprocess and associated streams (stdin, stdout, stderr)</li>
- * <li>Stderr ExecutorService and its virtual thread</li>
- * <li>Message Reader ExecutorService and its virtual thread</li>
+ * <li>The stderr and stdout reader tasks</li>
  * <li>Temporary files created for long command lines</li>
  * <li>File descriptors for all BufferedReaders and Writers</li>
  * </ul>
  *
  * <h2>Shutdown Behavior</h2>
  * <p>
- * When {@link #close()} is called:
+ * When {@link #closeAsync()} is called:
  * <ol>
  * <li>Cleans up temporary files created for command-line arguments</li>
  * <li>Closes stdin stream to signal end of input to the CLI process</li>
  * <li>Closes stdout and stderr streams</li>
- * <li>Shuts down stderr executor gracefully (2s timeout), then forced (1s
- * verification)</li>
- * <li>Shuts down message reader executor gracefully (2s timeout), then forced
- * (1s verification)</li>
- * <li>Logs warnings if executor threads don't terminate after forced
- * shutdown</li>
- * <li>Terminates CLI process gracefully via {@code destroy()} (5s timeout)</li>
- * <li>Forces process termination via {@code destroyForcibly()} if still alive
- * (2s wait)</li>
- * <li>Logs warning if process termination required force-kill</li>
+ * <li>Cancels the reader tasks, interrupting them</li>
+ * <li>Hands the process to the runtime's reaper, which sends {@code SIGTERM}
+ * after half the close timeout and kills it forcibly once the timeout
+ * expires</li>
  * </ol>
  * <p>
- * <b>Note:</b> In rare cases where threads are stuck in uninterruptible I/O or
- * the CLI process is hung, they may continue running briefly after
- * {@code close()} returns. This is logged as a warning. Such resources will
- * eventually terminate when they complete their blocking operation or are
- * force-killed by the OS.
+ * {@link #close()} does the same and then waits for the process to exit.
  *
  * <p>
  * <b>Important:</b> Always call {@link #close()} when done to prevent resource
@@ -166,8 +175,32 @@ public class SubprocessCLITransport implements Transport {
 
     private static final Logger logger = Logger.getLogger(SubprocessCLITransport.class.getName());
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+    // Spill codec for readMessages(): plain JSON maps
+    private static final MessageBuffer.SpillCodec<Map<String, Object>> MAP_SPILL_CODEC = new MessageBuffer.SpillCodec<>() {
+
+        @Override
+        public byte[] encode(Map<String, Object> message) throws IOException {
+            return MAPPER.writeValueAsBytes(message);
+        }
+
+        @Override
+        public Map<String, Object> decode(byte[] bytes) throws IOException {
+            return MAPPER.readValue(bytes, MAP_TYPE);
+        }
+
+    };
     private static final int DEFAULT_MSG_Q_SIZE = 1000;
+    // Handled by the SDK itself, so never filtered or delivered undecoded
+    private static final Set<String> CONTROL_TYPES = Set.of(
+            "control_request", "control_response", "control_cancel_request");
+    // Read from their bytes with lazy content, see MessageParser.parseLazy
+    private static final Set<String> LAZY_TYPES = Set.of("user", "assistant");
     private static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024; // 1MB
+    private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(5);
+    // How long to wait for the rest of stderr after a failed exit
+    private static final long STDERR_DRAIN_TIMEOUT_MS = 500;
     private static final String MINIMUM_CLAUDE_CODE_VERSION = "2.0.0";
     private static final String CLAUDE_CLI_NAME = "claude";
 
@@ -183,25 +216,47 @@ public class SubprocessCLITransport implements Transport {
     @Nullable
     private final Path cwd;
     private final int maxBufferSize;
+    // Drops unwanted message types while framing; null keeps all
+    @Nullable
+    private final Predicate<String> skipType;
+    // Delivers matching message types as undecoded bytes; null decodes all
+    @Nullable
+    private final Predicate<String> rawType;
     private final int maxMsgQSize;
+    private final MessageOverflowPolicy overflowPolicy;
+    private final Duration closeTimeout;
     private final ReentrantLock writeLock = new ReentrantLock();
     private final List<Path> tempFiles = Collections.synchronizedList(new ArrayList<>());
     private final AtomicBoolean iteratorCreated = new AtomicBoolean(false);
     private final AtomicBoolean ready = new AtomicBoolean(false);
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Completed once the process has been reaped after close
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
 
-    // Executor services for background tasks with named virtual threads
-    private final ExecutorService stderrExecutor;
-    private final ExecutorService messageReaderExecutor;
+    // Runs the stdout and stderr readers and reaps the process on close
+    private final SdkRuntime runtime;
+    @Nullable
+    private volatile Future<?> stderrTask;
+    @Nullable
+    private volatile Future<?> readerTask;
+    // Queue of the readTypedMessages() iterator, closed with the transport
+    @Nullable
+    private volatile MessageBuffer<?> readerBuffer;
+    // Only set when options.coalescingWrites() is enabled
+    @Nullable
+    private final CoalescingWriter coalescingWriter;
 
     @Nullable
     private volatile Process process;
     @Nullable
-    private volatile BufferedWriter stdin;
+    private volatile OutputStream stdin;
+    @Nullable
+    private volatile InputStream stdout;
     @Nullable
-    private volatile BufferedReader stdout;
+    private volatile InputStream stderr;
+    // Kept after close so that stderr of a finished process can still be read
     @Nullable
-    private volatile BufferedReader stderr;
+    private volatile StderrCapture stderrCapture;
     @Nullable
     private volatile Exception exitError;
 
@@ -217,25 +272,50 @@ public class SubprocessCLITransport implements Transport {
         this.isStreaming = isStreaming;
         this.options = options;
         Path path = options.cliPath();
-        this.cliPath = ((path != null) ? path.toString() : findCli());
+        this.cliPath = ((path != null) ? path.toString() : CliCache.discover(this::findCli));
         this.cwd = options.cwd();
         Integer buffSize = options.maxBufferSize();
         this.maxBufferSize = ((buffSize != null) ? buffSize : DEFAULT_MAX_BUFFER_SIZE);
+        this.skipType = skipPredicate(options.receiveTypes());
+        this.rawType = rawPredicate(options.rawMessages(), options.lazyContent());
         Integer msgQSize = options.maxMsgQSize();
         this.maxMsgQSize = ((msgQSize != null) ? msgQSize : DEFAULT_MSG_Q_SIZE);
+        this.overflowPolicy = options.messageOverflowPolicy();
+        this.closeTimeout = ((options.closeTimeout() != null) ? options.closeTimeout() : DEFAULT_CLOSE_TIMEOUT);
+        this.runtime = options.runtime();
 
-        // Create named executor services for background tasks
-        // Stderr reader: Single-threaded executor for reading stderr
-        this.stderrExecutor = Executors.newSingleThreadExecutor(
-                Thread.ofVirtual()
-                        .name("SPCTransport-Stderr-", 0)
-                        .factory());
-
-        // Message reader: Single-threaded executor for reading stdout messages
-        this.messageReaderExecutor = Executors.newSingleThreadExecutor(
-                Thread.ofVirtual()
-                        .name("SPCTransport-MsgReader-", 0)
-                        .factory());
+        this.coalescingWriter = ((options.coalescingWrites() && isStreaming)
+                ? new CoalescingWriter(runtime.executor(), this::writeBatch, this::closeStdin)
+                : null);
+    }
+
+    /**
+     * Builds the framer's skip predicate for {@link ClaudeAgentOptions#receiveTypes()}.
+     * Control messages and results are never skipped.
+     */
+    @Nullable
+    static Predicate<String> skipPredicate(@Nullable Set<String> receiveTypes) {
+        if (receiveTypes == null) {
+            return null;
+        }
+        // Turns end on results and the control protocol must keep working
+        return (type -> ((!receiveTypes.contains(type)) && (!"result".equals(type))
+                && (!CONTROL_TYPES.contains(type))));
+    }
+
+    /**
+     * Builds the framer's raw predicate for {@link ClaudeAgentOptions#rawMessages()},
+     * under which everything but control messages is delivered undecoded, and
+     * {@link ClaudeAgentOptions#lazyContent()}, under which assistant and user
+     * messages are framed as bytes so their content can be decoded from those
+     * bytes on first access.
+     */
+    @Nullable
+    static Predicate<String> rawPredicate(boolean rawMessages, boolean lazyContent) {
+        if (rawMessages) {
+            return (type -> (!CONTROL_TYPES.contains(type)));
+        }
+        return (lazyContent ? LAZY_TYPES::contains : null);
     }
 
     private String findCli() {
@@ -365,10 +445,64 @@ public class SubprocessCLITransport implements Transport {
     record McpConfigPayload(Map<String, McpServerConfig> mcpServers) {
     }
 
+    /**
+     * Assembles the full command line from the cached launch spec: the CLI
+     * path, the option-derived flags and the input mode (with the prompt in
+     * non-streaming mode).
+     */
+    private List<String> buildCommand(CliCache.LaunchSpec spec) {
+        List<String> cmd = new ArrayList<>(spec.args().size() + 4);
+        cmd.add(cliPath);
+        cmd.addAll(spec.args());
+        int length = cliPath.length() + 1 + spec.length();
+
+        // Prompt handling - MUST come after all flags
+        // because everything after "--" is treated as arguments
+        if (isStreaming) {
+            cmd.add("--input-format");
+            cmd.add("stream-json");
+            length += " --input-format stream-json".length();
+        } else {
+            cmd.add("--print");
+            cmd.add("--");
+            cmd.add(prompt);
+            length += " --print -- ".length() + prompt.length();
+        }
+
+        // Handle long command lines
+        if ((length > CMD_LENGTH_LIMIT) && (options.agents() != null)) {
+            optimizeCommandLine(cmd);
+        }
+
+        return cmd;
+    }
+
+    /**
+     * Builds the parts of the launch that depend only on the options. The
+     * result is cached per options fingerprint.
+     */
+    private CliCache.LaunchSpec buildLaunchSpec() {
+        return new CliCache.LaunchSpec(buildArgs(), buildEnv());
+    }
+
+    private Map<String, String> buildEnv() {
+        Map<String, String> env = new HashMap<>(options.env());
+        env.put("CLAUDE_CODE_ENTRYPOINT", "sdk-java");
+        env.put("CLAUDE_AGENT_SDK_VERSION", SdkVersion.VERSION);
+
+        if (options.enableFileCheckpointing()) {
+            env.put("CLAUDE_CODE_ENABLE_SDK_FILE_CHECKPOINTING", "true");
+        }
+
+        if (cwd != null) {
+            env.put("PWD", cwd.toString());
+        }
+        return env;
+    }
+
     @SuppressWarnings({ "unchecked", "null" })
-    private List<String> buildCommand() {
+    private List<String> buildArgs() {
         List<String> cmd = new ArrayList<>();
-        cmd.add(cliPath);
         cmd.add("--output-format");
         cmd.add("stream-json");
         cmd.add("--verbose");
@@ -554,22 +688,6 @@ public class SubprocessCLITransport implements Transport {
             }
         }
 
-        // Prompt handling - MUST come after all flags
-        // because everything after "--" is treated as arguments
-        if (isStreaming) {
-            cmd.add("--input-format");
-            cmd.add("stream-json");
-        } else {
-            cmd.add("--print");
-            cmd.add("--");
-            cmd.add(prompt);
-        }
-
-        // Handle long command lines
-        if ((String.join(" ", cmd).length() > CMD_LENGTH_LIMIT) && (options.agents() != null)) {
-            optimizeCommandLine(cmd);
-        }
-
         return cmd;
     }
 
@@ -601,45 +719,45 @@ public class SubprocessCLITransport implements Transport {
             checkClaudeVersion();
         }
 
-        List<String> cmd = buildCommand();
-        logger.fine("Launching Claude Code with: %s".formatted(String.join(" ", cmd)));
+        CliCache.LaunchSpec spec = CliCache.launchSpec(options.fingerprint(), this::buildLaunchSpec);
+        List<String> cmd = buildCommand(spec);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Launching Claude Code with: %s".formatted(String.join(" ", cmd)));
+        }
         try {
             ProcessBuilder pb = new ProcessBuilder(cmd);
 
             // Set environment
             Map<String, String> env = pb.environment();
-            env.putAll(options.env());
-            env.put("CLAUDE_CODE_ENTRYPOINT", "sdk-java");
-            env.put("CLAUDE_AGENT_SDK_VERSION", SdkVersion.VERSION);
-
-            if (options.enableFileCheckpointing()) {
-                env.put("CLAUDE_CODE_ENABLE_SDK_FILE_CHECKPOINTING", "true");
-            }
+            env.putAll(spec.env());
 
             if (cwd != null) {
                 pb.directory(cwd.toFile());
-                env.put("PWD", cwd.toString());
             }
 
-            // Configure stderr handling
-            boolean shouldPipeStderr = ((options.stderrCallback() != null)
-                    || options.extraArgs().containsKey("debug-to-stderr"));
             pb.redirectErrorStream(false);
 
-            logger.fine("Claude ENV:" + env);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Claude ENV:" + env);
+            }
             process = pb.start();
 
-            stdin = new BufferedWriter(
-                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
-            stdout = new BufferedReader(
-                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
-
-            // Start stderr reader thread if needed
-            if (shouldPipeStderr) {
-                stderr = new BufferedReader(
-                        new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8));
-                // Submit stderr reading task to dedicated executor
-                stderrExecutor.submit(() -> handleStderr(stderr));
+            stdin = new BufferedOutputStream(process.getOutputStream());
+            stdout = process.getInputStream();
+
+            // Always drain stderr so that the CLI never blocks on a full pipe
+            StderrCapture capture = new StderrCapture(
+                    ((options.stderrBufferSize() != null) ? options.stderrBufferSize()
+                            : StderrCapture.DEFAULT_CAPACITY),
+                    options.stderrCallback(),
+                    ((options.stderrCallbackRate() != null) ? options.stderrCallbackRate() : 0));
+            InputStream localStderr = process.getErrorStream();
+            stderr = localStderr;
+            stderrCapture = capture;
+            stderrTask = runtime.executor().submit(() -> capture.drain(localStderr));
+            if (capture.hasCallback()) {
+                // Finishes by itself once the lines drained before EOF are delivered
+                runtime.executor().execute(capture::deliver);
             }
 
             // Close stdin immediately if not streaming
@@ -649,6 +767,9 @@ public class SubprocessCLITransport implements Transport {
             }
 
             ready.set(true);
+            if ((coalescingWriter != null) && (stdin != null)) {
+                coalescingWriter.start();
+            }
 
         } catch (IOException e) {
             if ((cwd != null) && (!Files.exists(cwd))) {
@@ -667,21 +788,37 @@ public class SubprocessCLITransport implements Transport {
         }
     }
 
-    @SuppressWarnings("null")
-    private void handleStderr(BufferedReader stderr) {
-        try (stderr) {
-            String line;
-            while ((line = stderr.readLine()) != null) {
-                if (options.stderrCallback() != null) {
-                    options.stderrCallback().accept(line);
-                }
-            }
-        } catch (Exception e) {
-            // Stream closed
-        }
+    /**
+     * Returns the most recent stderr output of the CLI process, up to
+     * {@link ClaudeAgentOptions#stderrBufferSize()} bytes. Remains available
+     * after the process has exited.
+     *
+     * @return the buffered stderr, or an empty string before connecting
+     */
+    @Override
+    public String recentStderr() {
+        StderrCapture capture = stderrCapture;
+        return ((capture != null) ? capture.tail() : "");
     }
 
     private void checkClaudeVersion() {
+        String version = CliCache.version(cliPath, this::readClaudeVersion);
+        if ((version != null) && (!version.isEmpty())
+                && (compareVersions(version, MINIMUM_CLAUDE_CODE_VERSION) < 0)) {
+            String warning = String.format(
+                    "Warning: Claude Code version %s is unsupported. Minimum required: %s",
+                    version, MINIMUM_CLAUDE_CODE_VERSION);
+            logger.warning(warning);
+            System.err.println(warning);
+        }
+    }
+
+    /**
+     * Runs {@code claude -v} and returns the parsed version, an empty string if
+     * the output has no version, or null if the check failed or timed out.
+     */
+    @Nullable
+    private String readClaudeVersion(String cliPath) {
         Process versionProcess = null;
         try {
             versionProcess = new ProcessBuilder(cliPath, "-v")
@@ -691,25 +828,17 @@ public class SubprocessCLITransport implements Transport {
             boolean completed = versionProcess.waitFor(2, TimeUnit.SECONDS);
             if (!completed) {
                 versionProcess.destroyForcibly();
-                return;
+                return null;
             }
 
             try (BufferedReader reader = new BufferedReader(
                     new InputStreamReader(versionProcess.getInputStream()))) {
                 String versionOutput = reader.readLine();
-                if (versionOutput != null) {
-                    String version = versionOutput.replaceAll("[^0-9.].*", "");
-                    if ((!version.isEmpty()) && (compareVersions(version, MINIMUM_CLAUDE_CODE_VERSION) < 0)) {
-                        String warning = String.format(
-                                "Warning: Claude Code version %s is unsupported. Minimum required: %s",
-                                version, MINIMUM_CLAUDE_CODE_VERSION);
-                        logger.warning(warning);
-                        System.err.println(warning);
-                    }
-                }
+                return ((versionOutput != null) ? versionOutput.replaceAll("[^0-9.].*", "") : "");
             }
         } catch (Exception e) {
             // Ignore version check errors
+            return null;
         } finally {
             if ((versionProcess != null) && versionProcess.isAlive()) {
                 versionProcess.destroyForcibly();
@@ -737,10 +866,80 @@ public class SubprocessCLITransport implements Transport {
         return 0;
     }
 
-    @SuppressWarnings("null")
     @Override
     public void write(String data) throws CLIConnectionException {
-        logger.fine("Writing message to CLI: " + data);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Writing message to CLI: " + data);
+        }
+        writeBytes(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes UTF-8 encoded data to the CLI's stdin as is.
+     *
+     * @param data   the buffer holding the data
+     * @param offset the offset of the data in the buffer
+     * @param length the number of bytes to write
+     * @throws CLIConnectionException if the write fails
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) throws CLIConnectionException {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Writing message to CLI: " + new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+        writeBytes(ByteBuffer.wrap(data, offset, length));
+    }
+
+    private void writeBytes(ByteBuffer data) throws CLIConnectionException {
+        if (coalescingWriter != null) {
+            // The caller may reuse the array once this returns, which is after the flush
+            await(coalescingWriter.submit(data));
+        } else {
+            writeBatch(List.of(data));
+        }
+    }
+
+    /**
+     * Writes data to the CLI without waiting for it to be flushed.
+     *
+     * <p>
+     * With {@link ClaudeAgentOptions#coalescingWrites()} enabled, the data is
+     * queued for the writer thread, which flushes all pending writes together.
+     * Otherwise the data is written synchronously.
+     *
+     * @param data the data to write
+     * @return a future completed once the data has been flushed, or failed with
+     *         a {@link CLIConnectionException}
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(String data) {
+        return writeAsync(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes UTF-8 encoded data to the CLI without waiting for it to be
+     * flushed; see {@link #writeAsync(String)}.
+     *
+     * @param data the data to write, not modified until the future completes
+     * @return a future completed once the data has been flushed, or failed with
+     *         a {@link CLIConnectionException}
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(byte[] data) {
+        if (coalescingWriter == null) {
+            return Transport.super.writeAsync(data);
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Queueing message to CLI: " + new String(data, StandardCharsets.UTF_8));
+        }
+        return coalescingWriter.submit(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Writes the batch to stdin and flushes once.
+     */
+    @SuppressWarnings("null")
+    private void writeBatch(List<ByteBuffer> batch) throws CLIConnectionException {
         writeLock.lock();
         try {
             // All checks inside lock to prevent TOCTOU races with close()/end_input()
@@ -759,7 +958,9 @@ public class SubprocessCLITransport implements Transport {
             }
 
             try {
-                stdin.write(data);
+                for (ByteBuffer data : batch) {
+                    stdin.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                }
                 stdin.flush();
             } catch (IOException e) {
                 ready.set(false);
@@ -774,6 +975,19 @@ public class SubprocessCLITransport implements Transport {
     @Override
     public void endInput() {
         logger.fine("Ending input to CLI");
+        if (coalescingWriter != null) {
+            // Queued so that stdin is closed only after earlier writes are flushed
+            try {
+                await(coalescingWriter.submitEnd());
+                return;
+            } catch (CLIConnectionException e) {
+                // Writer is not running, close stdin directly
+            }
+        }
+        closeStdin();
+    }
+
+    private void closeStdin() {
         writeLock.lock();
         try {
             if (stdin != null) {
@@ -789,6 +1003,20 @@ public class SubprocessCLITransport implements Transport {
         }
     }
 
+    /**
+     * Waits for a queued write, rethrowing its failure.
+     */
+    private static void await(CompletableFuture<Void> future) throws CLIConnectionException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     @Override
     public Iterator<Map<String, Object>> readMessages() {
         if (!iteratorCreated.compareAndSet(false, true)) {
@@ -796,22 +1024,99 @@ public class SubprocessCLITransport implements Transport {
                     "readMessages() can only be called once per transport instance. " +
                             "Multiple concurrent readers on the same stdout stream is not supported.");
         }
-        return new MessageIterator();
+        return new MessageIterator<>(frame -> TransportMessageDecoder.readMap(frame.tokens()), MAP_SPILL_CODEC,
+                null);
+    }
+
+    /**
+     * Returns an iterator over typed messages from the CLI's stdout.
+     *
+     * <p>
+     * SDK messages and control traffic are bound directly from the framed JSON
+     * tokens into their typed records, skipping the intermediate {@code Map}.
+     * Unknown types and messages that do not bind cleanly are delivered as
+     * {@link TransportMessage.RawMessage}. With
+     * {@link ClaudeAgentOptions#rawMessages()}, everything but control traffic
+     * is delivered undecoded as {@link TransportMessage.EncodedMessage}.
+     *
+     * @return an iterator over typed messages
+     * @throws IllegalStateException if a read method was already called
+     */
+    @Override
+    public Iterator<TransportMessage> readTypedMessages() {
+        if (!iteratorCreated.compareAndSet(false, true)) {
+            throw new IllegalStateException(
+                    "readMessages() can only be called once per transport instance. " +
+                            "Multiple concurrent readers on the same stdout stream is not supported.");
+        }
+        return new MessageIterator<>(this::decode, TransportMessageCodec.INSTANCE, rawType);
+    }
+
+    /**
+     * Pushes typed messages to {@code listener} straight from the stdout reader
+     * thread.
+     *
+     * <p>
+     * Messages are decoded as in {@link #readTypedMessages()} but handed to the
+     * listener without an intermediate queue; the executor is not used.
+     * Blocking in the listener applies backpressure to the CLI through the
+     * stdout pipe.
+     *
+     * @param listener the listener to deliver messages to
+     * @param executor ignored, the transport's own reader thread is used
+     * @throws IllegalStateException if a read method was already called
+     */
+    @Override
+    public void startReading(MessageListener listener, Executor executor) {
+        if (!iteratorCreated.compareAndSet(false, true)) {
+            throw new IllegalStateException(
+                    "readMessages() can only be called once per transport instance. " +
+                            "Multiple concurrent readers on the same stdout stream is not supported.");
+        }
+        readerTask = runtime.executor().submit(() -> readLoop(this::decode, new ListenerSink(listener), rawType));
     }
 
     @Override
     public boolean isReady() {
-        return ready.get();
+        Process p = process;
+        return ((ready.get()) && (p != null) && (p.isAlive()));
     }
 
-    @SuppressWarnings("null")
+    /**
+     * Closes the transport and waits for the CLI process to exit, for at most
+     * the close timeout plus a short grace period after a forced kill.
+     */
     @Override
     public void close() {
-        logger.fine("Closing CLI transport");
+        CompletableFuture<Void> reaped = closeAsync();
+        try {
+            reaped.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.FINE, "Error while waiting for CLI process to exit", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the transport without waiting for the CLI process to exit.
+     *
+     * <p>
+     * Temp files, pipes and reader threads are released before this returns.
+     * The process, whose input is now closed, is handed to a shared reaper that
+     * escalates to {@code SIGTERM} and then a forced kill if it does not exit
+     * within the close timeout (see {@link ClaudeAgentOptions#closeTimeout()}).
+     *
+     * @return a future completed once the process has exited
+     */
+    @SuppressWarnings("null")
+    @Override
+    public CompletableFuture<Void> closeAsync() {
         // Use atomic compare-and-set for thread-safe idempotent close
         if (closed.getAndSet(true)) {
-            return; // Already closed
+            return closeFuture; // Already closed
         }
+        logger.fine("Closing CLI transport");
 
         // Clean up temp files
         for (Path tempFile : tempFiles) {
@@ -823,11 +1128,17 @@ public class SubprocessCLITransport implements Transport {
         }
         tempFiles.clear();
 
-        if (process == null) {
+        if (coalescingWriter != null) {
+            coalescingWriter.close();
+        }
+
+        Process localProcess = process;
+        if (localProcess == null) {
             ready.set(false);
-            // Shutdown executors even if process is null
-            shutdownExecutors();
-            return;
+            // Stop reader tasks even if process is null
+            stopReaders();
+            closeFuture.complete(null);
+            return closeFuture;
         }
 
         // Close stdin
@@ -855,7 +1166,7 @@ public class SubprocessCLITransport implements Transport {
             }
         }
 
-        // Close stderr reader
+        // Close stderr
         if (stderr != null) {
             try {
                 stderr.close();
@@ -864,150 +1175,216 @@ public class SubprocessCLITransport implements Transport {
             }
         }
 
-        // Shutdown executor services (interrupts running tasks)
-        shutdownExecutors();
+        // Stop the reader threads; with the pipes closed they have nothing left to do
+        stopReaders();
 
-        // Terminate process
-        if ((process != null) && process.isAlive()) {
-            process.destroy();
-            try {
-                boolean terminated = process.waitFor(5, TimeUnit.SECONDS);
-                if ((!terminated) && process.isAlive()) {
-                    logger.warning("Process did not terminate gracefully, forcing kill");
-                    process.destroyForcibly();
-                    // Wait a bit for forced termination
-                    process.waitFor(2, TimeUnit.SECONDS);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                process.destroyForcibly();
-            }
-        }
+        // Terminate process in the background
+        runtime.reap(localProcess, closeTimeout).whenComplete((v, e) -> closeFuture.complete(null));
 
         process = null;
         stdout = null;
         stderr = null;
         exitError = null;
+        return closeFuture;
     }
 
     /**
-     * Shuts down executor services gracefully with timeout.
+     * Waits briefly for stderr of an exited process to be drained, then
+     * returns the buffered stderr.
      */
-    private void shutdownExecutors() {
-        shutdownExecutor(stderrExecutor, "Stderr");
-        shutdownExecutor(messageReaderExecutor, "MsgReader");
+    private String awaitStderr() throws InterruptedException {
+        Future<?> task = stderrTask;
+        if (task != null) {
+            try {
+                // EOF follows the exit unless a child process still holds the pipe
+                task.get(STDERR_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException | CancellationException e) {
+                // Use what has been buffered so far
+            }
+        }
+        return recentStderr();
     }
 
-    private void shutdownExecutor(ExecutorService executor, String name) {
-        // Shutdown executor
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
-                logger.fine(name + " executor did not terminate gracefully, forcing shutdown");
-                executor.shutdownNow();
-                // Verify forced termination
-                boolean terminated = executor.awaitTermination(1, TimeUnit.SECONDS);
-                if (!terminated) {
-                    logger.warning(name + " executor did not terminate even after shutdownNow()");
-                }
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            executor.shutdownNow();
+    /**
+     * Cancels the reader tasks without waiting; running tasks are interrupted.
+     * Messages not yet taken from the iterator's queue are dropped, deleting
+     * any spill file, and a consumer blocked in {@code hasNext()} sees the end
+     * of the stream.
+     */
+    private void stopReaders() {
+        Future<?> task = stderrTask;
+        if (task != null) {
+            task.cancel(true);
+        }
+        task = readerTask;
+        if (task != null) {
+            task.cancel(true);
+        }
+        MessageBuffer<?> buffer = readerBuffer;
+        if (buffer != null) {
+            buffer.close();
         }
     }
 
+    @SuppressWarnings("null")
+    private TransportMessage decode(JsonStreamFramer.Frame frame) throws IOException {
+        if (frame.json() == null) {
+            return TransportMessageDecoder.decode(frame.type(), frame.tokens());
+        }
+        if (options.rawMessages()) {
+            return new TransportMessage.EncodedMessage(frame.type(), frame.json());
+        }
+        return TransportMessageDecoder.decodeLazy(frame.type(), frame.json());
+    }
+
     /**
-     * Iterator implementation for reading messages.
+     * Decodes one framed JSON object into the reader's element type.
      */
-    private class MessageIterator implements Iterator<Map<String, Object>> {
+    @FunctionalInterface
+    private interface FrameDecoder<T> {
 
-        private final BlockingQueue<Map<String, Object>> queue = new LinkedBlockingQueue<>(maxMsgQSize);
-        private final AtomicBoolean done = new AtomicBoolean(false);
-        @Nullable
-        private Map<String, Object> nextMessage = null;
+        T decode(JsonStreamFramer.Frame frame) throws IOException;
 
-        MessageIterator() {
-            // Submit message reading task to dedicated executor
-            messageReaderExecutor.submit(this::readLoop);
-        }
+    }
 
-        @SuppressWarnings({ "unchecked", "null" })
-        private void readLoop() {
-            // Capture references locally to prevent NPE from concurrent close()
-            BufferedReader localStdout = stdout;
-            Process localProcess = process;
+    /**
+     * Receives decoded messages from {@link #readLoop}.
+     */
+    private interface FrameSink<T> {
 
-            if ((localStdout == null) || (localProcess == null)) {
-                done.set(true);
-                return;
-            }
+        void accept(T message) throws InterruptedException;
 
-            StringBuilder jsonBuffer = new StringBuilder();
+        void complete(@Nullable Exception error);
 
-            try {
-                String line;
-                while ((line = localStdout.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty()) {
-                        continue;
-                    }
+    }
 
-                    // Accumulate partial JSON
-                    jsonBuffer.append(line);
+    /**
+     * Reads stdout on the message reader thread until it ends, pushing every
+     * decoded message into {@code sink}.
+     *
+     * <p>
+     * The sink is always completed, after the process exit code has been
+     * checked, with the error that ended the stream (if any).
+     */
+    @SuppressWarnings("null")
+    private <T> void readLoop(FrameDecoder<T> decoder, FrameSink<T> sink, @Nullable Predicate<String> rawType) {
+        // Capture references locally to prevent NPE from concurrent close()
+        InputStream localStdout = stdout;
+        Process localProcess = process;
 
-                    if (jsonBuffer.length() > maxBufferSize) {
-                        int bufferLength = jsonBuffer.length();
-                        jsonBuffer.setLength(0);
-                        throw new CLIJSONDecodeException(
-                                "JSON message exceeded maximum buffer size of " + maxBufferSize + " bytes",
-                                new IllegalStateException(
-                                        "Buffer size " + bufferLength + " exceeds limit " + maxBufferSize));
-                    }
+        if ((localStdout == null) || (localProcess == null)) {
+            sink.complete(null);
+            return;
+        }
 
-                    try {
-                        String json = jsonBuffer.toString();
-                        Map<String, Object> data = MAPPER.readValue(json, Map.class);
-                        logger.fine("Received message from CLI: " + json);
-                        jsonBuffer.setLength(0);
-                        // Use offer() with timeout instead of put() to avoid indefinite blocking
-                        if (!queue.offer(data, 5, TimeUnit.SECONDS)) {
-                            logger.warning("Failed to enqueue message - consumer may have stopped consuming");
-                            // Continue trying - consumer might catch up
-                        }
-                    } catch (JsonProcessingException e) {
-                        // Incomplete JSON, continue accumulating
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            } catch (CLIJSONDecodeException e) {
-                // Buffer overflow or JSON decode error - store for consumer
-                exitError = e;
-            } catch (IOException e) {
-                // Stream closed - normal termination
-            } catch (Exception e) {
-                // Catch any other unexpected exceptions
-                exitError = new CLIConnectionException("Unexpected error reading messages: " + e.getMessage(), e);
-            } finally {
-                done.set(true);
-
-                // Check process exit code using local reference
-                try {
-                    if (localProcess != null) {
-                        int exitCode = localProcess.waitFor();
-                        if (exitCode != 0) {
-                            exitError = new ProcessException(
-                                    "Command failed with exit code " + exitCode,
-                                    exitCode,
-                                    "Check stderr output for details");
-                        }
+        // Frame top-level JSON objects incrementally, each byte is parsed once
+        try (JsonStreamFramer framer = new JsonStreamFramer(localStdout, MAPPER.getFactory(), maxBufferSize,
+                skipType, rawType)) {
+            JsonStreamFramer.Frame frame;
+            while ((frame = framer.nextFrame()) != null) {
+                T data = decoder.decode(frame);
+                logger.fine(() -> "Received message from CLI: " + data);
+                // Blocks, spills or fails per the overflow policy when full
+                sink.accept(data);
+            }
+            if (framer.skipped() > 0) {
+                logger.fine(() -> "Skipped " + framer.skipped() + " messages not in receiveTypes");
+            }
+        } catch (InterruptedException e) {
+            // Interrupted by close()
+            Thread.currentThread().interrupt();
+        } catch (MessageQueueOverflowException e) {
+            // Consumer fell behind with the FAIL policy: stop the CLI so it
+            // does not block on a full pipe
+            exitError = e;
+            localProcess.destroy();
+        } catch (CLIJSONDecodeException e) {
+            // Buffer overflow or JSON decode error - store for consumer
+            exitError = e;
+        } catch (IOException e) {
+            // Stream closed - normal termination
+        } catch (Exception e) {
+            // Catch any other unexpected exceptions
+            exitError = new CLIConnectionException("Unexpected error reading messages: " + e.getMessage(), e);
+        } finally {
+            // Check process exit code using local reference
+            try {
+                if (localProcess != null) {
+                    int exitCode = localProcess.waitFor();
+                    if ((exitCode != 0) && (!(exitError instanceof MessageQueueOverflowException))) {
+                        String recent = awaitStderr();
+                        exitError = new ProcessException(
+                                "Command failed with exit code " + exitCode,
+                                exitCode,
+                                ((!recent.isBlank()) ? recent : "Check stderr output for details"));
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+
+            // Complete the sink only after exitError is final
+            sink.complete(exitError);
+        }
+    }
+
+    /**
+     * Adapts a {@link MessageListener} to the reader loop.
+     */
+    private record ListenerSink(MessageListener listener) implements FrameSink<TransportMessage> {
+
+        @Override
+        public void accept(TransportMessage message) throws InterruptedException {
+            listener.onMessage(message);
+        }
+
+        @Override
+        public void complete(@Nullable Exception error) {
+            listener.onComplete(error);
+        }
+
+    }
+
+    /**
+     * Iterator implementation for reading messages.
+     *
+     * <p>
+     * The reader thread hands messages to the consumer through a
+     * {@link MessageBuffer} and always finishes it, so the consumer blocks in
+     * {@code take()} without periodic wake-ups and sees end of stream (or close)
+     * as soon as it happens. When the consumer falls behind, the configured
+     * {@link MessageOverflowPolicy} applies; messages are never dropped.
+     */
+    private class MessageIterator<T> implements Iterator<T>, FrameSink<T> {
+
+        private final MessageBuffer<T> buffer;
+        @Nullable
+        private T nextMessage = null;
+        // Consumer-side: end of stream already seen
+        private boolean ended = false;
+
+        MessageIterator(FrameDecoder<T> decoder, MessageBuffer.SpillCodec<T> codec,
+                @Nullable Predicate<String> rawType) {
+            this.buffer = new MessageBuffer<>(maxMsgQSize, overflowPolicy, codec);
+            readerBuffer = buffer;
+            // Submit message reading task to the runtime
+            readerTask = runtime.executor().submit(() -> readLoop(decoder, this, rawType));
+        }
+
+        @Override
+        public void accept(T message) throws InterruptedException {
+            try {
+                buffer.put(message);
+            } catch (InterruptedException e) {
+                // Interrupted by close(): drop undelivered messages
+                buffer.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void complete(@Nullable Exception error) {
+            buffer.finish(error);
         }
 
         @Override
@@ -1016,27 +1393,15 @@ public class SubprocessCLITransport implements Transport {
                 return true;
             }
 
-            while (!(done.get() && queue.isEmpty())) {
+            if (!ended) {
                 try {
-                    Map<String, Object> msg;
-                    if (!done.get()) {
-                        // Reader still active - wait up to 0.4s for next message
-                        msg = queue.poll(400, TimeUnit.MILLISECONDS);
-                        if (msg != null) {
-                            nextMessage = msg;
-                            return true;
-                        }
-                        // Timeout - loop back to recheck done flag
-                    } else {
-                        // Reader finished - drain remaining messages without blocking
-                        msg = queue.poll();
-                        if (msg != null) {
-                            nextMessage = msg;
-                            return true;
-                        }
-                        // No more messages and reader is done
-                        break;
+                    // Block until the reader hands over a message or finishes
+                    T msg = buffer.take();
+                    if (msg != null) {
+                        nextMessage = msg;
+                        return true;
                     }
+                    ended = true;
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     return false;
@@ -1050,17 +1415,19 @@ public class SubprocessCLITransport implements Transport {
                 throw je;
             } else if (exitError instanceof CLIConnectionException ce) {
                 throw ce;
+            } else if (exitError instanceof MessageQueueOverflowException oe) {
+                throw oe;
             }
 
             return false;
         }
 
         @Override
-        public Map<String, Object> next() {
+        public T next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            Map<String, Object> msg = nextMessage;
+            T msg = nextMessage;
             nextMessage = null;
             return msg;
         }
@@ -0,0 +1,116 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import in.vidyalai.claude.sdk.internal.MessageParser;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.control.request.SDKControlRequest;
+import in.vidyalai.claude.sdk.types.control.response.SDKControlResponse;
+import in.vidyalai.claude.sdk.types.message.Message;
+
+/**
+ * Binds framed JSON objects straight into {@link TransportMessage}s.
+ *
+ * <p>
+ * The sniffed {@code type} field selects the target record, so SDK and control
+ * messages are deserialized from the buffered tokens without an intermediate
+ * {@code Map}. Unknown types, and any message that does not bind cleanly, fall
+ * back to a {@link TransportMessage.RawMessage} so that the existing map-based
+ * handling (and its error reporting) still applies.
+ *
+ * <p>
+ * This class is stateless and thread-safe.
+ */
+final class TransportMessageDecoder {
+
+    private static final Logger logger = Logger.getLogger(TransportMessageDecoder.class.getName());
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(Map.class);
+    private static final ObjectReader TOKENS_READER = MAPPER.readerFor(TokenBuffer.class);
+    private static final ObjectReader CONTROL_REQUEST_READER = MAPPER.readerFor(SDKControlRequest.class);
+    private static final ObjectReader CONTROL_RESPONSE_READER = MAPPER.readerFor(SDKControlResponse.class);
+
+    private TransportMessageDecoder() {
+        // Utility class
+    }
+
+    /**
+     * Decodes a framed JSON object.
+     *
+     * @param type   the sniffed top-level {@code type} field
+     * @param tokens the buffered JSON object
+     * @return the typed message, or a raw message if it could not be bound
+     * @throws IOException if the tokens cannot be read even as a map
+     */
+    static TransportMessage decode(@Nullable String type, TokenBuffer tokens) throws IOException {
+        try {
+            if ("control_request".equals(type)) {
+                return new TransportMessage.ControlRequestMessage(
+                        CONTROL_REQUEST_READER.readValue(tokens.asParser()));
+            }
+            if ("control_response".equals(type)) {
+                return new TransportMessage.ControlResponseMessage(
+                        CONTROL_RESPONSE_READER.readValue(tokens.asParser()));
+            }
+            Message message = MessageParser.parse(type, tokens);
+            if (message != null) {
+                return new TransportMessage.SdkMessage(message);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.fine(() -> "Falling back to map for " + type + " message: " + e.getMessage());
+        }
+        return raw(tokens);
+    }
+
+    /**
+     * Decodes a framed JSON object from its raw bytes, deferring the decoding
+     * of message content.
+     *
+     * <p>
+     * Messages that cannot be read lazily are decoded as by
+     * {@link #decode(String, TokenBuffer)}.
+     *
+     * @param type the sniffed top-level {@code type} field
+     * @param json the UTF-8 JSON object
+     * @return the typed message, or a raw message if it could not be bound
+     * @throws IOException if the bytes cannot be read even as a map
+     * @see MessageParser#parseLazy(String, byte[])
+     */
+    static TransportMessage decodeLazy(@Nullable String type, byte[] json) throws IOException {
+        try {
+            Message message = MessageParser.parseLazy(type, json);
+            if (message != null) {
+                return new TransportMessage.SdkMessage(message);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.fine(() -> "Falling back to eager decoding for " + type + " message: " + e.getMessage());
+        }
+        return decode(type, TOKENS_READER.readValue(json));
+    }
+
+    /**
+     * Reads a framed JSON object as a plain map.
+     *
+     * @param tokens the buffered JSON object
+     * @return the parsed map
+     * @throws IOException if the tokens cannot be read
+     */
+    static Map<String, Object> readMap(TokenBuffer tokens) throws IOException {
+        return MAP_READER.readValue(tokens.asParser());
+    }
+
+    private static TransportMessage raw(TokenBuffer tokens) throws IOException {
+        return TransportMessage.raw(readMap(tokens));
+    }
+
+}
@@ -6,6 +6,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -20,6 +21,7 @@ import org.jspecify.annotations.Nullable;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
 import in.vidyalai.claude.sdk.types.mcp.McpSdkServerConfig;
 
 /**
@@ -102,6 +104,10 @@ public final class SdkMcpServer {
     private final String name;
     private final String version;
     private final Map<String, SdkMcpTool<?>> tools;
+    // The tool set is fixed at construction, so these results never change;
+    // every newly connected CLI process asks for both
+    private final SerializedResult initializeResult;
+    private final SerializedResult listToolsResult;
 
     private SdkMcpServer(String name, String version, List<SdkMcpTool<?>> tools) {
         this.name = name;
@@ -110,6 +116,8 @@ public final class SdkMcpServer {
         for (SdkMcpTool<?> tool : tools) {
             this.tools.put(tool.name(), tool);
         }
+        this.initializeResult = buildInitializeResult();
+        this.listToolsResult = buildListToolsResult();
     }
 
     /**
@@ -153,6 +161,8 @@ public final class SdkMcpServer {
      * <li>Parameter types are mapped to JSON Schema types (String → "string",
      * int → "integer", etc.)</li>
      * <li>All parameters are marked as required in the generated schema</li>
+     * <li>An {@link AbortSignal} parameter is not part of the schema; it
+     * receives the call's cancellation signal</li>
      * </ul>
      *
      * <p>
@@ -224,11 +234,19 @@ public final class SdkMcpServer {
                 }
             }
 
-            // Create tool that invokes the method
+            // Create tool that invokes the method, bound once here
             method.setAccessible(true);
-            SdkMcpTool<Map<String, Object>> tool = SdkMcpTool.create(
-                    toolName, description, inputSchema,
-                    args -> invokeToolMethod(instance, method, args));
+            ToolMethodInvoker invoker;
+            try {
+                invoker = new ToolMethodInvoker(instance, method, MAPPER);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(
+                        "Cannot access method of tool '" + toolName + "': " + e.getMessage(), e);
+            }
+            SdkMcpTool<Map<String, Object>> tool = SdkMcpTool.<Map<String, Object>>builder(toolName, description)
+                    .inputSchema(inputSchema)
+                    .handler((args, signal) -> invokeToolMethod(invoker, args, signal))
+                    .build();
             tools.add(tool);
         }
 
@@ -240,10 +258,9 @@ public final class SdkMcpServer {
     }
 
     private static CompletableFuture<ToolResult> invokeToolMethod(
-            Object instance, Method method, Map<String, Object> args) {
+            ToolMethodInvoker invoker, Map<String, Object> args, AbortSignal signal) {
         try {
-            Object[] orderedArgs = buildMethodArguments(method, args);
-            Object result = method.invoke(instance, orderedArgs);
+            Object result = invoker.invoke(args, signal);
 
             if (result instanceof CompletableFuture<?> future) {
                 return future.thenApply(r -> {
@@ -258,48 +275,25 @@ public final class SdkMcpServer {
                 return CompletableFuture.completedFuture(ToolResult.text(String.valueOf(result)));
             }
         } catch (Exception e) {
-            logger.log(Level.WARNING,
-                    "Tool method invocation failed: %s#%s".formatted(instance.getClass().getName(), method.getName()),
-                    e);
-            Throwable cause = ((e.getCause() != null) ? e.getCause() : e);
-            return CompletableFuture.completedFuture(ToolResult.error(cause.getMessage()));
+            logger.log(Level.WARNING, "Tool method invocation failed: " + invoker, e);
+            return CompletableFuture.completedFuture(ToolResult.error(e.getMessage()));
         }
     }
 
-    private static Object[] buildMethodArguments(Method method, Map<String, Object> args) {
-        Parameter[] parameters = method.getParameters();
-        if ((parameters.length == 1) &&
-                Map.class.isAssignableFrom(parameters[0].getType())) {
-            // Special case: method(Map<String,Object>)
-            return new Object[] { args };
-        }
-
-        Object[] values = new Object[parameters.length];
-        for (int i = 0; i < parameters.length; i++) {
-            Parameter param = parameters[i];
-            if (!param.isNamePresent()) {
-                logger.warning("Parameter names not available for method " + method.getName()
-                        + ". Compile with -parameters flag for enabling dynamic calling.");
-                // Fall back to method(Map<String,Object>)
-                return new Object[] { args };
-            }
-
-            String name = param.getName(); // requires -parameters
-            Class<?> targetType = param.getType();
-
-            Object rawValue = args.get(name);
-
-            if (rawValue == null) {
-                values[i] = null;
-                continue;
+    /**
+     * Returns whether the method takes the raw argument map (and, optionally,
+     * the signal) rather than individual arguments.
+     */
+    static boolean takesArgumentMap(Parameter[] parameters) {
+        int maps = 0;
+        for (Parameter param : parameters) {
+            if (Map.class.isAssignableFrom(param.getType())) {
+                maps++;
+            } else if (param.getType() != AbortSignal.class) {
+                return false;
             }
-
-            // Convert into correct Java type
-            Object converted = MAPPER.convertValue(rawValue, targetType);
-            values[i] = converted;
         }
-
-        return values;
+        return (maps == 1);
     }
 
     /**
@@ -332,7 +326,7 @@ public final class SdkMcpServer {
 
         // If method accepts Map<String, Object> (standard pattern), use empty object
         // schema
-        if ((parameters.length == 1) && Map.class.isAssignableFrom(parameters[0].getType())) {
+        if (takesArgumentMap(parameters)) {
             // MCP-compliant: type=object with empty properties
             return Map.of(
                     KEY_TYPE, KEY_OBJECT,
@@ -344,6 +338,9 @@ public final class SdkMcpServer {
         List<String> required = new ArrayList<>();
 
         for (Parameter param : parameters) {
+            if (param.getType() == AbortSignal.class) {
+                continue;
+            }
             if (!param.isNamePresent()) {
                 logger.warning("Parameter names not available for method " + method.getName()
                         + ". Compile with -parameters flag for automatic schema generation.");
@@ -453,6 +450,21 @@ public final class SdkMcpServer {
      * @return a future with the response message
      */
     public CompletableFuture<Map<String, Object>> handleMessage(Map<String, Object> message) {
+        return handleMessage(message, new AbortSignal());
+    }
+
+    /**
+     * Handles an MCP JSON-RPC message and returns the response, passing the
+     * cancellation signal on to the invoked tool.
+     *
+     * <p>
+     * When the signal is aborted, the tool's future is cancelled as well.
+     *
+     * @param message the JSON-RPC message
+     * @param signal  aborted if the CLI cancels the request
+     * @return a future with the response message
+     */
+    public CompletableFuture<Map<String, Object>> handleMessage(Map<String, Object> message, AbortSignal signal) {
         String method = (String) message.get(KEY_METHOD);
         Object id = message.get(KEY_ID);
         @SuppressWarnings("unchecked")
@@ -461,7 +473,7 @@ public final class SdkMcpServer {
         return switch (method) {
             case METHOD_INITIALIZE -> handleInitialize(id);
             case METHOD_LIST_TOOLS -> handleListTools(id);
-            case METHOD_CALL_TOOL -> handleCallTool(id, params);
+            case METHOD_CALL_TOOL -> handleCallTool(id, params, signal);
             case METHOD_INITIALIZED -> CompletableFuture.completedFuture(
                     Map.of(KEY_JSONRPC, JSONRPC_VERSION, KEY_RESULT, Map.of()));
             default -> CompletableFuture
@@ -470,31 +482,37 @@ public final class SdkMcpServer {
     }
 
     private CompletableFuture<Map<String, Object>> handleInitialize(Object id) {
+        return CompletableFuture.completedFuture(successResponse(id, initializeResult));
+    }
+
+    private CompletableFuture<Map<String, Object>> handleListTools(Object id) {
+        return CompletableFuture.completedFuture(successResponse(id, listToolsResult));
+    }
+
+    private SerializedResult buildInitializeResult() {
         Map<String, Object> result = new HashMap<>();
         result.put(KEY_PROTOCOL_VERSION, PROTOCOL_VERSION);
         result.put(KEY_CAPABILITIES, Map.of(KEY_TOOLS, Map.of()));
         result.put(KEY_SERVER_INFO, Map.of(KEY_NAME, name, KEY_VERSION, version));
-
-        return CompletableFuture.completedFuture(successResponse(id, result));
+        return new SerializedResult(result);
     }
 
-    private CompletableFuture<Map<String, Object>> handleListTools(Object id) {
+    private SerializedResult buildListToolsResult() {
         List<Map<String, Object>> toolList = tools.values().stream()
                 .map(tool -> {
                     Map<String, Object> toolInfo = new HashMap<>();
                     toolInfo.put(KEY_NAME, tool.name());
                     toolInfo.put(KEY_DESCRIPTION, tool.description());
                     toolInfo.put(KEY_INPUT_SCHEMA, tool.inputSchema());
-                    return toolInfo;
+                    return Collections.unmodifiableMap(toolInfo);
                 })
                 .toList();
-
-        return CompletableFuture.completedFuture(
-                successResponse(id, Map.of(KEY_TOOLS, toolList)));
+        return new SerializedResult(Map.of(KEY_TOOLS, toolList));
     }
 
     @SuppressWarnings("unchecked")
-    private CompletableFuture<Map<String, Object>> handleCallTool(Object id, Map<String, Object> params) {
+    private CompletableFuture<Map<String, Object>> handleCallTool(Object id, Map<String, Object> params,
+            AbortSignal signal) {
         String toolName = (String) params.get(KEY_NAME);
         Map<String, Object> arguments = (Map<String, Object>) params.getOrDefault(KEY_ARGUMENTS, Map.of());
 
@@ -508,7 +526,8 @@ public final class SdkMcpServer {
             // Invoke the tool handler
             @SuppressWarnings({ "rawtypes" })
             SdkMcpTool rawTool = tool;
-            CompletableFuture<ToolResult> future = rawTool.invoke(arguments);
+            CompletableFuture<ToolResult> future = rawTool.invoke(arguments, signal);
+            signal.onAbort(() -> future.cancel(true));
             return future
                     .thenApply(result -> {
                         Map<String, Object> responseData = result.toMap();
@@ -2,10 +2,13 @@ package in.vidyalai.claude.sdk.mcp;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import org.jspecify.annotations.Nullable;
 
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
+
 /**
  * Definition for an SDK MCP tool.
  *
@@ -31,6 +34,22 @@ import org.jspecify.annotations.Nullable;
  *         .build();
  * }</pre>
  *
+ * <p>
+ * Handlers that do expensive work can take the request's {@link AbortSignal}
+ * as a second argument and stop once the CLI cancels the call:
+ *
+ * <pre>{@code
+ * SdkMcpTool<Map<String, Object>> scan = SdkMcpTool.<Map<String, Object>>builder("scan", "Scan a table")
+ *         .handler((args, signal) -> CompletableFuture.supplyAsync(() -> {
+ *             for (Row row : table) {
+ *                 signal.throwIfAborted();
+ *                 // ...
+ *             }
+ *             return ToolResult.text("done");
+ *         }))
+ *         .build();
+ * }</pre>
+ *
  * @param <T> the type of the input arguments (typically Map&lt;String,
  *            Object&gt;)
  */
@@ -43,7 +62,7 @@ public final class SdkMcpTool<T> {
     private final String name;
     private final String description;
     private final Map<String, Object> inputSchema;
-    private final Function<T, CompletableFuture<ToolResult>> handler;
+    private final BiFunction<T, AbortSignal, CompletableFuture<ToolResult>> handler;
 
     private SdkMcpTool(Builder<T> builder) {
         this.name = builder.name;
@@ -98,7 +117,7 @@ public final class SdkMcpTool<T> {
     }
 
     public Function<T, CompletableFuture<ToolResult>> handler() {
-        return handler;
+        return this::invoke;
     }
 
     /**
@@ -108,7 +127,19 @@ public final class SdkMcpTool<T> {
      * @return a future with the tool result
      */
     public CompletableFuture<ToolResult> invoke(T args) {
-        return handler.apply(args);
+        return handler.apply(args, new AbortSignal());
+    }
+
+    /**
+     * Invokes the tool handler with the given arguments and cancellation
+     * signal.
+     *
+     * @param args   the input arguments
+     * @param signal aborted if the CLI cancels the call
+     * @return a future with the tool result
+     */
+    public CompletableFuture<ToolResult> invoke(T args, AbortSignal signal) {
+        return handler.apply(args, signal);
     }
 
     /**
@@ -123,7 +154,7 @@ public final class SdkMcpTool<T> {
         private final String description;
         private Map<String, Object> inputSchema = Map.of(TYPE, OBJECT, PROPERTIES, Map.of());
         @Nullable
-        private Function<T, CompletableFuture<ToolResult>> handler;
+        private BiFunction<T, AbortSignal, CompletableFuture<ToolResult>> handler;
 
         private Builder(String name, String description) {
             this.name = name;
@@ -146,6 +177,17 @@ public final class SdkMcpTool<T> {
          * @param handler the function to execute
          */
         public Builder<T> handler(Function<T, CompletableFuture<ToolResult>> handler) {
+            this.handler = (args, signal) -> handler.apply(args);
+            return this;
+        }
+
+        /**
+         * Sets a handler function that also receives the call's cancellation
+         * signal.
+         *
+         * @param handler the function to execute
+         */
+        public Builder<T> handler(BiFunction<T, AbortSignal, CompletableFuture<ToolResult>> handler) {
             this.handler = handler;
             return this;
         }
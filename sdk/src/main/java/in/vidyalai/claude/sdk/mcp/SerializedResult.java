@@ -0,0 +1,96 @@
+package in.vidyalai.claude.sdk.mcp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * A fixed JSON-RPC result, serialized once and written as is.
+ *
+ * <p>
+ * Reads like the map it was built from, so callers of
+ * {@link SdkMcpServer#handleMessage} see no difference, but Jackson writes its
+ * cached UTF-8 JSON instead of serializing the map again. Null map values are
+ * left out, as the control protocol's own serialization does.
+ *
+ * <p>
+ * The map is a snapshot: values must not be changed after it is built.
+ */
+@JsonSerialize(using = SerializedResult.Serializer.class)
+final class SerializedResult extends AbstractMap<String, Object> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.configOverride(Map.class)
+                .setInclude(JsonInclude.Value.construct(
+                        JsonInclude.Include.NON_NULL,
+                        JsonInclude.Include.NON_NULL));
+    }
+
+    private final Map<String, Object> value;
+    private final SerializedString json;
+
+    /**
+     * Serializes a result.
+     *
+     * @param value the result
+     * @throws UncheckedIOException if the result cannot be serialized
+     */
+    SerializedResult(Map<String, Object> value) {
+        this.value = Map.copyOf(value);
+        try {
+            this.json = new SerializedString(MAPPER.writeValueAsString(this.value));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the serialized JSON.
+     *
+     * @return the JSON text
+     */
+    String json() {
+        return json.getValue();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return value.entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return value.get(key);
+    }
+
+    /**
+     * Writes the cached JSON.
+     */
+    static final class Serializer extends StdSerializer<SerializedResult> {
+
+        Serializer() {
+            super(SerializedResult.class);
+        }
+
+        @Override
+        public void serialize(SerializedResult result, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeRawValue(result.json);
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package in.vidyalai.claude.sdk.mcp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.Nullable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
+
+/**
+ * Calls a {@link Tool} method with the arguments of a tool call.
+ *
+ * <p>
+ * Everything that does not depend on the call is worked out once, when the
+ * server is created: the method is unreflected into a {@link MethodHandle}
+ * bound to its instance, and each parameter gets its argument name and a
+ * reader for its type. A call then only looks up its arguments and converts
+ * those that do not already have the parameter's type.
+ */
+final class ToolMethodInvoker {
+
+    private static final Logger logger = Logger.getLogger(ToolMethodInvoker.class.getName());
+
+    private final ObjectMapper mapper;
+    private final String displayName;
+    // (Object[]) -> Object, spreading the array over the method's parameters
+    private final MethodHandle handle;
+    private final Binding[] bindings;
+
+    /**
+     * What a parameter receives.
+     */
+    private enum Kind {
+        ARGUMENTS, SIGNAL, VALUE
+    }
+
+    /**
+     * How to fill one parameter: for {@link Kind#VALUE}, the argument name,
+     * the boxed parameter type and the reader converting other values to it.
+     */
+    private record Binding(Kind kind, @Nullable String name, @Nullable Class<?> type,
+            @Nullable ObjectReader reader) {
+
+        static final Binding ARGUMENTS = new Binding(Kind.ARGUMENTS, null, null, null);
+        static final Binding SIGNAL = new Binding(Kind.SIGNAL, null, null, null);
+
+    }
+
+    /**
+     * Binds a tool method.
+     *
+     * @param instance the object declaring the method
+     * @param method   the method, already made accessible
+     * @param mapper   converts argument values to parameter types
+     * @throws IllegalAccessException if the method cannot be unreflected
+     */
+    ToolMethodInvoker(Object instance, Method method, ObjectMapper mapper) throws IllegalAccessException {
+        this.mapper = mapper;
+        this.displayName = instance.getClass().getName() + "#" + method.getName();
+
+        MethodHandle target = MethodHandles.lookup().unreflect(method);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            target = target.bindTo(instance);
+        }
+        int arity = method.getParameterCount();
+        this.handle = target.asSpreader(Object[].class, arity)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        this.bindings = bind(method);
+    }
+
+    private Binding[] bind(Method method) {
+        Parameter[] parameters = method.getParameters();
+        Binding[] result = new Binding[parameters.length];
+        boolean takesArgumentMap = SdkMcpServer.takesArgumentMap(parameters);
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter param = parameters[i];
+            if (param.getType() == AbortSignal.class) {
+                result[i] = Binding.SIGNAL;
+            } else if (takesArgumentMap) {
+                // Special case: method(Map<String,Object>), optionally with the signal
+                result[i] = Binding.ARGUMENTS;
+            } else if (!param.isNamePresent()) {
+                logger.warning("Parameter names not available for method " + method.getName()
+                        + ". Compile with -parameters flag for enabling dynamic calling.");
+                // Fall back to method(Map<String,Object>)
+                return new Binding[] { Binding.ARGUMENTS };
+            } else {
+                Class<?> type = MethodType.methodType(param.getType()).wrap().returnType();
+                result[i] = new Binding(Kind.VALUE, param.getName(), type, mapper.readerFor(param.getType()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calls the method.
+     *
+     * @param args   the tool call arguments
+     * @param signal the tool call's cancellation signal
+     * @return what the method returned
+     * @throws Exception whatever the method or the argument conversion threw;
+     *                   errors and other throwables are wrapped in an
+     *                   {@link InvocationTargetException} with their message,
+     *                   as reflection did
+     */
+    @SuppressWarnings("null")
+    Object invoke(Map<String, Object> args, AbortSignal signal) throws Exception {
+        Object[] values = new Object[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            Binding binding = bindings[i];
+            values[i] = switch (binding.kind()) {
+                case ARGUMENTS -> args;
+                case SIGNAL -> signal;
+                case VALUE -> convert(args.get(binding.name()), binding);
+            };
+        }
+        try {
+            return (Object) handle.invokeExact(values);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("null")
+    private @Nullable Object convert(@Nullable Object rawValue, Binding binding) throws Exception {
+        if ((rawValue == null) || (binding.type().isInstance(rawValue))) {
+            return rawValue;
+        }
+        // Convert into correct Java type
+        try (TokenBuffer buffer = new TokenBuffer(mapper, false)) {
+            mapper.writeValue(buffer, rawValue);
+            return binding.reader().readValue(buffer.asParser());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+}
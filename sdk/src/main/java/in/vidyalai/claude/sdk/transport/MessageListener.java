@@ -0,0 +1,38 @@
+package in.vidyalai.claude.sdk.transport;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Receives messages pushed by a {@link Transport}.
+ *
+ * <p>
+ * Used with {@link Transport#startReading(MessageListener, java.util.concurrent.Executor)}.
+ * Callbacks are made from the transport's reader thread, one at a time and in
+ * the order the messages were read, so implementations should hand off any
+ * slow work rather than block.
+ */
+public interface MessageListener {
+
+    /**
+     * Called for every message read from the transport.
+     *
+     * <p>
+     * Blocking here applies backpressure to the transport, which stops reading
+     * until this method returns. An unchecked exception ends the stream; it is
+     * reported back through {@link #onComplete(Throwable)}.
+     *
+     * @param message the message
+     * @throws InterruptedException if interrupted while blocked, typically
+     *                              because the transport is closing
+     */
+    void onMessage(TransportMessage message) throws InterruptedException;
+
+    /**
+     * Called exactly once when the stream ends, after the last
+     * {@link #onMessage(TransportMessage)} call.
+     *
+     * @param error the error that ended the stream, or null for a normal end
+     */
+    void onComplete(@Nullable Throwable error);
+
+}
@@ -1,7 +1,10 @@
 package in.vidyalai.claude.sdk.transport;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
 
@@ -37,6 +40,67 @@ public interface Transport extends AutoCloseable {
      */
     void write(String data) throws CLIConnectionException;
 
+    /**
+     * Write UTF-8 encoded data to the transport.
+     *
+     * <p>
+     * The SDK serializes outbound messages straight to bytes and writes them
+     * through this method; the array may be reused once it returns. The
+     * default implementation decodes the bytes and calls
+     * {@link #write(String)}. Transports backed by a byte stream override this
+     * to skip the round trip.
+     *
+     * @param data   the buffer holding the data (typically JSON + newline)
+     * @param offset the offset of the data in the buffer
+     * @param length the number of bytes to write
+     * @throws CLIConnectionException if the write fails
+     */
+    default void write(byte[] data, int offset, int length) throws CLIConnectionException {
+        write(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write raw data to the transport without waiting for it to be sent.
+     *
+     * <p>
+     * The default implementation calls {@link #write(String)} and returns a
+     * completed future. Transports that batch writes on their own thread
+     * override this.
+     *
+     * @param data the data to write (typically JSON + newline)
+     * @return a future completed once the data has been written, or failed
+     *         with the write's exception
+     */
+    default CompletableFuture<Void> writeAsync(String data) {
+        try {
+            write(data);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Write UTF-8 encoded data to the transport without waiting for it to be
+     * sent.
+     *
+     * <p>
+     * The default implementation calls {@link #write(byte[], int, int)} and
+     * returns a completed future.
+     *
+     * @param data the data to write, not modified until the future completes
+     * @return a future completed once the data has been written, or failed
+     *         with the write's exception
+     */
+    default CompletableFuture<Void> writeAsync(byte[] data) {
+        try {
+            write(data, 0, data.length);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Returns an iterator over messages from the CLI's stdout.
      *
@@ -44,10 +108,87 @@ public interface Transport extends AutoCloseable {
      * Each message is a parsed JSON object. The iterator blocks until
      * a message is available or the stream ends.
      *
+     * <p>
+     * Pull-based access is kept for compatibility and custom transports; the
+     * SDK itself reads through {@link #startReading(MessageListener, Executor)}.
+     *
      * @return an iterator over messages
      */
     Iterator<Map<String, Object>> readMessages();
 
+    /**
+     * Returns an iterator over messages from the CLI's stdout, bound directly to
+     * their typed form.
+     *
+     * <p>
+     * Implementations that can deserialize straight from the wire should
+     * override this to skip the intermediate {@code Map}. The default
+     * implementation adapts {@link #readMessages()} and wraps every message as a
+     * {@link TransportMessage.RawMessage}.
+     *
+     * <p>
+     * Like {@link #readMessages()}, only one of the two read methods may be
+     * used per transport instance.
+     *
+     * @return an iterator over typed messages
+     */
+    default Iterator<TransportMessage> readTypedMessages() {
+        Iterator<Map<String, Object>> messages = readMessages();
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return messages.hasNext();
+            }
+
+            @Override
+            public TransportMessage next() {
+                return TransportMessage.raw(messages.next());
+            }
+
+        };
+    }
+
+    /**
+     * Starts pushing messages from the CLI's stdout to a listener.
+     *
+     * <p>
+     * This is the read path used by the SDK: delivering straight from the
+     * transport's reader thread avoids a second queue and thread hop between
+     * the transport and its consumer. The method returns immediately; messages
+     * and the final completion are delivered asynchronously.
+     *
+     * <p>
+     * The default implementation pumps {@link #readTypedMessages()} into the
+     * listener on a task submitted to {@code executor}. Transports that already
+     * run their own reader thread should override this and call the listener
+     * from that thread directly.
+     *
+     * <p>
+     * Like {@link #readMessages()}, only one read method may be used per
+     * transport instance.
+     *
+     * @param listener the listener to deliver messages to
+     * @param executor executor for the default pull-based implementation
+     */
+    default void startReading(MessageListener listener, Executor executor) {
+        executor.execute(() -> {
+            Throwable error = null;
+            try {
+                Iterator<TransportMessage> messages = readTypedMessages();
+                while (messages.hasNext()) {
+                    listener.onMessage(messages.next());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                listener.onComplete(error);
+            }
+        });
+    }
+
     /**
      * End the input stream (close stdin for process transports).
      *
@@ -64,10 +205,43 @@ public interface Transport extends AutoCloseable {
      */
     boolean isReady();
 
+    /**
+     * Returns the most recent stderr output of the CLI, for diagnostics.
+     *
+     * <p>
+     * The default implementation returns an empty string, for transports that
+     * do not capture stderr.
+     *
+     * @return the buffered stderr, possibly empty
+     */
+    default String recentStderr() {
+        return "";
+    }
+
     /**
      * Closes the transport and releases all resources.
      */
     @Override
     void close();
 
+    /**
+     * Closes the transport without waiting for it to shut down.
+     *
+     * <p>
+     * The default implementation calls {@link #close()} and returns a completed
+     * future. Transports whose shutdown can take a while, such as waiting for a
+     * process to exit, override this to release what they can right away and
+     * finish in the background.
+     *
+     * @return a future completed once the transport has shut down
+     */
+    default CompletableFuture<Void> closeAsync() {
+        try {
+            close();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
 }
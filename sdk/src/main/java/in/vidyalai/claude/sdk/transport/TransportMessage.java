@@ -0,0 +1,149 @@
+package in.vidyalai.claude.sdk.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jspecify.annotations.Nullable;
+
+import in.vidyalai.claude.sdk.types.control.request.SDKControlRequest;
+import in.vidyalai.claude.sdk.types.control.response.SDKControlResponse;
+import in.vidyalai.claude.sdk.types.message.Message;
+
+/**
+ * A message read from the transport, already bound to its typed form where
+ * possible.
+ *
+ * <p>
+ * Transports that can deserialize directly from the wire (see
+ * {@link Transport#readTypedMessages()}) produce {@link SdkMessage},
+ * {@link ControlRequestMessage} and {@link ControlResponseMessage}. Anything
+ * else - unknown types, or messages that could not be bound - is delivered as a
+ * {@link RawMessage} so that callers can fall back to map-based handling.
+ * Transports asked to pass messages through undecoded deliver
+ * {@link EncodedMessage}.
+ */
+public sealed interface TransportMessage permits TransportMessage.SdkMessage, TransportMessage.ControlRequestMessage,
+        TransportMessage.ControlResponseMessage, TransportMessage.RawMessage, TransportMessage.EncodedMessage {
+
+    /**
+     * Returns the value of the message's top-level {@code type} field.
+     *
+     * @return the message type, or null if the message had none
+     */
+    @Nullable
+    String type();
+
+    /**
+     * Wraps a raw message map.
+     *
+     * @param data the parsed JSON object
+     * @return a raw transport message
+     */
+    static TransportMessage raw(Map<String, Object> data) {
+        return new RawMessage(((data.get("type") instanceof String s) ? s : null), data);
+    }
+
+    /**
+     * A regular SDK message (user, assistant, system, result, stream_event).
+     *
+     * @param message the typed message
+     */
+    record SdkMessage(Message message) implements TransportMessage {
+
+        @Override
+        public String type() {
+            return message.type();
+        }
+
+    }
+
+    /**
+     * A control request sent by the CLI.
+     *
+     * @param request the typed control request
+     */
+    record ControlRequestMessage(SDKControlRequest request) implements TransportMessage {
+
+        @Override
+        public String type() {
+            return "control_request";
+        }
+
+    }
+
+    /**
+     * A control response sent by the CLI.
+     *
+     * @param response the typed control response
+     */
+    record ControlResponseMessage(SDKControlResponse response) implements TransportMessage {
+
+        @Override
+        public String type() {
+            return "control_response";
+        }
+
+    }
+
+    /**
+     * A message that was not bound to a typed form.
+     *
+     * @param type the top-level {@code type} field, if present
+     * @param data the parsed JSON object
+     */
+    record RawMessage(@Nullable String type, Map<String, Object> data) implements TransportMessage {
+    }
+
+    /**
+     * A message passed through undecoded: the JSON object exactly as the CLI
+     * wrote it, without the trailing newline.
+     *
+     * <p>
+     * The array is not copied; callers must not modify it.
+     *
+     * @param type the top-level {@code type} field, if present
+     * @param json the UTF-8 encoded JSON object
+     */
+    record EncodedMessage(@Nullable String type, byte[] json) implements TransportMessage {
+
+        /**
+         * Returns the JSON object as a read-only buffer, e.g. for a WebSocket
+         * binary or text frame.
+         *
+         * @return a read-only view of the bytes
+         */
+        public ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(json).asReadOnlyBuffer();
+        }
+
+        /**
+         * Decodes the JSON object as a string.
+         *
+         * @return the JSON text
+         */
+        public String asString() {
+            return new String(json, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return ((o instanceof EncodedMessage other) && Objects.equals(type, other.type)
+                    && Arrays.equals(json, other.json));
+        }
+
+        @Override
+        public int hashCode() {
+            return ((31 * Objects.hashCode(type)) + Arrays.hashCode(json));
+        }
+
+        @Override
+        public String toString() {
+            return "EncodedMessage[type=" + type + ", json=" + asString() + "]";
+        }
+
+    }
+
+}
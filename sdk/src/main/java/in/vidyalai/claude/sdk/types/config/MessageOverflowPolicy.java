@@ -0,0 +1,37 @@
+package in.vidyalai.claude.sdk.types.config;
+
+/**
+ * What to do when the SDK's message queue is full because the consumer is
+ * reading messages slower than the CLI produces them.
+ *
+ * <p>
+ * No policy ever drops messages silently.
+ */
+public enum MessageOverflowPolicy {
+
+    /**
+     * Block the reader until the consumer catches up. Backpressure propagates
+     * to the CLI through the stdout pipe. This is the default.
+     *
+     * <p>
+     * Control requests and responses are read by the same reader, so they are
+     * delayed while it is blocked.
+     */
+    BLOCK,
+
+    /**
+     * Keep reading and spill overflowing messages to a temporary file on disk.
+     * They are read back in order once the consumer catches up, so memory stays
+     * bounded without stalling the CLI.
+     */
+    SPILL,
+
+    /**
+     * Fail the message stream with a
+     * {@link in.vidyalai.claude.sdk.exceptions.MessageQueueOverflowException}.
+     * The consumer receives the messages queued before the overflow, then the
+     * exception.
+     */
+    FAIL
+
+}
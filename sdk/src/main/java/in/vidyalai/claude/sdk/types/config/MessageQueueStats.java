@@ -0,0 +1,32 @@
+package in.vidyalai.claude.sdk.types.config;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the backpressure counters for a message queue.
+ *
+ * @param blockedPuts     number of times the reader had to wait for space
+ *                        ({@link MessageOverflowPolicy#BLOCK})
+ * @param blockedNanos    total time the reader spent waiting for space, in
+ *                        nanoseconds
+ * @param spilledMessages number of messages written to disk
+ *                        ({@link MessageOverflowPolicy#SPILL})
+ * @param size            number of messages currently queued, in memory and
+ *                        on disk
+ */
+public record MessageQueueStats(
+        long blockedPuts,
+        long blockedNanos,
+        long spilledMessages,
+        int size) {
+
+    /**
+     * Returns the total time the reader spent waiting for space.
+     *
+     * @return the blocked time
+     */
+    public Duration blockedTime() {
+        return Duration.ofNanos(blockedNanos);
+    }
+
+}
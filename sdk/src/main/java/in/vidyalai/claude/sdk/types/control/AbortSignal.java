@@ -0,0 +1,103 @@
+package in.vidyalai.claude.sdk.types.control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Signals that the CLI no longer needs the result of a callback.
+ *
+ * <p>
+ * The SDK passes a signal to hook callbacks ({@code HookContext.signal()}),
+ * permission callbacks ({@code ToolPermissionContext.signal()}) and SDK MCP
+ * tool handlers. It is aborted when the CLI sends a
+ * {@code control_cancel_request} for the request, e.g. after the user
+ * interrupted the turn. Long-running work should poll {@link #isAborted()} or
+ * register a listener with {@link #onAbort(Runnable)} and stop early; its
+ * result is discarded either way.
+ *
+ * <p>
+ * When a request is cancelled the SDK also cancels the future returned by the
+ * callback and interrupts the thread that is still inside the callback, if
+ * any.
+ *
+ * <h2>Thread Safety</h2>
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class AbortSignal {
+
+    private static final Logger logger = Logger.getLogger(AbortSignal.class.getName());
+
+    // Guarded by this; null once aborted
+    private List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * Creates a signal that has not been aborted.
+     */
+    public AbortSignal() {
+    }
+
+    /**
+     * Returns whether the request was cancelled.
+     *
+     * @return true once aborted
+     */
+    public synchronized boolean isAborted() {
+        return (listeners == null);
+    }
+
+    /**
+     * Throws if the request was cancelled.
+     *
+     * @throws CancellationException if aborted
+     */
+    public void throwIfAborted() {
+        if (isAborted()) {
+            throw new CancellationException("Request was cancelled by the CLI");
+        }
+    }
+
+    /**
+     * Registers a listener to run when the signal is aborted. If it already
+     * was, the listener runs immediately on the calling thread.
+     *
+     * @param listener the listener
+     */
+    public void onAbort(Runnable listener) {
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        run(listener);
+    }
+
+    /**
+     * Aborts the signal and runs the registered listeners. Has no effect if
+     * already aborted.
+     */
+    public void abort() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (listeners == null) {
+                return;
+            }
+            toRun = listeners;
+            listeners = null;
+        }
+        toRun.forEach(AbortSignal::run);
+    }
+
+    private static void run(Runnable listener) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Abort listener failed", e);
+        }
+    }
+
+}
@@ -2,16 +2,18 @@ package in.vidyalai.claude.sdk.types.hook;
 
 import org.jspecify.annotations.Nullable;
 
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
+
 /**
  * Context information for hook callbacks.
  *
  * @param toolUseId optional tool use identifier
- * @param signal    reserved for future abort signal support (currently always
- *                  null)
+ * @param signal    aborted if the CLI cancels the hook request; null when the
+ *                  context was not created by the SDK
  */
 public record HookContext(
         @Nullable String toolUseId,
-        @Nullable Object signal) {
+        @Nullable AbortSignal signal) {
 
     /**
      * Creates a context with just a tool use ID.
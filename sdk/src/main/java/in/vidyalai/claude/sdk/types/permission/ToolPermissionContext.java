@@ -4,15 +4,17 @@ import java.util.List;
 
 import org.jspecify.annotations.Nullable;
 
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
+
 /**
  * Context information for tool permission callbacks.
  *
- * @param signal      reserved for future abort signal support (currently always
- *                    null)
+ * @param signal      aborted if the CLI cancels the permission request; null
+ *                    when the context was not created by the SDK
  * @param suggestions permission suggestions from the CLI
  */
 public record ToolPermissionContext(
-        @Nullable Object signal,
+        @Nullable AbortSignal signal,
         List<PermissionUpdate> suggestions) {
 
     /**
@@ -4,13 +4,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 
 import in.vidyalai.claude.sdk.types.config.AgentDefinition;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
 import in.vidyalai.claude.sdk.types.config.SandboxSettings;
 import in.vidyalai.claude.sdk.types.config.SdkBeta;
 import in.vidyalai.claude.sdk.types.hook.HookEvent;
@@ -37,6 +40,15 @@ class ClaudeAgentOptionsTest {
         assertThat(options.maxTurns()).isNull();
         assertThat(options.maxBudgetUsd()).isNull();
         assertThat(options.model()).isNull();
+        assertThat(options.processPool()).isNull();
+        assertThat(options.coalescingWrites()).isFalse();
+        assertThat(options.receiveTypes()).isNull();
+        assertThat(options.lazyContent()).isFalse();
+        assertThat(options.rawMessages()).isFalse();
+        assertThat(options.closeTimeout()).isNull();
+        assertThat(options.runtime()).isSameAs(SdkRuntime.shared());
+        assertThat(options.stderrBufferSize()).isNull();
+        assertThat(options.stderrCallbackRate()).isNull();
         assertThat(options.betas()).isEmpty();
         assertThat(options.cwd()).isNull();
         assertThat(options.cliPath()).isNull();
@@ -44,6 +56,7 @@ class ClaudeAgentOptionsTest {
         assertThat(options.extraArgs()).isEmpty();
         assertThat(options.includePartialMessages()).isFalse();
         assertThat(options.enableFileCheckpointing()).isFalse();
+        assertThat(options.messageOverflowPolicy()).isEqualTo(MessageOverflowPolicy.BLOCK);
     }
 
     @Test
@@ -225,6 +238,30 @@ class ClaudeAgentOptionsTest {
         assertThat(original.maxTurns()).isEqualTo(5); // Original unchanged
     }
 
+    @Test
+    void receiveTypes_copiedAndPreservedByToBuilder() {
+        Set<String> types = new HashSet<>(Set.of("assistant", "result"));
+        ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                .receiveTypes(types)
+                .build();
+        types.add("stream_event");
+
+        assertThat(options.receiveTypes()).containsExactlyInAnyOrder("assistant", "result");
+        assertThat(options.toBuilder().build().receiveTypes()).isEqualTo(options.receiveTypes());
+    }
+
+    @Test
+    void runtime_preservedByToBuilder() {
+        try (SdkRuntime runtime = SdkRuntime.create()) {
+            ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                    .runtime(runtime)
+                    .build();
+
+            assertThat(options.runtime()).isSameAs(runtime);
+            assertThat(options.toBuilder().build().runtime()).isSameAs(runtime);
+        }
+    }
+
     @Test
     void defaults() {
         ClaudeAgentOptions defaults = ClaudeAgentOptions.defaults();
@@ -251,4 +288,43 @@ class ClaudeAgentOptionsTest {
                 .isInstanceOf(UnsupportedOperationException.class);
     }
 
+    @Test
+    void fingerprint_equalForEqualValues() {
+        Map<String, String> env = new java.util.LinkedHashMap<>();
+        env.put("A", "1");
+        env.put("B", "2");
+        Map<String, String> reversed = new java.util.LinkedHashMap<>();
+        reversed.put("B", "2");
+        reversed.put("A", "1");
+
+        ClaudeAgentOptions first = ClaudeAgentOptions.builder()
+                .model("claude-sonnet-4-5")
+                .env(env)
+                .mcpServers(Map.of("fs", new McpStdioServerConfig("npx", List.of("server"), null)))
+                .build();
+        ClaudeAgentOptions second = ClaudeAgentOptions.builder()
+                .model("claude-sonnet-4-5")
+                .env(reversed)
+                .mcpServers(Map.of("fs", new McpStdioServerConfig("npx", List.of("server"), null)))
+                .maxMsgQSize(10)
+                .stderrCallback(line -> {
+                })
+                .build();
+
+        assertThat(first.fingerprint()).isEqualTo(second.fingerprint());
+        assertThat(first.fingerprint()).isEqualTo(first.toBuilder().build().fingerprint());
+    }
+
+    @Test
+    void fingerprint_differsForDifferentCommandLine() {
+        ClaudeAgentOptions base = ClaudeAgentOptions.builder()
+                .model("claude-sonnet-4-5")
+                .build();
+
+        assertThat(base.fingerprint()).isNotEqualTo(base.toBuilder().model("claude-opus-4-5").build().fingerprint());
+        assertThat(base.fingerprint()).isNotEqualTo(base.toBuilder().maxTurns(3).build().fingerprint());
+        assertThat(base.fingerprint()).isNotEqualTo(
+                base.withPermissionPromptToolName("stdio").fingerprint());
+    }
+
 }
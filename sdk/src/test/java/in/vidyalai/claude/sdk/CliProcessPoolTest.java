@@ -0,0 +1,85 @@
+package in.vidyalai.claude.sdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import in.vidyalai.claude.sdk.exceptions.CLINotFoundException;
+
+/**
+ * Tests for {@link CliProcessPool} configuration and failure handling.
+ */
+class CliProcessPoolTest {
+
+    private static final Path MISSING_CLI = Path.of("/nonexistent/path/to/claude");
+
+    @Test
+    void builder_rejectsInvalidSettings() {
+        assertThatThrownBy(() -> CliProcessPool.builder().size(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CliProcessPool.builder().idleTimeout(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CliProcessPool.builder().maxAge(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void options_carryPool() {
+        try (CliProcessPool pool = CliProcessPool.builder().build()) {
+            ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                    .processPool(pool)
+                    .build();
+
+            assertThat(options.processPool()).isSameAs(pool);
+            assertThat(options.toBuilder().build().processPool()).isSameAs(pool);
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void acquire_surfacesStartupFailure() {
+        try (CliProcessPool pool = CliProcessPool.builder().build()) {
+            ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                    .cliPath(MISSING_CLI)
+                    .build();
+
+            assertThatThrownBy(() -> pool.acquire(options))
+                    .isInstanceOf(CLINotFoundException.class);
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void warm_toleratesStartupFailure() throws Exception {
+        try (CliProcessPool pool = CliProcessPool.builder().size(2).build()) {
+            ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                    .cliPath(MISSING_CLI)
+                    .build();
+
+            pool.warm(options);
+            Thread.sleep(200);
+
+            assertThat(pool.idleCount(options)).isZero();
+            assertThat(pool.idleCount()).isZero();
+        }
+    }
+
+    @Test
+    void closedPool_rejectsUse() {
+        CliProcessPool pool = CliProcessPool.builder().build();
+        pool.close();
+        pool.close(); // Idempotent
+
+        ClaudeAgentOptions options = ClaudeAgentOptions.builder().build();
+        assertThatThrownBy(() -> pool.warm(options))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> pool.acquire(options))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+}
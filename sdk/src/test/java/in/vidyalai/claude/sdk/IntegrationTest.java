@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
@@ -113,6 +114,37 @@ class IntegrationTest {
 
     // ==================== Response Handling Tests ====================
 
+    @Test
+    void testStreamYieldsMessagesAndClosesTransport() {
+        MockQueryTransport mockTransport = new MockQueryTransport();
+        mockTransport.addAssistantMessage("4");
+        mockTransport.addResultMessage();
+        mockTransport.addEnd();
+
+        List<Message> messages;
+        try (Stream<Message> stream = ClaudeSDK.stream("What is 2+2?", ClaudeAgentOptions.defaults(), mockTransport)) {
+            messages = stream.toList();
+        }
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0)).isInstanceOf(AssistantMessage.class);
+        assertThat(messages.get(1)).isInstanceOf(ResultMessage.class);
+        assertThat(mockTransport.closed).isTrue();
+    }
+
+    @Test
+    void testStreamCloseStopsQuery() {
+        MockQueryTransport mockTransport = new MockQueryTransport();
+        mockTransport.addAssistantMessage("partial");
+
+        try (Stream<Message> stream = ClaudeSDK.stream("Long task", ClaudeAgentOptions.defaults(), mockTransport)) {
+            Message first = stream.iterator().next();
+            assertThat(first).isInstanceOf(AssistantMessage.class);
+        }
+
+        assertThat(mockTransport.closed).isTrue();
+    }
+
     @Test
     void testReceiveResponseIncludesResultMessage() {
         MockQueryTransport mockTransport = new MockQueryTransport();
@@ -538,6 +570,10 @@ class IntegrationTest {
             messagesToReturn.offer(message);
         }
 
+        void addEnd() {
+            messagesToReturn.offer(Map.of("type", "end"));
+        }
+
         void addStreamEvent(String eventType, Map<String, Object> data) {
             Map<String, Object> fullData = new HashMap<>(data);
             fullData.put("type", eventType);
@@ -0,0 +1,252 @@
+package in.vidyalai.claude.sdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import in.vidyalai.claude.sdk.exceptions.CLINotFoundException;
+import in.vidyalai.claude.sdk.internal.QueryHandler;
+import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.types.message.AssistantMessage;
+import in.vidyalai.claude.sdk.types.message.Message;
+import in.vidyalai.claude.sdk.types.message.ResultMessage;
+
+/**
+ * Tests for {@link ClaudeSDK#queryStream} and {@link ClaudeSDK#queryAsync}.
+ */
+class QueryPublisherTest {
+
+    @Test
+    @Timeout(5)
+    void deliversAllMessagesThenCompletes() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher(new ListTransport(3)).subscribe(subscriber);
+
+        assertThat(subscriber.done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error.get()).isNull();
+        assertThat(subscriber.received).hasSize(4);
+        assertThat(subscriber.received.get(0)).isInstanceOf(AssistantMessage.class);
+        assertThat(subscriber.received.get(3)).isInstanceOf(ResultMessage.class);
+    }
+
+    @Test
+    @Timeout(5)
+    void deliversOnlyRequestedMessages() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        publisher(new ListTransport(10)).subscribe(subscriber);
+
+        Thread.sleep(200);
+        assertThat(subscriber.received).hasSize(2);
+        assertThat(subscriber.done.getCount()).isEqualTo(1);
+
+        subscriber.subscription.get().request(Long.MAX_VALUE);
+        assertThat(subscriber.done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.received).hasSize(11);
+    }
+
+    @Test
+    @Timeout(5)
+    void completesWhenExactlyAllMessagesWereRequested() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(3);
+        publisher(new ListTransport(2)).subscribe(subscriber);
+
+        assertThat(subscriber.done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error.get()).isNull();
+        assertThat(subscriber.received).hasSize(3);
+    }
+
+    @Test
+    @Timeout(5)
+    void doesNotStartQueryWithoutDemand() throws Exception {
+        AtomicBoolean opened = new AtomicBoolean(false);
+        QueryPublisher publisher = new QueryPublisher(SdkRuntime.shared().executor(), () -> {
+            opened.set(true);
+            return open(new ListTransport(1));
+        });
+
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        Thread.sleep(100);
+
+        assertThat(opened.get()).isFalse();
+    }
+
+    @Test
+    @Timeout(5)
+    void cancelClosesQuery() throws Exception {
+        ListTransport transport = new ListTransport(10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        publisher(transport).subscribe(subscriber);
+
+        Thread.sleep(100);
+        subscriber.subscription.get().cancel();
+        Thread.sleep(100);
+
+        assertThat(transport.closed).isTrue();
+        assertThat(subscriber.received).hasSize(1);
+        assertThat(subscriber.done.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Timeout(5)
+    void nonPositiveRequestSignalsError() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher(new ListTransport(1)).subscribe(subscriber);
+
+        subscriber.subscription.get().request(0);
+
+        assertThat(subscriber.done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error.get()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Timeout(5)
+    void rejectsSecondSubscriber() throws Exception {
+        QueryPublisher publisher = publisher(new ListTransport(1));
+        publisher.subscribe(new RecordingSubscriber(0));
+
+        RecordingSubscriber second = new RecordingSubscriber(0);
+        publisher.subscribe(second);
+
+        assertThat(second.error.get()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @Timeout(10)
+    void queryAsync_failsWhenCliMissing() {
+        ClaudeAgentOptions options = ClaudeAgentOptions.builder()
+                .cliPath(Path.of("/nonexistent/path/to/claude"))
+                .build();
+
+        CompletableFuture<ResultMessage> future = ClaudeSDK.queryAsync("Hello", options);
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CLINotFoundException.class);
+    }
+
+    private static QueryPublisher publisher(ListTransport transport) {
+        return new QueryPublisher(SdkRuntime.shared().executor(), () -> open(transport));
+    }
+
+    private static ClaudeSDK.OpenQuery open(ListTransport transport) {
+        QueryHandler queryHandler = new QueryHandler(transport, false, null, null, Duration.ofSeconds(5));
+        queryHandler.start();
+        return new ClaudeSDK.OpenQuery(queryHandler, null);
+    }
+
+    /**
+     * Subscriber that records signals and requests a fixed amount up front.
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<Message> {
+
+        private final long initialRequest;
+        private final List<Message> received = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription.set(s);
+            if (initialRequest > 0) {
+                s.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Message item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+    }
+
+    /**
+     * Transport that returns a fixed number of assistant messages and a result.
+     */
+    private static final class ListTransport implements Transport {
+
+        private final List<Map<String, Object>> messages = new ArrayList<>();
+        private volatile boolean closed = false;
+
+        ListTransport(int assistantMessages) {
+            for (int i = 0; i < assistantMessages; i++) {
+                messages.add(Map.of(
+                        "type", "assistant",
+                        "message", Map.of(
+                                "role", "assistant",
+                                "model", "claude-sonnet-4-5",
+                                "content", List.of(Map.of("type", "text", "text", "message " + i)))));
+            }
+            messages.add(Map.of(
+                    "type", "result",
+                    "subtype", "success",
+                    "duration_ms", 10,
+                    "duration_api_ms", 8,
+                    "is_error", false,
+                    "num_turns", 1,
+                    "session_id", "test"));
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void write(String data) {
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> readMessages() {
+            return messages.iterator();
+        }
+
+        @Override
+        public void endInput() {
+        }
+
+        @Override
+        public boolean isReady() {
+            return (!closed);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+}
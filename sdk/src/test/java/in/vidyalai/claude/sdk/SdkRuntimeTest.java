@@ -0,0 +1,67 @@
+package in.vidyalai.claude.sdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SdkRuntime}.
+ */
+class SdkRuntimeTest {
+
+    @Test
+    void shared_isSingletonAndNotShutDownByClose() {
+        SdkRuntime shared = SdkRuntime.shared();
+
+        shared.close();
+
+        assertThat(SdkRuntime.shared()).isSameAs(shared);
+        assertThat(shared.executor().isShutdown()).isFalse();
+        assertThat(shared.scheduler().isShutdown()).isFalse();
+    }
+
+    @Test
+    void create_closeShutsDownItsExecutors() {
+        SdkRuntime runtime = SdkRuntime.create();
+
+        runtime.close();
+
+        assertThat(runtime.executor().isShutdown()).isTrue();
+        assertThat(runtime.scheduler().isShutdown()).isTrue();
+    }
+
+    @Test
+    void of_closeLeavesCallerExecutorsRunning() {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SdkRuntime runtime = SdkRuntime.of(executor, scheduler);
+
+            runtime.close();
+
+            assertThat(runtime.executor()).isSameAs(executor);
+            assertThat(runtime.scheduler()).isSameAs(scheduler);
+            assertThat(executor.isShutdown()).isFalse();
+            assertThat(scheduler.isShutdown()).isFalse();
+        } finally {
+            executor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void executor_runsTasksOnVirtualThreads() throws Exception {
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+
+        SdkRuntime.shared().executor().execute(() -> thread.complete(Thread.currentThread()));
+
+        assertThat(thread.get(5, TimeUnit.SECONDS).isVirtual()).isTrue();
+    }
+
+}
@@ -11,6 +11,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
@@ -19,10 +26,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
 import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
 import in.vidyalai.claude.sdk.types.message.AssistantMessage;
 import in.vidyalai.claude.sdk.types.message.Message;
 import in.vidyalai.claude.sdk.types.message.ResultMessage;
 import in.vidyalai.claude.sdk.types.permission.PermissionMode;
+import in.vidyalai.claude.sdk.types.permission.PermissionResult;
 import in.vidyalai.claude.sdk.types.permission.PermissionResultAllow;
 
 /**
@@ -395,8 +404,270 @@ class StreamingClientTest {
         client.close();
     }
 
+    // ==================== Async Control Tests ====================
+
+    @Test
+    void testAsyncControlRequests() throws Exception {
+        MockTransport mockTransport = createMockTransport();
+        mockTransport.setInterruptSupported(true);
+
+        var client = new ClaudeSDKClient(ClaudeAgentOptions.defaults(), mockTransport);
+        client.connect();
+
+        client.setModelAsync("claude-sonnet-4-5").get(2, TimeUnit.SECONDS);
+        client.setPermissionModeAsync(PermissionMode.ACCEPT_EDITS).get(2, TimeUnit.SECONDS);
+        client.interruptAsync().get(2, TimeUnit.SECONDS);
+
+        List<String> written = mockTransport.getWrittenData();
+        assertThat(written).anyMatch(s -> s.contains("set_model"));
+        assertThat(written).anyMatch(s -> s.contains("set_permission_mode"));
+        assertThat(written).anyMatch(s -> s.contains("interrupt"));
+
+        client.close();
+    }
+
+    @Test
+    void testInterruptAsyncReturnsBeforeResponse() {
+        MockTransport mockTransport = createMockTransport();
+
+        var client = new ClaudeSDKClient(ClaudeAgentOptions.defaults(), mockTransport);
+        client.connect();
+
+        // The mock never answers the interrupt
+        CompletableFuture<Void> future = client.interruptAsync();
+        assertThat(future.isDone()).isFalse();
+
+        // Closing fails the outstanding request
+        client.close();
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void testInterruptResponseOvertakesFullMessageQueue() throws Exception {
+        assertInterruptOvertakesBacklog(4, 6);
+    }
+
+    @Test
+    void testInterruptResponseOvertakesBacklogOfManyTimesTheQueue() throws Exception {
+        assertInterruptOvertakesBacklog(4, 25);
+    }
+
+    private static void assertInterruptOvertakesBacklog(int queueSize, int backlog) throws Exception {
+        var options = ClaudeAgentOptions.builder()
+                .maxMsgQSize(queueSize)
+                .build();
+        MockTransport mockTransport = createMockTransport();
+        mockTransport.setInterruptSupported(true);
+
+        try (var client = new ClaudeSDKClient(options, mockTransport)) {
+            client.connect();
+            // Nobody is consuming yet: the queue fills and the reader blocks
+            for (int i = 0; i < backlog; i++) {
+                mockTransport.addAssistantMessage("partial " + i);
+            }
+            Thread.sleep(200);
+
+            // The interrupt response arrives behind the backlog
+            client.interruptAsync().get(5, TimeUnit.SECONDS);
+
+            mockTransport.addResultMessage();
+            List<String> texts = new ArrayList<>();
+            for (Message msg : client.receiveResponse()) {
+                if (msg instanceof AssistantMessage assistant) {
+                    texts.add(assistant.content().toString());
+                }
+            }
+            assertThat(texts).hasSize(backlog);
+            assertThat(texts.get(0)).contains("partial 0");
+            assertThat(texts.get(backlog - 1)).contains("partial " + (backlog - 1));
+        }
+    }
+
+    @Test
+    void testCloseAsyncDoesNotWaitForTransportShutdown() throws Exception {
+        MockTransport mockTransport = createMockTransport();
+        mockTransport.deferShutdown();
+        var client = new ClaudeSDKClient(ClaudeAgentOptions.defaults(), mockTransport);
+        client.connect();
+
+        CompletableFuture<Void> closed = client.closeAsync();
+
+        // Everything but the transport's own shutdown is released right away
+        assertThat(mockTransport.isClosed()).isTrue();
+        assertThat(client.isConnected()).isFalse();
+        assertThat(closed.isDone()).isFalse();
+        assertThatThrownBy(client::receiveMessages).isInstanceOf(IllegalStateException.class);
+
+        mockTransport.completeShutdown();
+        closed.get(2, TimeUnit.SECONDS);
+        assertThat(client.closeAsync().isDone()).isTrue();
+    }
+
+    @SuppressWarnings("null")
+    @Test
+    void testPermissionResponseSentWhenCallbackCompletes() throws Exception {
+        CompletableFuture<PermissionResult> decision = new CompletableFuture<>();
+        CountDownLatch callbackInvoked = new CountDownLatch(1);
+        var options = ClaudeAgentOptions.builder()
+                .canUseTool((toolName, input, context) -> {
+                    callbackInvoked.countDown();
+                    return decision;
+                })
+                .build();
+        MockTransport mockTransport = createMockTransport();
+
+        var client = new ClaudeSDKClient(options, mockTransport);
+        client.connect();
+        mockTransport.addPermissionRequest("cli_req_1", "Bash");
+
+        assertThat(callbackInvoked.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        assertThat(mockTransport.getWrittenData()).noneMatch(s -> s.contains("cli_req_1"));
+
+        decision.complete(new PermissionResultAllow());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while ((mockTransport.getWrittenData().stream().noneMatch(s -> s.contains("cli_req_1")))
+                && (System.nanoTime() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertThat(mockTransport.getWrittenData())
+                .anyMatch(s -> s.contains("cli_req_1") && s.contains("\"behavior\":\"allow\""));
+
+        client.close();
+    }
+
+    @SuppressWarnings("null")
+    @Test
+    void testCancelledPermissionRequestIsAbortedAndNotAnswered() throws Exception {
+        CompletableFuture<PermissionResult> decision = new CompletableFuture<>();
+        CompletableFuture<AbortSignal> signal = new CompletableFuture<>();
+        var options = ClaudeAgentOptions.builder()
+                .canUseTool((toolName, input, context) -> {
+                    signal.complete(context.signal());
+                    return decision;
+                })
+                .build();
+        MockTransport mockTransport = createMockTransport();
+
+        var client = new ClaudeSDKClient(options, mockTransport);
+        client.connect();
+        mockTransport.addPermissionRequest("cli_req_2", "Bash");
+        AbortSignal received = signal.get(2, TimeUnit.SECONDS);
+        assertThat(received.isAborted()).isFalse();
+
+        mockTransport.addCancelRequest("cli_req_2");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while ((!decision.isCancelled()) && (System.nanoTime() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertThat(received.isAborted()).isTrue();
+        assertThat(decision.isCancelled()).isTrue();
+        Thread.sleep(100);
+        assertThat(mockTransport.getWrittenData()).noneMatch(s -> s.contains("cli_req_2"));
+
+        client.close();
+    }
+
+    @SuppressWarnings("null")
+    @Test
+    void testCancelRightBehindRequestIsNotLost() throws Exception {
+        AtomicBoolean callbackInvoked = new AtomicBoolean(false);
+        HoldingExecutor executor = new HoldingExecutor();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        var options = ClaudeAgentOptions.builder()
+                .runtime(SdkRuntime.of(executor, scheduler))
+                .canUseTool((toolName, input, context) -> {
+                    callbackInvoked.set(true);
+                    return CompletableFuture.completedFuture(new PermissionResultAllow());
+                })
+                .build();
+        MockTransport mockTransport = createMockTransport();
+
+        try (var client = new ClaudeSDKClient(options, mockTransport)) {
+            client.connect();
+            // The reader reads the cancel before the request is handled
+            executor.hold();
+            mockTransport.addPermissionRequest("cli_req_3", "Bash");
+            mockTransport.addCancelRequest("cli_req_3");
+            // Handling the request, then aborting it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while ((executor.heldTasks() < 2) && (System.nanoTime() < deadline)) {
+                Thread.sleep(10);
+            }
+            executor.release();
+
+            Thread.sleep(200);
+            assertThat(callbackInvoked.get()).isFalse();
+            assertThat(mockTransport.getWrittenData()).noneMatch(s -> s.contains("cli_req_3"));
+        } finally {
+            executor.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
     // ==================== Mock Transport Implementation ====================
 
+    /**
+     * Runs tasks on virtual threads, or holds them back while asked to.
+     */
+    static class HoldingExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate = Executors.newVirtualThreadPerTaskExecutor();
+        private final List<Runnable> held = new ArrayList<>();
+        private boolean holding;
+
+        synchronized void hold() {
+            holding = true;
+        }
+
+        synchronized int heldTasks() {
+            return held.size();
+        }
+
+        synchronized void release() {
+            holding = false;
+            held.forEach(delegate::execute);
+            held.clear();
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (holding) {
+                held.add(command);
+            } else {
+                delegate.execute(command);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+    }
+
     /**
      * Mock transport for testing ClaudeSDKClient.
      */
@@ -408,6 +679,8 @@ class StreamingClientTest {
         private boolean connected = false;
         private boolean closed = false;
         private boolean interruptSupported = false;
+        // Completed by close(), or later when deferred
+        private CompletableFuture<Void> shutdown = CompletableFuture.completedFuture(null);
         private final ObjectMapper objectMapper = new ObjectMapper();
         private final AtomicBoolean endSent = new AtomicBoolean(false);
 
@@ -459,6 +732,33 @@ class StreamingClientTest {
             messagesToReturn.offer(message);
         }
 
+        void addPermissionRequest(String requestId, String toolName) {
+            Map<String, Object> request = new HashMap<>();
+            request.put("subtype", "can_use_tool");
+            request.put("tool_name", toolName);
+            request.put("input", Map.of("command", "ls"));
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", "control_request");
+            message.put("request_id", requestId);
+            message.put("request", request);
+            messagesToReturn.offer(message);
+        }
+
+        void addCancelRequest(String requestId) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", "control_cancel_request");
+            message.put("request_id", requestId);
+            messagesToReturn.offer(message);
+        }
+
+        void deferShutdown() {
+            shutdown = new CompletableFuture<>();
+        }
+
+        void completeShutdown() {
+            shutdown.complete(null);
+        }
+
         void setInterruptSupported(boolean supported) {
             this.interruptSupported = supported;
         }
@@ -587,6 +887,12 @@ class StreamingClientTest {
             connected = false;
         }
 
+        @Override
+        public CompletableFuture<Void> closeAsync() {
+            close();
+            return shutdown;
+        }
+
     }
 
 }
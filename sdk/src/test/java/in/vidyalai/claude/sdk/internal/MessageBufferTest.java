@@ -0,0 +1,311 @@
+package in.vidyalai.claude.sdk.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import in.vidyalai.claude.sdk.exceptions.MessageQueueOverflowException;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
+import in.vidyalai.claude.sdk.types.config.MessageOverflowPolicy;
+import in.vidyalai.claude.sdk.types.config.MessageQueueStats;
+import in.vidyalai.claude.sdk.types.message.AssistantMessage;
+import in.vidyalai.claude.sdk.types.message.ResultMessage;
+import in.vidyalai.claude.sdk.types.message.TextBlock;
+import in.vidyalai.claude.sdk.types.message.ToolUseBlock;
+
+/**
+ * Tests for {@link MessageBuffer} overflow policies and lifecycle.
+ */
+class MessageBufferTest {
+
+    private static final MessageBuffer.SpillCodec<String> STRING_CODEC = new MessageBuffer.SpillCodec<>() {
+
+        @Override
+        public byte[] encode(String message) {
+            return message.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    };
+
+    @Test
+    @Timeout(5)
+    void block_waitsForConsumerAndCountsBlockedTime() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(1, MessageOverflowPolicy.BLOCK, null);
+        buffer.put("a");
+
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                buffer.put("b");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+        assertThat(producer.isAlive()).isTrue();
+
+        assertThat(buffer.take()).isEqualTo("a");
+        producer.join();
+        assertThat(buffer.take()).isEqualTo("b");
+
+        MessageQueueStats stats = buffer.stats();
+        assertThat(stats.blockedPuts()).isEqualTo(1);
+        assertThat(stats.blockedTime().toMillis()).isGreaterThanOrEqualTo(50);
+        assertThat(stats.spilledMessages()).isZero();
+    }
+
+    @Test
+    void spill_preservesOrderAcrossMemoryAndDisk() throws Exception {
+        try (MessageBuffer<String> buffer = new MessageBuffer<>(2, MessageOverflowPolicy.SPILL, STRING_CODEC)) {
+            for (int i = 0; i < 10; i++) {
+                buffer.put("m" + i);
+            }
+            assertThat(buffer.stats().spilledMessages()).isEqualTo(8);
+            assertThat(buffer.stats().size()).isEqualTo(10);
+
+            // Draining memory frees space, but new messages still queue behind the spill
+            assertThat(buffer.take()).isEqualTo("m0");
+            buffer.put("m10");
+            buffer.finish(null);
+
+            List<String> rest = new ArrayList<>();
+            String message;
+            while ((message = buffer.take()) != null) {
+                rest.add(message);
+            }
+            assertThat(rest).containsExactly("m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9", "m10");
+        }
+    }
+
+    @Test
+    void spill_roundTripsTransportMessages() throws Exception {
+        List<TransportMessage> messages = List.of(
+                new TransportMessage.SdkMessage(new AssistantMessage(
+                        List.of(new TextBlock("hi"), new ToolUseBlock("t1", "Read", Map.of("path", "/tmp"))),
+                        "claude-sonnet-4-5", null, null)),
+                new TransportMessage.SdkMessage(new ResultMessage(
+                        "success", 10, 8, false, 1, "s", 0.01, null, "done", null)),
+                TransportMessage.raw(Map.of("type", "custom", "value", 42)),
+                new TransportMessage.EncodedMessage("assistant",
+                        "{\"type\":\"assistant\", \"n\":1.50}".getBytes(StandardCharsets.UTF_8)));
+
+        try (MessageBuffer<TransportMessage> buffer = new MessageBuffer<>(
+                1, MessageOverflowPolicy.SPILL, TransportMessageCodec.INSTANCE)) {
+            for (TransportMessage message : messages) {
+                buffer.put(message);
+            }
+            buffer.finish(null);
+
+            for (TransportMessage expected : messages) {
+                assertThat(buffer.take()).isEqualTo(expected);
+            }
+            assertThat(buffer.take()).isNull();
+        }
+    }
+
+    @Test
+    void fail_throwsWhenFullAndKeepsQueuedMessages() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(2, MessageOverflowPolicy.FAIL, null);
+        buffer.put("a");
+        buffer.put("b");
+
+        assertThatThrownBy(() -> buffer.put("c"))
+                .isInstanceOf(MessageQueueOverflowException.class)
+                .hasMessageContaining("capacity 2");
+
+        assertThat(buffer.take()).isEqualTo("a");
+        assertThat(buffer.take()).isEqualTo("b");
+    }
+
+    @Test
+    void spill_requiresCodec() {
+        assertThatThrownBy(() -> new MessageBuffer<String>(1, MessageOverflowPolicy.SPILL, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Timeout(5)
+    void finish_wakesBlockedConsumerWithFailure() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(4, MessageOverflowPolicy.BLOCK, null);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> taken = new AtomicReference<>("unset");
+
+        Thread.ofVirtual().start(() -> {
+            try {
+                taken.set(buffer.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        Thread.sleep(50);
+
+        IllegalStateException error = new IllegalStateException("reader failed");
+        buffer.finish(error);
+
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(taken.get()).isNull();
+        assertThat(buffer.failure()).isSameAs(error);
+    }
+
+    @Test
+    @Timeout(5)
+    void close_releasesBlockedProducerAndDropsMessages() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(1, MessageOverflowPolicy.BLOCK, null);
+        buffer.put("a");
+
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                buffer.put("b");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+
+        buffer.close();
+        producer.join(2000);
+
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(buffer.take()).isNull();
+        assertThat(buffer.stats().size()).isZero();
+    }
+
+    @Test
+    @Timeout(5)
+    void headroom_keepsProducerFromBlockingWhileHeld() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(2, MessageOverflowPolicy.BLOCK, null);
+        buffer.put("a");
+        buffer.put("b");
+
+        CountDownLatch putAll = new CountDownLatch(6);
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                for (String message : List.of("c", "d", "e", "f", "g", "h")) {
+                    buffer.put(message);
+                    putAll.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        assertThat(putAll.getCount()).isEqualTo(6);
+
+        // Four times the capacity fits while the hold lasts
+        buffer.acquireHeadroom();
+        assertThat(putAll.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(buffer.stats().size()).isEqualTo(8);
+        assertThat(buffer.stats().blockedPuts()).isEqualTo(1);
+
+        buffer.releaseHeadroom();
+        // Above the capacity: the producer blocks until drained below it
+        Thread late = Thread.ofVirtual().start(() -> {
+            try {
+                buffer.put("i");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        assertThat(late.isAlive()).isTrue();
+        for (String expected : List.of("a", "b", "c", "d", "e", "f", "g")) {
+            assertThat(buffer.take()).isEqualTo(expected);
+        }
+        late.join(2000);
+        assertThat(late.isAlive()).isFalse();
+        assertThat(buffer.take()).isEqualTo("h");
+        assertThat(buffer.take()).isEqualTo("i");
+    }
+
+    @Test
+    void headroom_nests() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(1, MessageOverflowPolicy.BLOCK, null);
+        buffer.acquireHeadroom();
+        buffer.acquireHeadroom();
+        buffer.put("a");
+        buffer.put("b");
+
+        buffer.releaseHeadroom();
+        buffer.put("c");
+        assertThat(buffer.stats().size()).isEqualTo(3);
+        assertThat(buffer.stats().blockedPuts()).isZero();
+        buffer.releaseHeadroom();
+    }
+
+    @Test
+    @Timeout(5)
+    void headroom_spillsBeyondLimitWhileHoldsOverlap() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(2, MessageOverflowPolicy.BLOCK, STRING_CODEC);
+        buffer.acquireHeadroom();
+
+        // A flood while two holds overlap stays within four times the capacity in memory
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    buffer.put("m" + i);
+                    if (i == 10) {
+                        buffer.acquireHeadroom();
+                    } else if (i == 20) {
+                        buffer.releaseHeadroom();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.join();
+
+        MessageQueueStats stats = buffer.stats();
+        assertThat(stats.size()).isEqualTo(100);
+        assertThat(stats.blockedPuts()).isZero();
+        assertThat(stats.spilledMessages()).isEqualTo(92);
+
+        buffer.releaseHeadroom();
+        for (int i = 0; i < 100; i++) {
+            assertThat(buffer.take()).isEqualTo("m" + i);
+        }
+        buffer.close();
+    }
+
+    @Test
+    void headroom_failsBeyondLimitWithoutCodec() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(2, MessageOverflowPolicy.BLOCK, null);
+        buffer.acquireHeadroom();
+        buffer.acquireHeadroom();
+        for (int i = 0; i < 8; i++) {
+            buffer.put("m" + i);
+        }
+
+        assertThatThrownBy(() -> buffer.put("m8"))
+                .isInstanceOf(MessageQueueOverflowException.class)
+                .hasMessageContaining("capacity 8");
+        assertThat(buffer.stats().size()).isEqualTo(8);
+    }
+
+    @Test
+    void headroom_doesNotChangeFailPolicy() throws Exception {
+        MessageBuffer<String> buffer = new MessageBuffer<>(1, MessageOverflowPolicy.FAIL, null);
+        buffer.acquireHeadroom();
+        buffer.put("a");
+
+        assertThatThrownBy(() -> buffer.put("b"))
+                .isInstanceOf(MessageQueueOverflowException.class);
+        buffer.releaseHeadroom();
+    }
+
+}
@@ -0,0 +1,106 @@
+package in.vidyalai.claude.sdk.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.vidyalai.claude.sdk.transport.Transport;
+
+/**
+ * Tests for {@link MessageEncoder}.
+ */
+class MessageEncoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final MessageEncoder encoder = new MessageEncoder(MAPPER.writer());
+
+    @Test
+    void encode_matchesStringSerializationWithNewline() throws Exception {
+        Map<String, Object> message = Map.of(
+                "type", "user",
+                "message", Map.of("role", "user", "content", "héllo ✓"));
+
+        byte[] encoded = encoder.encode(message);
+
+        assertThat(new String(encoded, StandardCharsets.UTF_8))
+                .isEqualTo(MAPPER.writeValueAsString(message) + "\n");
+    }
+
+    @Test
+    void encode_returnsIndependentArrays() throws Exception {
+        byte[] first = encoder.encode(Map.of("n", 1));
+        byte[] second = encoder.encode(Map.of("n", 22));
+
+        assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("{\"n\":1}\n");
+        assertThat(new String(second, StandardCharsets.UTF_8)).isEqualTo("{\"n\":22}\n");
+    }
+
+    @Test
+    void write_passesEncodedLineToTransport() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+
+        encoder.write(transport, Map.of("type", "control_request"));
+        encoder.write(transport, Map.of("type", "user"));
+
+        assertThat(transport.written).containsExactly(
+                "{\"type\":\"control_request\"}\n",
+                "{\"type\":\"user\"}\n");
+    }
+
+    @Test
+    void write_handlesMessagesLargerThanPooledBuffers() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        String image = "A".repeat(MessageEncoder.MAX_POOLED_BYTES + 1);
+
+        encoder.write(transport, Map.of("data", image));
+        encoder.write(transport, Map.of("data", "small"));
+
+        assertThat(transport.written.get(0)).isEqualTo("{\"data\":\"" + image + "\"}\n");
+        assertThat(transport.written.get(1)).isEqualTo("{\"data\":\"small\"}\n");
+    }
+
+    /**
+     * Transport relying on the default byte-to-string write.
+     */
+    private static final class RecordingTransport implements Transport {
+
+        private final List<String> written = new ArrayList<>();
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void write(String data) {
+            written.add(data);
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> readMessages() {
+            return List.<Map<String, Object>>of().iterator();
+        }
+
+        @Override
+        public void endInput() {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
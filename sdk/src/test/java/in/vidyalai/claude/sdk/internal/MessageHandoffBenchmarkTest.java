@@ -0,0 +1,283 @@
+package in.vidyalai.claude.sdk.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.types.message.Message;
+
+/**
+ * Benchmarks for the reader-to-consumer message hand-off.
+ *
+ * <p>
+ * Compares the blocking hand-off used by {@link QueryHandler} with the previous
+ * 400ms polling loop (reproduced here as a baseline) on:
+ * <ul>
+ * <li>End-of-stream latency: time from the stream ending to {@code hasNext()}
+ * returning false</li>
+ * <li>Idle cost: CPU time burnt by many consumers waiting on silent
+ * streams</li>
+ * </ul>
+ */
+@Tag("benchmark")
+class MessageHandoffBenchmarkTest {
+
+    private static final Logger logger = Logger.getLogger(MessageHandoffBenchmarkTest.class.getName());
+
+    private static final int LATENCY_RUNS = 20;
+    private static final int IDLE_SESSIONS = 200;
+    private static final Duration IDLE_WINDOW = Duration.ofSeconds(2);
+
+    @Test
+    @Timeout(60)
+    void endOfStreamLatency() throws Exception {
+        long[] blocking = new long[LATENCY_RUNS];
+        long[] polling = new long[LATENCY_RUNS];
+
+        for (int i = 0; i < LATENCY_RUNS; i++) {
+            blocking[i] = measureEndOfStream(new QueryHandlerConsumer());
+            polling[i] = measureEndOfStream(new PollingConsumer());
+        }
+
+        report("End-of-stream latency (ms)", blocking, polling);
+        assertThat(percentile(blocking, 99)).isLessThan(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    @Timeout(60)
+    void idleConsumerCost() throws Exception {
+        long blockingCpu = measureIdleCpu(QueryHandlerConsumer::new);
+        long pollingCpu = measureIdleCpu(PollingConsumer::new);
+
+        logger.info(String.format("Idle CPU for %d sessions over %dms: blocking=%dms, polling=%dms",
+                IDLE_SESSIONS, IDLE_WINDOW.toMillis(),
+                TimeUnit.NANOSECONDS.toMillis(blockingCpu), TimeUnit.NANOSECONDS.toMillis(pollingCpu)));
+        // Waiting consumers park instead of waking up to poll
+        assertThat(blockingCpu).isLessThan(pollingCpu);
+    }
+
+    // ==================== Measurement ====================
+
+    private static long measureEndOfStream(Consumer consumer) throws Exception {
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicLong finishedAt = new AtomicLong();
+        Thread thread = Thread.ofVirtual().start(() -> {
+            waiting.countDown();
+            consumer.drain();
+            finishedAt.set(System.nanoTime());
+        });
+
+        waiting.await();
+        // Let the consumer settle into its wait
+        Thread.sleep(50);
+        long endedAt = System.nanoTime();
+        consumer.endStream();
+        thread.join();
+        consumer.close();
+        return finishedAt.get() - endedAt;
+    }
+
+    private static long measureIdleCpu(java.util.function.Supplier<Consumer> factory) throws Exception {
+        List<Consumer> consumers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < IDLE_SESSIONS; i++) {
+            Consumer consumer = factory.get();
+            consumers.add(consumer);
+            threads.add(Thread.ofVirtual().start(consumer::drain));
+        }
+
+        // Let start-up work finish before sampling
+        Thread.sleep(200);
+        long before = processCpuTime();
+        Thread.sleep(IDLE_WINDOW.toMillis());
+        long cpu = processCpuTime() - before;
+
+        for (Consumer consumer : consumers) {
+            consumer.endStream();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Consumer consumer : consumers) {
+            consumer.close();
+        }
+        return cpu;
+    }
+
+    private static long processCpuTime() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static void report(String title, long[] blocking, long[] polling) {
+        logger.info(String.format("%s: blocking p50=%.2f p99=%.2f, polling p50=%.2f p99=%.2f", title,
+                percentile(blocking, 50) / 1e6, percentile(blocking, 99) / 1e6,
+                percentile(polling, 50) / 1e6, percentile(polling, 99) / 1e6));
+    }
+
+    private static long percentile(long[] samples, int p) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil((p / 100.0) * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    // ==================== Consumers ====================
+
+    private interface Consumer {
+
+        void drain();
+
+        void endStream();
+
+        void close();
+
+    }
+
+    /**
+     * Consumes a {@link QueryHandler} fed by a transport whose stream ends on
+     * demand.
+     */
+    private static final class QueryHandlerConsumer implements Consumer {
+
+        private final EndableTransport transport = new EndableTransport();
+        private final QueryHandler handler;
+
+        QueryHandlerConsumer() {
+            handler = new QueryHandler(transport, false, null, null, Duration.ofSeconds(5));
+            handler.start();
+        }
+
+        @Override
+        public void drain() {
+            Iterator<Message> messages = handler.receiveMessages();
+            while (messages.hasNext()) {
+                messages.next();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            transport.end();
+        }
+
+        @Override
+        public void close() {
+            handler.close();
+        }
+
+    }
+
+    /**
+     * The previous hand-off: poll the queue every 400ms and re-check a done flag.
+     */
+    private static final class PollingConsumer implements Consumer {
+
+        private final BlockingQueue<Map<String, Object>> queue = new LinkedBlockingQueue<>();
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        @Override
+        public void drain() {
+            try {
+                while (!(done.get() && queue.isEmpty())) {
+                    queue.poll(400, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            done.set(true);
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+
+    }
+
+    /**
+     * Transport whose message stream stays silent until {@link #end()} is called.
+     */
+    private static final class EndableTransport implements Transport {
+
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        void end() {
+            ended.countDown();
+        }
+
+        @Override
+        public void connect() {
+            // No-op
+        }
+
+        @Override
+        public void write(String data) {
+            // No-op
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> readMessages() {
+            return new Iterator<>() {
+
+                @Override
+                public boolean hasNext() {
+                    try {
+                        ended.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return false;
+                }
+
+                @Override
+                public Map<String, Object> next() {
+                    throw new NoSuchElementException();
+                }
+
+            };
+        }
+
+        @Override
+        public void endInput() {
+            // No-op
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            end();
+        }
+
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -22,7 +23,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
 import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
+import in.vidyalai.claude.sdk.transport.MessageListener;
 import in.vidyalai.claude.sdk.transport.Transport;
+import in.vidyalai.claude.sdk.transport.TransportMessage;
 import in.vidyalai.claude.sdk.types.control.response.ControlResponse;
 import in.vidyalai.claude.sdk.types.control.response.SDKControlResponse;
 import in.vidyalai.claude.sdk.types.message.Message;
@@ -423,6 +426,57 @@ class QueryHandlerThreadSafetyTest {
         handler.close();
     }
 
+    @Test
+    @Timeout(10)
+    void testPushTransportDeliversFromItsOwnReaderThread() throws Exception {
+        // Given: A transport that pushes messages from its own thread
+        MockPushTransport transport = new MockPushTransport(List.of(
+                Map.of("type", "assistant", "message", Map.of(
+                        "model", "claude-sonnet-4-5",
+                        "content", List.of(Map.of("type", "text", "text", "hi")))),
+                Map.of("type", "result", "subtype", "success", "duration_ms", 1, "duration_api_ms", 1,
+                        "is_error", false, "num_turns", 1, "session_id", "s")));
+        transportsToClose.add(transport);
+        QueryHandler handler = new QueryHandler(transport, false, null, null, Duration.ofSeconds(60));
+        handlersToClose.add(handler);
+
+        // When: Started and drained
+        handler.start();
+        List<String> types = new ArrayList<>();
+        Iterator<Message> messages = handler.receiveMessages();
+        while (messages.hasNext()) {
+            types.add(messages.next().type());
+        }
+
+        // Then: Messages arrive in order and the reader executor was never used
+        assertThat(types).containsExactly("assistant", "result");
+        assertThat(transport.readerThreadName()).isEqualTo("MockPush-Reader");
+    }
+
+    @Test
+    @Timeout(10)
+    void testMessageOfTypeEndDoesNotEndStream() throws Exception {
+        // Given: A message whose type happens to be "end"
+        MockPushTransport transport = new MockPushTransport(List.of(
+                Map.of("type", "end", "n", 1),
+                Map.of("type", "result", "subtype", "success", "duration_ms", 1, "duration_api_ms", 1,
+                        "is_error", false, "num_turns", 1, "session_id", "s")));
+        transportsToClose.add(transport);
+        QueryHandler handler = new QueryHandler(transport, false, null, null, Duration.ofSeconds(60));
+        handlersToClose.add(handler);
+
+        // When: Started and drained
+        handler.start();
+        List<String> types = new ArrayList<>();
+        Iterator<TransportMessage.EncodedMessage> messages = handler.receiveRawMessages();
+        while (messages.hasNext()) {
+            types.add(messages.next().type());
+        }
+
+        // Then: It is delivered like any other message; only the end of the stream ends iteration
+        assertThat(types).containsExactly("end", "result");
+    }
+
     // Helper methods
 
     private MockTransport createMockTransport() {
@@ -669,4 +723,69 @@ class QueryHandlerThreadSafetyTest {
 
     }
 
+    /**
+     * Mock transport that pushes a fixed list of messages from its own reader
+     * thread and does not support pull-based reads.
+     */
+    static class MockPushTransport implements Transport {
+
+        private final List<Map<String, Object>> messages;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicReference<String> readerThreadName = new AtomicReference<>();
+
+        MockPushTransport(List<Map<String, Object>> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public void connect() {
+            // No-op
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> readMessages() {
+            throw new UnsupportedOperationException("push only");
+        }
+
+        @Override
+        public void startReading(MessageListener listener, Executor executor) {
+            Thread.ofVirtual().name("MockPush-Reader").start(() -> {
+                readerThreadName.set(Thread.currentThread().getName());
+                try {
+                    for (Map<String, Object> message : messages) {
+                        listener.onMessage(TransportMessage.raw(message));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                listener.onComplete(null);
+            });
+        }
+
+        @Override
+        public void write(String data) {
+            // No-op
+        }
+
+        @Override
+        public void endInput() {
+            // No-op
+        }
+
+        @Override
+        public boolean isReady() {
+            return !closed.get();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+
+        public String readerThreadName() {
+            return readerThreadName.get();
+        }
+
+    }
+
 }
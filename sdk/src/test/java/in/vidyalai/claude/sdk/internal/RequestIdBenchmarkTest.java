@@ -0,0 +1,85 @@
+package in.vidyalai.claude.sdk.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Benchmark for {@link RequestIdGenerator}.
+ *
+ * <p>
+ * Compares the generator with the previous scheme, a counter followed by four
+ * {@link SecureRandom} bytes formatted with {@code String.format("%02x")}
+ * (reproduced here as a baseline).
+ */
+@Tag("benchmark")
+class RequestIdBenchmarkTest {
+
+    private static final Logger logger = Logger.getLogger(RequestIdBenchmarkTest.class.getName());
+
+    private static final int WARMUP_IDS = 200_000;
+    private static final int MEASURED_IDS = 1_000_000;
+
+    @Test
+    @Timeout(120)
+    void generationCost() {
+        RequestIdGenerator generator = new RequestIdGenerator();
+        SecureRandomIds baseline = new SecureRandomIds();
+
+        measure(generator::next, WARMUP_IDS);
+        measure(baseline::next, WARMUP_IDS);
+        double generatorNs = measure(generator::next, MEASURED_IDS);
+        double baselineNs = measure(baseline::next, MEASURED_IDS);
+
+        logger.info(String.format("Request ID generation (ns/op): generator=%.1f, securerandom+format=%.1f",
+                generatorNs, baselineNs));
+        Set<String> sample = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            sample.add(generator.next());
+        }
+        assertThat(sample).hasSize(1000);
+    }
+
+    // ==================== Measurement ====================
+
+    private static double measure(Supplier<String> ids, int count) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += ids.get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Keep the results live
+        assertThat(sink).isGreaterThan(0);
+        return ((double) elapsed / count);
+    }
+
+    /**
+     * The previous scheme: counter plus per-call SecureRandom hex suffix.
+     */
+    private static final class SecureRandomIds {
+
+        private final SecureRandom random = new SecureRandom();
+        private int counter = 0;
+
+        String next() {
+            byte[] bytes = new byte[4];
+            random.nextBytes(bytes);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return "req_" + (++counter) + "_" + sb;
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package in.vidyalai.claude.sdk.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests for {@link RequestIdGenerator}.
+ */
+class RequestIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void idsHaveExpectedFormat() {
+        RequestIdGenerator generator = new RequestIdGenerator(0xCAFE);
+
+        assertThat(generator.next()).isEqualTo("req_1_0000cafe");
+        assertThat(generator.next()).isEqualTo("req_2_0000cafe");
+        assertThat(new RequestIdGenerator().next()).matches("req_1_[0-9a-f]{8}");
+    }
+
+    @Test
+    @Timeout(60)
+    void idsAreUniqueAcrossThreads() throws Exception {
+        RequestIdGenerator generator = new RequestIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    ids.add(generator.next());
+                }
+            }));
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+    }
+
+}
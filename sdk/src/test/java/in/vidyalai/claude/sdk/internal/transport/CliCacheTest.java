@@ -0,0 +1,157 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests for {@link CliCache}.
+ */
+class CliCacheTest {
+
+    private Path cli;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CliCache.invalidate();
+        cli = Files.createTempFile("claude", ".sh");
+        Files.writeString(cli, "v1");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        CliCache.invalidate();
+        Files.deleteIfExists(cli);
+    }
+
+    @Test
+    void version_checksOncePerBinary() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+
+        assertThat(CliCache.version(cli.toString(), path -> "2.1." + checks.incrementAndGet())).isEqualTo("2.1.1");
+        assertThat(CliCache.version(cli.toString(), path -> "2.1." + checks.incrementAndGet())).isEqualTo("2.1.1");
+
+        // Replacing the binary (different size) invalidates the entry
+        Files.writeString(cli, "version two");
+        assertThat(CliCache.version(cli.toString(), path -> "2.1." + checks.incrementAndGet())).isEqualTo("2.1.2");
+        assertThat(checks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void version_doesNotCacheFailedChecks() {
+        AtomicInteger checks = new AtomicInteger();
+
+        assertThat(CliCache.version(cli.toString(), path -> {
+            checks.incrementAndGet();
+            return null;
+        })).isNull();
+        assertThat(CliCache.version(cli.toString(), path -> "2.0." + checks.incrementAndGet())).isEqualTo("2.0.2");
+    }
+
+    @Test
+    @Timeout(5)
+    void version_doesNotHoldLookupsWhileChecking() throws Exception {
+        CountDownLatch checking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> CliCache.version(cli.toString(), path -> {
+            checking.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "2.1.1";
+        }));
+        checking.await();
+
+        // A lookup for the same binary does not wait for the slow check
+        assertThat(CliCache.version(cli.toString(), path -> "2.1.2")).isEqualTo("2.1.2");
+
+        // The first result to be cached wins
+        release.countDown();
+        assertThat(slow.get()).isEqualTo("2.1.2");
+        assertThat(CliCache.version(cli.toString(), path -> "2.1.3")).isEqualTo("2.1.2");
+    }
+
+    @Test
+    void version_skipsCacheForMissingFile() {
+        AtomicInteger checks = new AtomicInteger();
+        String missing = "/nonexistent/path/to/claude";
+
+        CliCache.version(missing, path -> "1." + checks.incrementAndGet());
+        CliCache.version(missing, path -> "1." + checks.incrementAndGet());
+
+        assertThat(checks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void discover_revalidatesCachedPath() throws Exception {
+        AtomicInteger searches = new AtomicInteger();
+
+        assertThat(CliCache.discover(() -> {
+            searches.incrementAndGet();
+            return cli.toString();
+        })).isEqualTo(cli.toString());
+        assertThat(CliCache.discover(() -> {
+            searches.incrementAndGet();
+            return "other";
+        })).isEqualTo(cli.toString());
+        assertThat(searches.get()).isEqualTo(1);
+
+        // A removed binary triggers a new search
+        Files.delete(cli);
+        assertThat(CliCache.discover(() -> {
+            searches.incrementAndGet();
+            return "other";
+        })).isEqualTo("other");
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidate_clearsEntriesForPath() {
+        AtomicInteger checks = new AtomicInteger();
+
+        CliCache.version(cli.toString(), path -> "2.0." + checks.incrementAndGet());
+        CliCache.invalidate(cli);
+        CliCache.version(cli.toString(), path -> "2.0." + checks.incrementAndGet());
+
+        assertThat(checks.get()).isEqualTo(2);
+    }
+
+    @Test
+    void launchSpec_buildsOncePerFingerprint() {
+        AtomicInteger builds = new AtomicInteger();
+
+        CliCache.LaunchSpec first = CliCache.launchSpec("fp", () -> {
+            builds.incrementAndGet();
+            return new CliCache.LaunchSpec(List.of("--model", "m"), Map.of("K", "V"));
+        });
+        CliCache.LaunchSpec second = CliCache.launchSpec("fp", () -> {
+            builds.incrementAndGet();
+            return new CliCache.LaunchSpec(List.of(), Map.of());
+        });
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.length()).isEqualTo("--model m".length());
+        assertThat(builds.get()).isEqualTo(1);
+
+        CliCache.invalidate();
+        CliCache.launchSpec("fp", () -> {
+            builds.incrementAndGet();
+            return new CliCache.LaunchSpec(List.of(), Map.of());
+        });
+        assertThat(builds.get()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,179 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import in.vidyalai.claude.sdk.SdkRuntime;
+import in.vidyalai.claude.sdk.exceptions.CLIConnectionException;
+
+/**
+ * Tests for {@link CoalescingWriter}.
+ */
+class CoalescingWriterTest {
+
+    private static final Executor EXECUTOR = SdkRuntime.shared().executor();
+
+    @Test
+    @Timeout(5)
+    void coalescesWritesQueuedDuringFlush() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> {
+            batches.add(strings(batch));
+            firstBatchStarted.countDown();
+            await(releaseFirstBatch);
+        }, () -> {
+        });
+        writer.start();
+
+        CompletableFuture<Void> first = writer.submit(bytes("a"));
+        assertThat(firstBatchStarted.await(2, TimeUnit.SECONDS)).isTrue();
+
+        List<CompletableFuture<Void>> rest = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rest.add(writer.submit(bytes("m" + i)));
+        }
+        releaseFirstBatch.countDown();
+
+        first.get(2, TimeUnit.SECONDS);
+        CompletableFuture.allOf(rest.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        writer.close();
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).containsExactly("a");
+        assertThat(batches.get(1)).containsExactly("m0", "m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9");
+    }
+
+    @Test
+    @Timeout(5)
+    void endsInputAfterEarlierWrites() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> events.addAll(strings(batch)),
+                () -> events.add("<end>"));
+        writer.start();
+
+        writer.submit(bytes("a"));
+        writer.submit(bytes("b"));
+        writer.submitEnd().get(2, TimeUnit.SECONDS);
+        writer.close();
+
+        assertThat(events).containsExactly("a", "b", "<end>");
+    }
+
+    @Test
+    @Timeout(5)
+    void failsBatchWhenWriteFails() {
+        CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> {
+            throw new CLIConnectionException("broken pipe");
+        }, () -> {
+        });
+        writer.start();
+
+        CompletableFuture<Void> future = writer.submit(bytes("a"));
+        writer.close();
+
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CLIConnectionException.class);
+    }
+
+    @Test
+    void rejectsWritesBeforeStart() {
+        CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> {
+        }, () -> {
+        });
+
+        assertThat(writer.submit(bytes("a"))).isCompletedExceptionally();
+    }
+
+    @Test
+    @Timeout(5)
+    void rejectsWritesAfterClose() {
+        CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> {
+        }, () -> {
+        });
+        writer.start();
+        writer.close();
+
+        assertThatThrownBy(() -> writer.submit(bytes("a")).get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CLIConnectionException.class);
+    }
+
+    @Test
+    @Timeout(10)
+    void writesRacingCloseFailOnlyIfNotWritten() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            Set<String> written = ConcurrentHashMap.newKeySet();
+            CoalescingWriter writer = new CoalescingWriter(EXECUTOR, batch -> written.addAll(strings(batch)), () -> {
+            });
+            writer.start();
+
+            Map<String, CompletableFuture<Void>> futures = new ConcurrentHashMap<>();
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int producer = t;
+                producers.add(Thread.ofVirtual().start(() -> {
+                    await(go);
+                    for (int i = 0; i < 50; i++) {
+                        String data = producer + ":" + i;
+                        futures.put(data, writer.submit(bytes(data)));
+                    }
+                }));
+            }
+            go.countDown();
+            writer.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            for (Map.Entry<String, CompletableFuture<Void>> entry : futures.entrySet()) {
+                CompletableFuture<Void> future = entry.getValue();
+                try {
+                    future.get(2, TimeUnit.SECONDS);
+                    assertThat(written).contains(entry.getKey());
+                } catch (ExecutionException e) {
+                    assertThat(written).doesNotContain(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer bytes(String data) {
+        return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> strings(List<ByteBuffer> batch) {
+        return batch.stream()
+                .map(data -> StandardCharsets.UTF_8.decode(data.duplicate()).toString())
+                .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
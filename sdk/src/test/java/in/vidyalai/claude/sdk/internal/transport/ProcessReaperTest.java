@@ -0,0 +1,70 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Tests for {@link ProcessReaper}.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ProcessReaperTest {
+
+    private static final ProcessReaper REAPER = new ProcessReaper(Executors.newSingleThreadScheduledExecutor());
+
+    @Test
+    void reap_completesWhenProcessExitsOnItsOwn() throws Exception {
+        Process process = start("sleep 0.2");
+
+        CompletableFuture<Void> reaped = REAPER.reap(process, Duration.ofSeconds(30));
+
+        reaped.get(5, TimeUnit.SECONDS);
+        assertThat(process.isAlive()).isFalse();
+        assertThat(process.exitValue()).isZero();
+    }
+
+    @Test
+    void reap_terminatesProcessAfterHalfTheDeadline() throws Exception {
+        Process process = start("sleep 30");
+        long start = System.nanoTime();
+
+        REAPER.reap(process, Duration.ofMillis(400)).get(5, TimeUnit.SECONDS);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(process.isAlive()).isFalse();
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(150).isLessThan(2000);
+    }
+
+    @Test
+    void reap_killsProcessIgnoringTerminate() throws Exception {
+        Process process = start("trap '' TERM; while true; do sleep 0.05; done");
+        // Let the shell install the trap
+        Thread.sleep(200);
+
+        REAPER.reap(process, Duration.ofMillis(400)).get(5, TimeUnit.SECONDS);
+
+        assertThat(process.isAlive()).isFalse();
+    }
+
+    @Test
+    void reap_completesImmediatelyForExitedProcess() throws Exception {
+        Process process = start("true");
+        process.waitFor();
+
+        assertThat(REAPER.reap(process, Duration.ofSeconds(30)).isDone()).isTrue();
+    }
+
+    private static Process start(String script) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", script).start();
+        process.getOutputStream().close();
+        return process;
+    }
+
+}
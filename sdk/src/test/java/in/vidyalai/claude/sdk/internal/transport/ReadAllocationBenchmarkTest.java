@@ -0,0 +1,169 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Allocation benchmark for the stdout read path.
+ *
+ * <p>
+ * Reports bytes allocated per MB of CLI output by {@link JsonStreamFramer}, in
+ * token and raw mode, against the line-based reader it replaced
+ * ({@code readLine()}, {@code trim()}, a {@code StringBuilder} and
+ * {@code toString()} per message), reproduced here as a baseline. The output
+ * mixes small assistant messages with a 500KB tool result.
+ */
+@Tag("benchmark")
+class ReadAllocationBenchmarkTest {
+
+    private static final Logger logger = Logger.getLogger(ReadAllocationBenchmarkTest.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int ROUNDS = 5;
+    private static final double MB = 1024 * 1024;
+
+    @Test
+    @Timeout(60)
+    void bytesAllocatedPerMegabyteOfOutput() throws Exception {
+        byte[] output = cliOutput();
+
+        // Warm up
+        for (int i = 0; i < ROUNDS; i++) {
+            readLines(output);
+            readFrames(output, false);
+            readFrames(output, true);
+        }
+
+        double lines = perMegabyte(output, () -> readLines(output));
+        double tokens = perMegabyte(output, () -> readFrames(output, false));
+        double raw = perMegabyte(output, () -> readFrames(output, true));
+
+        logger.info(String.format("Bytes allocated per MB of CLI output (%.1f MB): lines=%.0f, tokens=%.0f, raw=%.0f",
+                output.length / MB, lines, tokens, raw));
+        assertThat(tokens).isLessThan(2 * lines);
+        assertThat(raw).isLessThan(2 * lines);
+    }
+
+    @Test
+    void framerReusesPooledReadChunk() throws Exception {
+        byte[] output = "{\"type\":\"result\"}\n".getBytes(StandardCharsets.UTF_8);
+        readFrames(output, false);
+
+        long before = allocatedBytes();
+        readFrames(output, false);
+        long allocated = allocatedBytes() - before;
+
+        logger.info("Bytes allocated by a framer for one small message: " + allocated);
+        assertThat(allocated).isLessThan(JsonStreamFramer.READ_CHUNK_SIZE);
+    }
+
+    // ==================== Readers ====================
+
+    private static int readFrames(byte[] output, boolean raw) throws Exception {
+        int count = 0;
+        try (JsonStreamFramer framer = new JsonStreamFramer(new ByteArrayInputStream(output), MAPPER.getFactory(),
+                Integer.MAX_VALUE, null, SubprocessCLITransport.rawPredicate(raw, false))) {
+            while (framer.nextFrame() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The previous line-based reader, up to the point where a message was
+     * handed to the JSON parser.
+     */
+    private static int readLines(byte[] output) throws Exception {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(output), StandardCharsets.UTF_8))) {
+            StringBuilder jsonBuffer = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                jsonBuffer.append(trimmed);
+                String json = jsonBuffer.toString();
+                jsonBuffer.setLength(0);
+                if (!json.isEmpty()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // ==================== Measurement ====================
+
+    @FunctionalInterface
+    private interface Reader {
+
+        int read() throws Exception;
+
+    }
+
+    /**
+     * Returns the fewest bytes allocated by a single read of the output, per MB.
+     */
+    private static double perMegabyte(byte[] output, Reader reader) throws Exception {
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long before = allocatedBytes();
+            int messages = reader.read();
+            least = Math.min(least, allocatedBytes() - before);
+            assertThat(messages).isGreaterThan(0);
+        }
+        return least / (output.length / MB);
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static byte[] cliOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int turn = 0; turn < 4; turn++) {
+            for (int i = 0; i < 200; i++) {
+                write(out, Map.of("type", "assistant", "message", Map.of(
+                        "role", "assistant",
+                        "model", "claude-sonnet-4-5",
+                        "content", List.of(Map.of("type", "text", "text", "Step " + i + " of the plan")))));
+            }
+            write(out, Map.of("type", "user", "message", Map.of(
+                    "role", "user",
+                    "content", List.of(Map.of(
+                            "type", "tool_result",
+                            "tool_use_id", "toolu_" + turn,
+                            "content", "x".repeat(500 * 1024))))));
+        }
+        write(out, Map.of("type", "result", "subtype", "success", "session_id", "s"));
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object message) throws Exception {
+        out.write(MAPPER.writeValueAsBytes(message));
+        out.write('\n');
+    }
+
+}
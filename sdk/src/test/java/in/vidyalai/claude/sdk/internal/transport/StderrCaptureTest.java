@@ -0,0 +1,173 @@
+package in.vidyalai.claude.sdk.internal.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests for {@link StderrCapture}.
+ */
+class StderrCaptureTest {
+
+    @Test
+    void tail_returnsEverythingWhileItFits() {
+        StderrCapture capture = new StderrCapture(1024, null, 0);
+
+        capture.drain(stream("line 1\nline 2\n"));
+
+        assertThat(capture.tail()).isEqualTo("line 1\nline 2\n");
+    }
+
+    @Test
+    void tail_keepsLastBytesStartingAtWholeLine() {
+        StderrCapture capture = new StderrCapture(16, null, 0);
+
+        capture.drain(stream("first line\nsecond\nthird\n"));
+
+        // The last 16 bytes start inside "first line", which is dropped
+        assertThat(capture.tail()).isEqualTo("second\nthird\n");
+    }
+
+    @Test
+    void tail_keepsEndOfWriteLargerThanBuffer() {
+        StderrCapture capture = new StderrCapture(8, null, 0);
+
+        capture.drain(stream("x".repeat(100) + "\nabc"));
+
+        assertThat(capture.tail()).isEqualTo("abc");
+    }
+
+    @Test
+    void tail_wrapsAcrossManySmallReads() {
+        StderrCapture capture = new StderrCapture(10, null, 0);
+
+        capture.drain(new TrickleStream("aaaa\nbbbb\ncccc\ndddd\n"));
+
+        assertThat(capture.tail()).isEqualTo("dddd\n");
+    }
+
+    @Test
+    @Timeout(10)
+    void deliver_passesLinesToCallback() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        StderrCapture capture = new StderrCapture(1024, lines::add, 0);
+
+        capture.drain(stream("one\r\ntwo\n\nthree"));
+        capture.deliver();
+
+        assertThat(lines).containsExactly("one", "two", "", "three");
+    }
+
+    @Test
+    @Timeout(10)
+    void drain_doesNotWaitForSlowCallback() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> lines = new CopyOnWriteArrayList<>();
+        StderrCapture capture = new StderrCapture(64 * 1024, line -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lines.add(line);
+        }, 0);
+        Thread deliverer = Thread.ofVirtual().start(capture::deliver);
+
+        StringBuilder output = new StringBuilder();
+        int total = StderrCapture.CALLBACK_QUEUE_SIZE * 3;
+        for (int i = 0; i < total; i++) {
+            output.append("debug ").append(i).append('\n');
+        }
+        capture.drain(stream(output.toString()));
+
+        // Everything was buffered although the callback is still blocked
+        assertThat(capture.tail()).endsWith("debug " + (total - 1) + "\n");
+        assertThat(capture.skippedLines()).isGreaterThan(0);
+
+        release.countDown();
+        deliverer.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(lines.size() + capture.skippedLines()).isEqualTo(total);
+    }
+
+    @Test
+    @Timeout(10)
+    void deliver_limitsLinesPerSecond() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        StderrCapture capture = new StderrCapture(1024, lines::add, 5);
+
+        capture.drain(stream("1\n2\n3\n4\n5\n6\n7\n8\n"));
+        capture.deliver();
+
+        assertThat(lines).containsExactly("1", "2", "3", "4", "5");
+        assertThat(capture.skippedLines()).isEqualTo(3);
+    }
+
+    @Test
+    @Timeout(10)
+    void deliver_cutsOverlongLines() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        StderrCapture capture = new StderrCapture(1024, lines::add, 0);
+
+        capture.drain(stream("y".repeat(StderrCapture.MAX_LINE_LENGTH + 100) + "\nnext\n"));
+        capture.deliver();
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0).length()).isEqualTo(StderrCapture.MAX_LINE_LENGTH);
+        assertThat(lines.get(1)).isEqualTo("next");
+    }
+
+    @Test
+    @Timeout(10)
+    void deliver_continuesAfterCallbackFailure() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        StderrCapture capture = new StderrCapture(1024, line -> {
+            if (line.equals("bad")) {
+                throw new IllegalStateException("boom");
+            }
+            lines.add(line);
+        }, 0);
+
+        capture.drain(stream("bad\ngood\n"));
+        capture.deliver();
+
+        assertThat(lines).containsExactly("good");
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns at most three bytes per read.
+     */
+    private static final class TrickleStream extends InputStream {
+
+        private final InputStream in;
+
+        TrickleStream(String text) {
+            this.in = stream(text);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 3));
+        }
+
+    }
+
+}
@@ -3,15 +3,20 @@ package in.vidyalai.claude.sdk.internal.transport;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import in.vidyalai.claude.sdk.ClaudeAgentOptions;
 import in.vidyalai.claude.sdk.exceptions.CLIJSONDecodeException;
@@ -280,54 +285,259 @@ class SubprocessBufferingTest {
         assertThat(messages.get(0).get("emoji")).isEqualTo("👨‍👩‍👧‍👦");
     }
 
+    @Test
+    void testMalformedLineIsSkipped() throws Exception {
+        // Test that a non-JSON line does not wedge the stream
+        String json1 = objectMapper.writeValueAsString(Map.of("type", "msg1"));
+        String json2 = objectMapper.writeValueAsString(Map.of("type", "msg2"));
+
+        String input = json1 + "\nnot json at all {\n" + json2 + "\n";
+
+        List<Map<String, Object>> messages = parseJsonLines(input, makeOptions());
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0).get("type")).isEqualTo("msg1");
+        assertThat(messages.get(1).get("type")).isEqualTo("msg2");
+    }
+
+    @Test
+    void testMalformedLineSplitAcrossReads() throws Exception {
+        // Test resynchronisation when the bad line continues in a later read
+        String json1 = objectMapper.writeValueAsString(Map.of("type", "msg1"));
+
+        List<Map<String, Object>> messages = parseJsonParts(
+                List.of("garbage ", "still garbage", " more\n" + json1 + "\n"), makeOptions());
+
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0).get("type")).isEqualTo("msg1");
+    }
+
+    @Test
+    void testPrettyPrintedJsonAcrossLines() throws Exception {
+        // Test that an object spanning several lines is framed as one message
+        String pretty = objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(Map.of("type", "result", "data", Map.of("a", 1)));
+
+        List<Map<String, Object>> messages = parseJsonLines(pretty + "\n" + pretty, makeOptions());
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(1).get("type")).isEqualTo("result");
+    }
+
+    @Test
+    void testTruncatedTrailingJsonIsDropped() throws Exception {
+        // Test that an incomplete object at end of stream is discarded
+        String json1 = objectMapper.writeValueAsString(Map.of("type", "msg1"));
+
+        List<Map<String, Object>> messages = parseJsonLines(json1 + "\n{\"type\": \"ms", makeOptions());
+
+        assertThat(messages).hasSize(1);
+    }
+
+    // ==================== Type Filter Tests ====================
+
+    @Test
+    void testUnwantedTypesAreSkipped() throws Exception {
+        // Test that skipped objects, including nested content, leave the stream in sync
+        String input = String.join("\n",
+                objectMapper.writeValueAsString(Map.of("type", "system", "tools", List.of(Map.of("a", List.of(1, 2))))),
+                objectMapper.writeValueAsString(Map.of("type", "assistant", "id", "a1")),
+                "{\"type\":\"stream_event\",\"event\":{\"type\":\"assistant\",\"delta\":{\"text\":\"}{\"}}}",
+                objectMapper.writeValueAsString(Map.of("type", "result", "id", "r1")));
+
+        List<Map<String, Object>> messages = parseJsonParts(List.of(input), makeOptions(),
+                SubprocessCLITransport.skipPredicate(Set.of("assistant")));
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0)).containsEntry("id", "a1");
+        assertThat(messages.get(1)).containsEntry("id", "r1");
+    }
+
+    @Test
+    void testSkippedObjectSplitAcrossReadsAndLateTypeField() throws Exception {
+        // Test skipping when the type field comes after other fields and the object spans reads
+        List<String> parts = List.of(
+                "{\"session\":\"s\",\"type\":\"user\",\"message\":{\"content\":[{\"text\":\"xx",
+                "xx\"}]}}\n{\"type\":\"assi",
+                "stant\",\"n\":1}\n");
+
+        List<Map<String, Object>> messages = parseJsonParts(parts, makeOptions(),
+                SubprocessCLITransport.skipPredicate(Set.of("assistant")));
+
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0)).containsEntry("type", "assistant");
+    }
+
+    @Test
+    void testResultAndControlMessagesAreNeverSkipped() {
+        Predicate<String> skip = SubprocessCLITransport.skipPredicate(Set.of("assistant"));
+
+        assertThat(skip.test("stream_event")).isTrue();
+        assertThat(skip.test("assistant")).isFalse();
+        assertThat(skip.test("result")).isFalse();
+        assertThat(skip.test("control_request")).isFalse();
+        assertThat(skip.test("control_response")).isFalse();
+        assertThat(skip.test("control_cancel_request")).isFalse();
+        assertThat(SubprocessCLITransport.skipPredicate(null)).isNull();
+    }
+
+    // ==================== Raw Pass-through Tests ====================
+
+    @Test
+    void testRawFramesKeepExactBytesAcrossReads() throws Exception {
+        // Test that raw frames are byte-for-byte what the CLI wrote, including whitespace and escapes
+        String first = "{\"type\":\"assistant\", \"text\":\"h\\u00e9llo ✓\",\"n\":1.50}";
+        String second = "{\"session\":\"s\",\"type\":\"result\"}";
+        List<String> parts = List.of(first.substring(0, 10), first.substring(10) + "\n\n" + second.substring(0, 5),
+                second.substring(5) + "\n");
+
+        List<JsonStreamFramer.Frame> frames = frameParts(parts, null, SubprocessCLITransport.rawPredicate(true, false));
+
+        assertThat(frames).hasSize(2);
+        assertThat(frames.get(0).type()).isEqualTo("assistant");
+        assertThat(frames.get(0).tokens()).isNull();
+        assertThat(new String(frames.get(0).json(), StandardCharsets.UTF_8)).isEqualTo(first);
+        assertThat(frames.get(1).type()).isEqualTo("result");
+        assertThat(new String(frames.get(1).json(), StandardCharsets.UTF_8)).isEqualTo(second);
+    }
+
+    @Test
+    void testControlMessagesAreNotRawInRawMode() throws Exception {
+        // Test that the SDK still decodes control traffic it has to act on
+        String input = String.join("\n",
+                "{\"type\":\"control_request\",\"request_id\":\"r1\"}",
+                "{\"type\":\"user\",\"n\":2}");
+
+        List<JsonStreamFramer.Frame> frames = frameParts(List.of(input), null,
+                SubprocessCLITransport.rawPredicate(true, false));
+
+        assertThat(frames).hasSize(2);
+        assertThat(frames.get(0).json()).isNull();
+        assertThat(objectMapper.readValue(frames.get(0).tokens().asParser(), Map.class))
+                .containsEntry("request_id", "r1");
+        assertThat(new String(frames.get(1).json(), StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"user\",\"n\":2}");
+        assertThat(SubprocessCLITransport.rawPredicate(false, false)).isNull();
+    }
+
+    @Test
+    void testLazyContentFramesAssistantAndUserMessagesAsBytes() throws Exception {
+        String input = String.join("\n",
+                "{\"type\":\"assistant\",\"message\":{\"content\":[]}}",
+                "{\"type\":\"result\",\"subtype\":\"success\"}",
+                "{\"type\":\"user\",\"message\":{\"content\":\"hi\"}}",
+                "{\"type\":\"control_request\",\"request_id\":\"r1\"}");
+
+        List<JsonStreamFramer.Frame> frames = frameParts(List.of(input), null,
+                SubprocessCLITransport.rawPredicate(false, true));
+
+        assertThat(frames).hasSize(4);
+        assertThat(new String(frames.get(0).json(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"type\":\"assistant\",\"message\":{\"content\":[]}}");
+        assertThat(frames.get(1).json()).isNull();
+        assertThat(new String(frames.get(2).json(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"type\":\"user\",\"message\":{\"content\":\"hi\"}}");
+        assertThat(frames.get(3).json()).isNull();
+    }
+
+    @Test
+    void testRawModeCombinesWithTypeFilter() throws Exception {
+        String input = String.join("\n",
+                "{\"type\":\"stream_event\",\"event\":{}}",
+                "{\"type\":\"assistant\",\"id\":\"a1\"}");
+
+        List<JsonStreamFramer.Frame> frames = frameParts(List.of(input),
+                SubprocessCLITransport.skipPredicate(Set.of("assistant")), SubprocessCLITransport.rawPredicate(true, false));
+
+        assertThat(frames).hasSize(1);
+        assertThat(new String(frames.get(0).json(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"type\":\"assistant\",\"id\":\"a1\"}");
+    }
+
     // ==================== Helper Methods ====================
 
     /**
-     * Simulates JSON line parsing similar to SubprocessCLITransport's readLoop.
+     * Frames the input using the same {@link JsonStreamFramer} as
+     * SubprocessCLITransport's readLoop.
      */
     private List<Map<String, Object>> parseJsonLines(String input, ClaudeAgentOptions options) throws Exception {
         return parseJsonParts(List.of(input), options);
     }
 
     /**
-     * Simulates JSON parsing with multiple input parts (like streaming reads).
+     * Frames the input parts, delivering each part as a separate stream read.
      */
-    @SuppressWarnings({ "unchecked", "null" })
     private List<Map<String, Object>> parseJsonParts(List<String> parts, ClaudeAgentOptions options) throws Exception {
+        return parseJsonParts(parts, options, null);
+    }
+
+    /**
+     * Frames the input parts, dropping objects whose type matches skipType.
+     */
+    @SuppressWarnings({ "unchecked", "null" })
+    private List<Map<String, Object>> parseJsonParts(List<String> parts, ClaudeAgentOptions options,
+            Predicate<String> skipType) throws Exception {
         List<Map<String, Object>> messages = new ArrayList<>();
-        StringBuilder jsonBuffer = new StringBuilder();
         int maxBufferSize = options.maxBufferSize() != null ? options.maxBufferSize() : 1024 * 1024;
 
-        for (String part : parts) {
-            // Split by newlines and process
-            String[] lines = part.split("\n", -1);
-            for (String line : lines) {
-                line = line.trim();
-                if (line.isEmpty()) {
-                    continue;
-                }
+        JsonStreamFramer framer = new JsonStreamFramer(new PartsInputStream(parts), objectMapper.getFactory(),
+                maxBufferSize, skipType, null);
+        TokenBuffer tokens;
+        while ((tokens = framer.next()) != null) {
+            messages.add(objectMapper.readValue(tokens.asParser(), Map.class));
+        }
 
-                jsonBuffer.append(line);
+        return messages;
+    }
 
-                if (jsonBuffer.length() > maxBufferSize) {
-                    int bufferLength = jsonBuffer.length();
-                    throw new CLIJSONDecodeException(
-                            "JSON message exceeded maximum buffer size of " + maxBufferSize + " bytes",
-                            new IllegalStateException(
-                                    "Buffer size " + bufferLength + " exceeds limit " + maxBufferSize));
-                }
+    /**
+     * Frames the input parts with the given skip and raw predicates.
+     */
+    private List<JsonStreamFramer.Frame> frameParts(List<String> parts, Predicate<String> skipType,
+            Predicate<String> rawType) throws Exception {
+        List<JsonStreamFramer.Frame> frames = new ArrayList<>();
+        JsonStreamFramer framer = new JsonStreamFramer(new PartsInputStream(parts), objectMapper.getFactory(),
+                1024 * 1024, skipType, rawType);
+        JsonStreamFramer.Frame frame;
+        while ((frame = framer.nextFrame()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Input stream that returns at most one part per read() call, like a pipe.
+     */
+    private static final class PartsInputStream extends InputStream {
+
+        private final Iterator<String> parts;
+        private byte[] current = new byte[0];
+        private int pos = 0;
 
-                try {
-                    Map<String, Object> data = objectMapper.readValue(jsonBuffer.toString(), Map.class);
-                    jsonBuffer.setLength(0);
-                    messages.add(data);
-                } catch (JsonProcessingException e) {
-                    // Incomplete JSON, continue accumulating
+        PartsInputStream(List<String> parts) {
+            this.parts = parts.iterator();
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return ((read(one, 0, 1) < 0) ? -1 : (one[0] & 0xFF));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            while (pos >= current.length) {
+                if (!parts.hasNext()) {
+                    return -1;
                 }
+                current = parts.next().getBytes(StandardCharsets.UTF_8);
+                pos = 0;
             }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
         }
 
-        return messages;
     }
 
 }
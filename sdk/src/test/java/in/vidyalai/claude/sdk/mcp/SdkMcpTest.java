@@ -2,6 +2,7 @@ package in.vidyalai.claude.sdk.mcp;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
@@ -10,7 +11,11 @@ import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import in.vidyalai.claude.sdk.ClaudeSDK;
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
 import in.vidyalai.claude.sdk.types.mcp.McpSdkServerConfig;
 
 /**
@@ -177,6 +182,39 @@ class SdkMcpTest {
         assertThat(tools.get(0).get("description")).isEqualTo("Greet a user");
     }
 
+    @Test
+    void testListToolsAndInitializeResultsAreSerializedOnce() throws Exception {
+        Map<String, Object> schema = Map.of("type", "object", "properties", Map.of("name", Map.of("type", "string")));
+        SdkMcpTool<Map<String, Object>> greet = SdkMcpTool.create(
+                "greet", "Greet a user", schema,
+                args -> CompletableFuture.completedFuture(ToolResult.text("Hello!")));
+        SdkMcpServer server = SdkMcpServer.create("test", "2.0.0", List.of(greet));
+        ObjectMapper mapper = new ObjectMapper();
+
+        for (String method : List.of("tools/list", "initialize")) {
+            Map<String, Object> first = server.handleMessage(Map.of(
+                    "jsonrpc", "2.0", "id", 1, "method", method, "params", Map.of())).get();
+            Map<String, Object> second = server.handleMessage(Map.of(
+                    "jsonrpc", "2.0", "id", 2, "method", method, "params", Map.of())).get();
+
+            // Cached result, fresh envelope
+            assertThat(second.get("result")).isSameAs(first.get("result"));
+            assertThat(second.get("id")).isEqualTo(2);
+
+            // Written as the same JSON the map would produce
+            Map<String, Object> parsed = mapper.readValue(mapper.writeValueAsString(second),
+                    new TypeReference<Map<String, Object>>() {
+                    });
+            assertThat(parsed.get("id")).isEqualTo(2);
+            assertThat(parsed.get("result")).isEqualTo(second.get("result"));
+        }
+
+        Map<String, Object> list = server.handleMessage(Map.of(
+                "jsonrpc", "2.0", "id", 3, "method", "tools/list", "params", Map.of())).get();
+        String json = mapper.writeValueAsString(list);
+        assertThat(json).contains("\"inputSchema\":" + mapper.writeValueAsString(schema));
+    }
+
     @Test
     void testServerHandleToolCall() throws ExecutionException, InterruptedException {
         SdkMcpTool<Map<String, Object>> greet = SdkMcpTool.create(
@@ -699,4 +737,169 @@ class SdkMcpTest {
         assertThat(byteProp.get("type")).isEqualTo("integer");
     }
 
+    // ==================== Typed Invocation Tests ====================
+
+    static class FailingTools {
+
+        @Tool(name = "lock", description = "Lock a table")
+        public ToolResult lock(String table) {
+            throw new IllegalStateException("Table " + table + " is locked");
+        }
+
+        @Tool(name = "version", description = "Static tool")
+        public static String version() {
+            return "1.2.3";
+        }
+
+        @Tool(name = "read", description = "Read a file")
+        public ToolResult read(String path) throws IOException {
+            throw new IOException("Cannot read " + path);
+        }
+
+        @Tool(name = "check", description = "Check an invariant")
+        public ToolResult check() {
+            throw new AssertionError("Invariant broken");
+        }
+
+    }
+
+    @Test
+    void testTypedToolInvocationConvertsArguments() throws ExecutionException, InterruptedException {
+        SdkMcpServer server = SdkMcpServer.fromAnnotatedMethods("typed-test", new TypedParameterTools());
+
+        assertThat(callText(server, "calculate", Map.of("a", 6, "b", 4, "operation", "multiply", "verbose", true)))
+                .isEqualTo("Result of 6 multiply 4.0 = 24.0");
+        assertThat(callText(server, "number_types",
+                Map.of("floatVal", 1.5, "doubleVal", 2, "shortVal", 3, "longVal", 4, "byteVal", 5)))
+                .isEqualTo("Numbers: 1.5, 2.0, 3, 4, 5");
+        assertThat(callText(server, "array_test", Map.of("items", List.of("x", "y"), "numbers", List.of(1, 2, 3))))
+                .isEqualTo("Items: 2, Numbers: 3");
+        assertThat(callText(server, "process_data", Map.of("name", "n", "age", 30)))
+                .isEqualTo("Processed: n, 30, null, null");
+    }
+
+    @Test
+    void testTypedToolFailureBecomesErrorResult() throws ExecutionException, InterruptedException {
+        SdkMcpServer server = SdkMcpServer.fromAnnotatedMethods("failing", new FailingTools());
+
+        Map<String, Object> result = call(server, "lock", Map.of("table", "users"));
+
+        assertThat(result.get("is_error")).isEqualTo(true);
+        assertThat(textOf(result)).isEqualTo("Table users is locked");
+        assertThat(callText(server, "version", Map.of())).isEqualTo("1.2.3");
+    }
+
+    @Test
+    void testTypedToolCheckedExceptionBecomesErrorResult() throws ExecutionException, InterruptedException {
+        SdkMcpServer server = SdkMcpServer.fromAnnotatedMethods("failing", new FailingTools());
+
+        Map<String, Object> result = call(server, "read", Map.of("path", "/tmp/x"));
+
+        assertThat(result.get("is_error")).isEqualTo(true);
+        assertThat(textOf(result)).isEqualTo("Cannot read /tmp/x");
+    }
+
+    @Test
+    void testTypedToolErrorBecomesErrorResult() throws ExecutionException, InterruptedException {
+        SdkMcpServer server = SdkMcpServer.fromAnnotatedMethods("failing", new FailingTools());
+
+        Map<String, Object> result = call(server, "check", Map.of());
+
+        assertThat(result.get("is_error")).isEqualTo(true);
+        assertThat(textOf(result)).isEqualTo("Invariant broken");
+    }
+
+    private static String callText(SdkMcpServer server, String tool, Map<String, Object> arguments)
+            throws ExecutionException, InterruptedException {
+        return textOf(call(server, tool, arguments));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> call(SdkMcpServer server, String tool, Map<String, Object> arguments)
+            throws ExecutionException, InterruptedException {
+        Map<String, Object> response = server.handleMessage(Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", "tools/call",
+                "params", Map.of("name", tool, "arguments", arguments))).get();
+        return (Map<String, Object>) response.get("result");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String textOf(Map<String, Object> result) {
+        List<Map<String, Object>> content = (List<Map<String, Object>>) result.get("content");
+        return (String) content.get(0).get("text");
+    }
+
+    // ==================== Cancellation Tests ====================
+
+    static class CancellableTools {
+
+        volatile AbortSignal received;
+
+        @Tool(name = "scan", description = "Scan a table")
+        public ToolResult scan(String table, AbortSignal signal) {
+            received = signal;
+            return ToolResult.text("Scanned " + table);
+        }
+
+    }
+
+    @Test
+    void testToolHandlerReceivesSignalAndIsCancelledOnAbort() {
+        CompletableFuture<ToolResult> pending = new CompletableFuture<>();
+        AbortSignal[] received = new AbortSignal[1];
+        SdkMcpTool<Map<String, Object>> scan = SdkMcpTool.<Map<String, Object>>builder("scan", "Scan a table")
+                .handler((args, signal) -> {
+                    received[0] = signal;
+                    return pending;
+                })
+                .build();
+        SdkMcpServer server = SdkMcpServer.create("test", List.of(scan));
+        AbortSignal signal = new AbortSignal();
+
+        CompletableFuture<Map<String, Object>> response = server.handleMessage(Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", "tools/call",
+                "params", Map.of("name", "scan", "arguments", Map.of())), signal);
+
+        assertThat(received[0]).isSameAs(signal);
+        assertThat(response.isDone()).isFalse();
+
+        signal.abort();
+
+        assertThat(pending.isCancelled()).isTrue();
+    }
+
+    @Test
+    void testAnnotatedToolReceivesSignalOutsideSchema() throws ExecutionException, InterruptedException {
+        CancellableTools tools = new CancellableTools();
+        SdkMcpServer server = SdkMcpServer.fromAnnotatedMethods("test", tools);
+
+        Map<String, Object> list = server.handleMessage(Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", "tools/list",
+                "params", Map.of())).get();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) list.get("result");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> toolsList = (List<Map<String, Object>>) result.get("tools");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> schema = (Map<String, Object>) toolsList.get(0).get("inputSchema");
+        assertThat((Map<?, ?>) schema.get("properties")).containsOnlyKeys("table");
+
+        AbortSignal signal = new AbortSignal();
+        Map<String, Object> response = server.handleMessage(Map.of(
+                "jsonrpc", "2.0",
+                "id", 2,
+                "method", "tools/call",
+                "params", Map.of("name", "scan", "arguments", Map.of("table", "users"))), signal).get();
+
+        assertThat(tools.received).isSameAs(signal);
+        assertThat(response).containsKey("result");
+    }
+
+
 }
@@ -0,0 +1,128 @@
+package in.vidyalai.claude.sdk.mcp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
+
+/**
+ * Benchmark for calling {@link Tool} methods.
+ *
+ * <p>
+ * Reports time and bytes allocated per call by {@link ToolMethodInvoker}
+ * against the reflective path it replaced ({@code getParameters()},
+ * {@code convertValue} per argument and {@code Method.invoke} on every call),
+ * reproduced here as a baseline.
+ */
+@Tag("benchmark")
+class ToolInvocationBenchmarkTest {
+
+    private static final Logger logger = Logger.getLogger(ToolInvocationBenchmarkTest.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int CALLS = 200_000;
+    private static final int ROUNDS = 5;
+
+    static class LookupTools {
+
+        @Tool(name = "lookup", description = "Look up a row")
+        public ToolResult lookup(String table, int id, boolean deep, AbortSignal signal) {
+            return ToolResult.text(table);
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface Call {
+
+        Object call() throws Exception;
+
+    }
+
+    @Test
+    @Timeout(120)
+    void timeAndAllocationPerCall() throws Exception {
+        LookupTools tools = new LookupTools();
+        Method method = LookupTools.class.getDeclaredMethod("lookup", String.class, int.class, boolean.class,
+                AbortSignal.class);
+        method.setAccessible(true);
+        ToolMethodInvoker invoker = new ToolMethodInvoker(tools, method, MAPPER);
+        Map<String, Object> args = Map.of("table", "users", "id", 42, "deep", true);
+        AbortSignal signal = new AbortSignal();
+
+        Call reflective = () -> invokeReflectively(tools, method, args, signal);
+        Call handle = () -> invoker.invoke(args, signal);
+
+        // Warm up
+        for (int i = 0; i < ROUNDS; i++) {
+            measure(reflective);
+            measure(handle);
+        }
+
+        long[] before = measure(reflective);
+        long[] after = measure(handle);
+
+        logger.info(String.format("Per @Tool call: reflection=%dns/%dB, method handle=%dns/%dB",
+                before[0], before[1], after[0], after[1]));
+        assertThat(after[1]).isLessThan(before[1]);
+        assertThat(after[0]).isLessThan(2 * before[0]);
+    }
+
+    /**
+     * Returns the fewest nanoseconds and bytes per call over the rounds.
+     */
+    private static long[] measure(Call call) throws Exception {
+        long nanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                if (call.call() == null) {
+                    throw new AssertionError("no result");
+                }
+            }
+            nanos = Math.min(nanos, (System.nanoTime() - start) / CALLS);
+            bytes = Math.min(bytes, (allocatedBytes() - allocated) / CALLS);
+        }
+        return new long[] { nanos, bytes };
+    }
+
+    /**
+     * The previous reflective invocation of a method with typed parameters.
+     */
+    private static Object invokeReflectively(Object instance, Method method, Map<String, Object> args,
+            AbortSignal signal) throws Exception {
+        Parameter[] parameters = method.getParameters();
+        Object[] values = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter param = parameters[i];
+            if (param.getType() == AbortSignal.class) {
+                values[i] = signal;
+                continue;
+            }
+            Object rawValue = args.get(param.getName());
+            values[i] = ((rawValue != null) ? MAPPER.convertValue(rawValue, param.getType()) : null);
+        }
+        return method.invoke(instance, values);
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+}
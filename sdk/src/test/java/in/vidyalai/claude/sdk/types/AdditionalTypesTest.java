@@ -3,8 +3,10 @@ package in.vidyalai.claude.sdk.types;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import org.junit.jupiter.api.Test;
 
@@ -17,6 +19,7 @@ import in.vidyalai.claude.sdk.types.config.SdkBeta;
 import in.vidyalai.claude.sdk.types.config.SettingSource;
 import in.vidyalai.claude.sdk.types.config.SystemPromptPreset;
 import in.vidyalai.claude.sdk.types.config.ToolsPreset;
+import in.vidyalai.claude.sdk.types.control.AbortSignal;
 import in.vidyalai.claude.sdk.types.hook.HookContext;
 import in.vidyalai.claude.sdk.types.mcp.McpHttpServerConfig;
 import in.vidyalai.claude.sdk.types.mcp.McpSseServerConfig;
@@ -533,11 +536,42 @@ class AdditionalTypesTest {
 
     @Test
     void testHookContextFull() {
-        Object signal = new Object(); // Placeholder for future abort signal
+        AbortSignal signal = new AbortSignal();
         HookContext context = new HookContext("tool-use-123", signal);
 
         assertThat(context.toolUseId()).isEqualTo("tool-use-123");
         assertThat(context.signal()).isEqualTo(signal);
     }
 
+    // ==================== AbortSignal Tests ====================
+
+    @Test
+    void testAbortSignalRunsListenersOnce() {
+        AbortSignal signal = new AbortSignal();
+        List<String> calls = new ArrayList<>();
+        signal.onAbort(() -> calls.add("first"));
+
+        assertThat(signal.isAborted()).isFalse();
+        signal.abort();
+        signal.abort();
+
+        assertThat(signal.isAborted()).isTrue();
+        assertThat(calls).containsExactly("first");
+
+        // Late listeners run immediately
+        signal.onAbort(() -> calls.add("late"));
+        assertThat(calls).containsExactly("first", "late");
+    }
+
+    @Test
+    void testAbortSignalThrowIfAborted() {
+        AbortSignal signal = new AbortSignal();
+        signal.throwIfAborted();
+
+        signal.abort();
+
+        assertThatThrownBy(signal::throwIfAborted)
+                .isInstanceOf(CancellationException.class);
+    }
+
 }
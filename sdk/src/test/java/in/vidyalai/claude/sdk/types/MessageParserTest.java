@@ -3,11 +3,16 @@ package in.vidyalai.claude.sdk.types;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
 import in.vidyalai.claude.sdk.exceptions.MessageParseException;
 import in.vidyalai.claude.sdk.internal.MessageParser;
 import in.vidyalai.claude.sdk.types.message.AssistantMessage;
@@ -24,6 +29,8 @@ import in.vidyalai.claude.sdk.types.message.UserMessage;
 
 class MessageParserTest {
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @Test
     void parseUserMessage_withStringContent() {
         Map<String, Object> data = Map.of(
@@ -624,4 +631,175 @@ class MessageParserTest {
         assertThat(userMessage.toolUseResult()).isNull();
     }
 
+    // ==================== Typed Binding Tests ====================
+
+    @Test
+    void parseTyped_matchesMapParsing() throws Exception {
+        List<Map<String, Object>> samples = List.of(
+                Map.of("type", "user", "uuid", "u1",
+                        "message", Map.of("role", "user", "content", "Hello")),
+                Map.of("type", "user", "parent_tool_use_id", "toolu_1", "tool_use_result", "done",
+                        "message", Map.of("role", "user", "content", List.of(
+                                Map.of("type", "tool_result", "tool_use_id", "toolu_1",
+                                        "content", "ok", "is_error", false)))),
+                Map.of("type", "assistant",
+                        "message", Map.of("model", "claude-sonnet-4-5", "error", "rate_limit",
+                                "content", List.of(
+                                        Map.of("type", "text", "text", "Hi"),
+                                        Map.of("type", "thinking", "thinking", "hmm", "signature", "sig"),
+                                        Map.of("type", "tool_use", "id", "toolu_2", "name", "Read",
+                                                "input", Map.of("file_path", "/a.txt"))))),
+                Map.of("type", "result", "subtype", "success", "duration_ms", 1000,
+                        "duration_api_ms", 500, "is_error", false, "num_turns", 2,
+                        "session_id", "s1", "total_cost_usd", 0.5, "usage", Map.of("input_tokens", 10),
+                        "structured_output", Map.of("k", List.of(1, 2))),
+                Map.of("type", "stream_event", "uuid", "e1", "session_id", "s1",
+                        "event", Map.of("type", "content_block_delta")));
+
+        for (Map<String, Object> data : samples) {
+            Message typed = MessageParser.parse((String) data.get("type"), tokens(data));
+            assertThat(typed).isEqualTo(MessageParser.parse(data));
+        }
+    }
+
+    @Test
+    void parseTyped_systemMessageIsNotBound() throws Exception {
+        Map<String, Object> data = Map.of("type", "system", "subtype", "init");
+
+        assertThat(MessageParser.parse("system", tokens(data))).isNull();
+        assertThat(MessageParser.parse(null, tokens(data))).isNull();
+    }
+
+    @Test
+    void parseTyped_invalidShapeThrows() throws Exception {
+        // Missing model: the map path reports the precise error
+        Map<String, Object> noModel = Map.of("type", "assistant",
+                "message", Map.of("content", List.of(Map.of("type", "text", "text", "Hi"))));
+        assertThatThrownBy(() -> MessageParser.parse("assistant", tokens(noModel)))
+                .isInstanceOf(IOException.class);
+
+        Map<String, Object> unknownBlock = Map.of("type", "assistant",
+                "message", Map.of("model", "m", "content", List.of(Map.of("type", "image"))));
+        assertThatThrownBy(() -> MessageParser.parse("assistant", tokens(unknownBlock)))
+                .isInstanceOf(IOException.class);
+
+        Map<String, Object> wrongType = Map.of("type", "result", "subtype", "success",
+                "duration_ms", "fast", "duration_api_ms", 1, "is_error", false, "num_turns", 1,
+                "session_id", "s1");
+        assertThatThrownBy(() -> MessageParser.parse("result", tokens(wrongType)))
+                .isInstanceOf(IOException.class);
+    }
+
+    // ==================== Lazy Content Tests ====================
+
+    @Test
+    void parseLazy_matchesMapParsing() throws Exception {
+        List<Map<String, Object>> samples = List.of(
+                Map.of("type", "user", "uuid", "u1",
+                        "message", Map.of("role", "user", "content", "Hello")),
+                Map.of("type", "user", "parent_tool_use_id", "toolu_1",
+                        "tool_use_result", Map.of("stdout", "a\nb", "lines", List.of(1, 2)),
+                        "message", Map.of("role", "user", "content", List.of(
+                                Map.of("type", "tool_result", "tool_use_id", "toolu_1",
+                                        "content", List.of(Map.of("type", "text", "text", "ok")),
+                                        "is_error", false)))),
+                Map.of("type", "user", "tool_use_result", "done",
+                        "message", Map.of("role", "user", "content", List.of(
+                                Map.of("type", "tool_result", "tool_use_id", "toolu_1", "content", "ok")))),
+                Map.of("type", "assistant",
+                        "message", Map.of("model", "claude-sonnet-4-5", "error", "rate_limit",
+                                "content", List.of(
+                                        Map.of("type", "text", "text", "Hi"),
+                                        Map.of("type", "thinking", "thinking", "hmm", "signature", "sig"),
+                                        Map.of("type", "tool_use", "id", "toolu_2", "name", "Read",
+                                                "input", Map.of("file_path", "/a.txt",
+                                                        "options", Map.of("n", 3)))))));
+
+        for (Map<String, Object> data : samples) {
+            Message lazy = MessageParser.parseLazy((String) data.get("type"), json(data));
+            assertThat(lazy).isEqualTo(MessageParser.parse(data));
+        }
+    }
+
+    @Test
+    void parseLazy_reportsMalformedContentOnFirstAccess() throws Exception {
+        Map<String, Object> unknownBlock = Map.of("type", "assistant",
+                "message", Map.of("model", "m", "content", List.of(Map.of("type", "image"))));
+
+        AssistantMessage message = (AssistantMessage) MessageParser.parseLazy("assistant", json(unknownBlock));
+
+        assertThat(message.model()).isEqualTo("m");
+        assertThatThrownBy(() -> message.content().size())
+                .isInstanceOf(MessageParseException.class)
+                .hasMessageContaining("Unknown content block type: image");
+    }
+
+    @Test
+    void parseLazy_toolPayloadsAreReadOnlyAndSerializeUnchanged() throws Exception {
+        Map<String, Object> input = Map.of("file_path", "/a.txt", "edits", List.of(Map.of("old", "x", "new", "y")));
+        Map<String, Object> data = Map.of("type", "assistant",
+                "message", Map.of("model", "m", "content", List.of(
+                        Map.of("type", "tool_use", "id", "toolu_1", "name", "Edit", "input", input))));
+
+        AssistantMessage message = (AssistantMessage) MessageParser.parseLazy("assistant", json(data));
+        ToolUseBlock toolUse = (ToolUseBlock) message.content().get(0);
+
+        // Serialized from bytes before decoding, then from the decoded map
+        String fromBytes = objectMapper.writeValueAsString(toolUse.input());
+        assertThat(objectMapper.readValue(fromBytes, Map.class)).isEqualTo(input);
+        assertThat(toolUse.input()).isEqualTo(input);
+        assertThat(objectMapper.writeValueAsString(toolUse.input())).isEqualTo(fromBytes);
+        assertThatThrownBy(() -> toolUse.input().put("k", "v"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void parseLazy_decodesPayloadsFromMessageBytesOnFirstAccess() throws Exception {
+        Map<String, Object> data = Map.of("type", "user", "uuid", "u1",
+                "tool_use_result", Map.of("stdout", "aaaa"),
+                "message", Map.of("role", "user", "content", List.of(
+                        Map.of("type", "tool_result", "tool_use_id", "toolu_1",
+                                "content", List.of(Map.of("type", "text", "text", "bbbb"))))));
+        byte[] json = json(data);
+
+        UserMessage message = (UserMessage) MessageParser.parseLazy("user", json);
+        // Nothing decoded yet: rewriting the payloads in the bytes shows up on access
+        replace(json, "aaaa", "AAAA");
+        replace(json, "bbbb", "BBBB");
+
+        assertThat(message.uuid()).isEqualTo("u1");
+        assertThat(message.toolUseResult()).containsEntry("stdout", "AAAA");
+        @SuppressWarnings("unchecked")
+        List<ContentBlock> blocks = (List<ContentBlock>) message.content();
+        ToolResultBlock result = (ToolResultBlock) blocks.get(0);
+        assertThat(result.toolUseId()).isEqualTo("toolu_1");
+        assertThat(objectMapper.writeValueAsString(result.content())).contains("BBBB");
+
+        // Decoded values are memoized
+        replace(json, "AAAA", "cccc");
+        assertThat(message.toolUseResult()).containsEntry("stdout", "AAAA");
+    }
+
+    @Test
+    void parseLazy_returnsNullForOtherTypes() throws Exception {
+        assertThat(MessageParser.parseLazy("result", json(Map.of("type", "result")))).isNull();
+        assertThat(MessageParser.parseLazy(null, json(Map.of("n", 1)))).isNull();
+    }
+
+    private static void replace(byte[] json, String from, String to) {
+        String text = new String(json, StandardCharsets.UTF_8);
+        int index = text.indexOf(from);
+        assertThat(index).isNotNegative();
+        byte[] replacement = to.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(replacement, 0, json, index, replacement.length);
+    }
+
+    private static byte[] json(Map<String, Object> data) throws IOException {
+        return objectMapper.writeValueAsBytes(data);
+    }
+
+    private static TokenBuffer tokens(Map<String, Object> data) throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(data), TokenBuffer.class);
+    }
+
 }